@@ -62,4 +62,22 @@ public final class CryptoUtils {
 
         return encoded;
     }
-}
\ No newline at end of file
+
+    /**
+     * Return the hexadecimal representation of the bytes, for example of a digest.
+     *
+     * @param bytes The bytes.
+     *
+     * @return The lower case hexadecimal string.
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return builder.toString();
+    }
+}
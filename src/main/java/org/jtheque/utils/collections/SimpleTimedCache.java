@@ -1,11 +1,19 @@
 package org.jtheque.utils.collections;
 
-import org.jtheque.utils.ThreadUtils;
+import org.jtheque.utils.annotations.GuardedInternally;
+import org.jtheque.utils.annotations.ThreadSafe;
 
-import java.util.Collection;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.io.Closeable;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /*
  * Copyright JTheque (Baptiste Wicht)
@@ -24,37 +32,79 @@ import java.util.concurrent.TimeUnit;
  */
 
 /**
- * A simple cached with a timeout on each element. The eviction thread is a daemon, so there is no need to shutdown the
- * cache. This cache doesn't support null objects.
+ * A simple cached with a timeout on each element. The elements are stored in a hash map, so the lookups are made in
+ * constant time. The expired elements are removed lazily on access and by amortized sweeps. To avoid scanning the whole
+ * cache, the elements are grouped by expiration time in buckets and only the expired buckets are visited during a
+ * sweep. The periodic sweeps are made by the shared {@link TimerWheel}, so the caches don't have their own thread. The
+ * cache is unregistered from the wheel when it's closed or garbage collected. This cache doesn't support null
+ * objects.
  *
  * @author Baptiste Wicht
  * @param <T> The type of object in the cache.
  */
-public class SimpleTimedCache<T> {
+@ThreadSafe
+public class SimpleTimedCache<T> implements Closeable {
+    /**
+     * The number of buckets covering one timeout period.
+     */
+    private static final int BUCKETS = 32;
+
     private final long timeout;
-    private final Collection<TimedElement> elements = CollectionUtils.newConcurrentList();
+    private final int maximumSize;
+    private final long bucketSize;
+
+    @GuardedInternally
+    private final ConcurrentMap<T, Long> expirations = new ConcurrentHashMap<T, Long>(16);
+
+    @GuardedInternally
+    private final ConcurrentNavigableMap<Long, Set<T>> buckets = new ConcurrentSkipListMap<Long, Set<T>>();
+
+    private final AtomicLong nextSweep;
+    private final TimerWheel.Timeout sweeper;
 
     /**
-     * Create a new SimpleTimedCache.
+     * Create a new SimpleTimedCache with no maximum size.
      *
      * @param timeout The timeout to evict the objects.
      */
     public SimpleTimedCache(long timeout) {
+        this(timeout, 0);
+    }
+
+    /**
+     * Create a new SimpleTimedCache.
+     *
+     * @param timeout     The timeout to evict the objects.
+     * @param maximumSize The maximum number of elements in the cache. If the size is 0, the cache is not bounded.
+     */
+    public SimpleTimedCache(long timeout, int maximumSize) {
         super();
 
         if (timeout <= 0) {
             throw new IllegalArgumentException("The timeout is less than or equals to zero. ");
         }
 
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("The maximum size is less than zero. ");
+        }
+
         this.timeout = timeout;
+        this.maximumSize = maximumSize;
+
+        bucketSize = Math.max(1, timeout / BUCKETS);
+        nextSweep = new AtomicLong(System.currentTimeMillis() + bucketSize);
 
-        ScheduledExecutorService executor = Executors.newScheduledThreadPool(1, ThreadUtils.daemonThreadFactory());
+        TimerWheel wheel = TimerWheel.shared();
 
-        executor.scheduleAtFixedRate(new EvictionTask(), timeout, timeout, TimeUnit.MILLISECONDS);
+        EvictionTask<T> task = new EvictionTask<T>(this);
+
+        sweeper = wheel.scheduleAtFixedRate(task, Math.max(bucketSize, wheel.getTickDuration()));
+
+        task.timeout = sweeper;
     }
 
     /**
-     * Add the given element to the cache.
+     * Add the given element to the cache. If the element is already in the cache, its timeout is restarted.
      *
      * @param element The element to add to the cache.
      *
@@ -65,7 +115,27 @@ public class SimpleTimedCache<T> {
             throw new IllegalArgumentException("The cache doesn't support null elements");
         }
 
-        elements.add(new TimedElement(element));
+        long now = System.currentTimeMillis();
+        long expiration = now + timeout;
+
+        expirations.put(element, expiration);
+
+        long index = expiration / bucketSize;
+
+        Set<T> bucket = getBucket(index);
+        bucket.add(element);
+
+        //The bucket can have been removed by a concurrent eviction before the element was added
+        while (buckets.get(index) != bucket) {
+            bucket = getBucket(index);
+            bucket.add(element);
+        }
+
+        if (maximumSize > 0 && expirations.size() > maximumSize) {
+            evictOldest();
+        }
+
+        sweepIfNecessary(now);
     }
 
     /**
@@ -76,69 +146,172 @@ public class SimpleTimedCache<T> {
      * @return {@code true} if the cache contains the object otherwise {@code false}.
      */
     public boolean contains(T element) {
-        for (TimedElement timedElement : elements) {
-            if (timedElement.get().equals(element)) {
-                return true;
-            }
+        if (element == null) {
+            return false;
         }
 
-        return false;
+        long now = System.currentTimeMillis();
+
+        sweepIfNecessary(now);
+
+        Long expiration = expirations.get(element);
+
+        if (expiration == null) {
+            return false;
+        }
+
+        if (expiration <= now) {
+            expirations.remove(element, expiration);
+
+            return false;
+        }
+
+        return true;
     }
 
     /**
-     * A timed element.
+     * Return the number of elements in the cache. The count can include expired elements that have not been swept
+     * yet.
      *
-     * @author Baptiste Wicht
+     * @return The number of elements in the cache.
      */
-    private final class TimedElement {
-        private final T element;
-        private final long time;
+    public int size() {
+        return expirations.size();
+    }
 
-        /**
-         * Create a new TimedElement.
-         *
-         * @param element The element.
-         */
-        private TimedElement(T element) {
-            super();
+    /**
+     * Remove all the expired elements from the cache.
+     */
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+
+        Iterator<Entry<Long, Set<T>>> iterator = buckets.headMap(now / bucketSize).entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Entry<Long, Set<T>> bucket = iterator.next();
+
+            iterator.remove();
+
+            for (T element : bucket.getValue()) {
+                Long expiration = expirations.get(element);
+
+                if (expiration != null && expiration <= now) {
+                    expirations.remove(element, expiration);
+                }
+            }
+        }
+    }
 
-            this.element = element;
+    /**
+     * Close the cache. The cache is unregistered from the timer wheel and all its elements are removed. After that,
+     * the expired elements are only removed on access.
+     */
+    @Override
+    public void close() {
+        sweeper.cancel();
+
+        expirations.clear();
+        buckets.clear();
+    }
 
-            time = System.currentTimeMillis();
+    /**
+     * Make a sweep of the expired buckets if the last one is old enough. Only one of the concurrent callers will make
+     * the sweep, the others return directly.
+     *
+     * @param now The current time.
+     */
+    private void sweepIfNecessary(long now) {
+        long next = nextSweep.get();
+
+        if (now >= next && nextSweep.compareAndSet(next, now + bucketSize)) {
+            evictExpired();
         }
+    }
 
-        /**
-         * Indicate if the element is too old.
-         *
-         * @return {@code true} if the element is too old otherwise {@code false}.
-         */
-        private boolean isTooOld() {
-            return System.currentTimeMillis() > time + timeout;
+    /**
+     * Evict the elements expiring first until the size of the cache is under the maximum size. The buckets are
+     * removed once their last element has been evicted.
+     */
+    private void evictOldest() {
+        for (Entry<Long, Set<T>> bucket : buckets.entrySet()) {
+            Iterator<T> iterator = bucket.getValue().iterator();
+
+            while (iterator.hasNext()) {
+                if (expirations.size() <= maximumSize) {
+                    return;
+                }
+
+                T element = iterator.next();
+
+                iterator.remove();
+
+                if (bucket.getValue().isEmpty()) {
+                    buckets.remove(bucket.getKey(), bucket.getValue());
+                }
+
+                Long expiration = expirations.get(element);
+
+                if (expiration != null && expiration / bucketSize == bucket.getKey()) {
+                    expirations.remove(element, expiration);
+                }
+            }
         }
+    }
 
-        /**
-         * Return the element.
-         *
-         * @return The element.
-         */
-        private T get() {
-            return element;
+    /**
+     * Return the bucket with the given index. The bucket is created if it doesn't exist.
+     *
+     * @param index The index of the bucket.
+     *
+     * @return The bucket.
+     */
+    private Set<T> getBucket(long index) {
+        Set<T> bucket = buckets.get(index);
+
+        if (bucket == null) {
+            Set<T> newBucket = Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>(16));
+
+            bucket = buckets.putIfAbsent(index, newBucket);
+
+            if (bucket == null) {
+                bucket = newBucket;
+            }
         }
+
+        return bucket;
     }
 
     /**
-     * The task to evict the old elements.
+     * The task to evict the expired elements. The task only keeps a weak reference to the cache, so it cancels
+     * itself once the cache has been garbage collected.
      *
      * @author Baptiste Wicht
+     * @param <T> The type of object in the cache.
      */
-    private class EvictionTask implements Runnable {
+    private static final class EvictionTask<T> implements Runnable {
+        private final WeakReference<SimpleTimedCache<T>> cache;
+        private volatile TimerWheel.Timeout timeout;
+
+        /**
+         * Create a new EvictionTask.
+         *
+         * @param cache The cache to evict the elements from.
+         */
+        private EvictionTask(SimpleTimedCache<T> cache) {
+            super();
+
+            this.cache = new WeakReference<SimpleTimedCache<T>>(cache);
+        }
+
         @Override
         public void run() {
-            for (TimedElement element : elements) {
-                if (element.isTooOld()) {
-                    elements.remove(element);
-                }
+            SimpleTimedCache<T> timedCache = cache.get();
+
+            if (timedCache != null) {
+                timedCache.evictExpired();
+            } else if (timeout != null) {
+                timeout.cancel();
             }
         }
     }
-}
\ No newline at end of file
+}
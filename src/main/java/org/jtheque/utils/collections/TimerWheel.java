@@ -0,0 +1,383 @@
+package org.jtheque.utils.collections;
+
+import org.jtheque.utils.ThreadUtils;
+import org.jtheque.utils.annotations.GuardedInternally;
+import org.jtheque.utils.annotations.ThreadSafe;
+
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A hashed timing wheel. All the tasks of the wheel are executed by a single daemon thread that is started on the first
+ * scheduling. The tasks are put in the slot of their deadline and the thread only visits one slot per tick, so
+ * scheduling and cancelling a task are made in constant time. The tasks are executed with at most one tick of delay,
+ * so they must be short, but never before their deadline. A wheel is stopped with {@link #stop()}. A process-wide wheel,
+ * that cannot be stopped, is available with {@link #shared()}.
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+public final class TimerWheel {
+    /**
+     * The minimal duration of a tick in milliseconds.
+     */
+    private static final long MIN_TICK = 1;
+
+    private static final TimerWheel SHARED = new TimerWheel(100, 512);
+
+    private final long tickDuration;
+    private final int mask;
+
+    @GuardedInternally
+    private final List<Collection<WheelTimeout>> wheel;
+
+    @GuardedInternally
+    private final Queue<WheelTimeout> pending = new ConcurrentLinkedQueue<WheelTimeout>();
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    private volatile boolean stopped;
+    private volatile Thread thread;
+
+    /**
+     * Create a new TimerWheel.
+     *
+     * @param tickDuration The duration of a tick in milliseconds.
+     * @param wheelSize    The number of slots of the wheel. The size is rounded up to a power of two.
+     */
+    public TimerWheel(long tickDuration, int wheelSize) {
+        super();
+
+        if (tickDuration < MIN_TICK) {
+            throw new IllegalArgumentException("The tick duration must be at least " + MIN_TICK + " ms. ");
+        }
+
+        if (wheelSize <= 0) {
+            throw new IllegalArgumentException("The size of the wheel must be greater than zero. ");
+        }
+
+        this.tickDuration = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+
+        int size = Integer.highestOneBit(wheelSize);
+
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+
+        mask = size - 1;
+        wheel = CollectionUtils.newList(size);
+
+        for (int i = 0; i < size; i++) {
+            wheel.add(CollectionUtils.<WheelTimeout>newList(4));
+        }
+    }
+
+    /**
+     * Return the process-wide timer wheel. The ticks of this wheel are of 100 ms.
+     *
+     * @return The shared timer wheel.
+     */
+    public static TimerWheel shared() {
+        return SHARED;
+    }
+
+    /**
+     * Return the duration of a tick.
+     *
+     * @return The duration of a tick in milliseconds.
+     */
+    public long getTickDuration() {
+        return TimeUnit.NANOSECONDS.toMillis(tickDuration);
+    }
+
+    /**
+     * Stop the wheel. The scheduled tasks are not executed anymore and the thread of the wheel is stopped. The wheel
+     * cannot be restarted.
+     *
+     * @throws IllegalStateException If the wheel is the shared one.
+     */
+    public void stop() {
+        if (this == SHARED) {
+            throw new IllegalStateException("The shared wheel cannot be stopped");
+        }
+
+        stopped = true;
+
+        Thread worker = thread;
+
+        if (worker != null) {
+            worker.interrupt();
+        }
+
+        pending.clear();
+    }
+
+    /**
+     * Indicate if the wheel has been stopped.
+     *
+     * @return {@code true} if the wheel has been stopped otherwise {@code false}.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Schedule the task to run once after the given delay.
+     *
+     * @param task  The task to run.
+     * @param delay The delay in milliseconds.
+     *
+     * @return The timeout of the task, can be used to cancel it.
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        return schedule(task, delay, 0);
+    }
+
+    /**
+     * Schedule the task to run periodically. The first run is after one period.
+     *
+     * @param task   The task to run.
+     * @param period The period in milliseconds.
+     *
+     * @return The timeout of the task, can be used to cancel it.
+     */
+    public Timeout scheduleAtFixedRate(Runnable task, long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("The period is less than or equals to zero. ");
+        }
+
+        return schedule(task, period, period);
+    }
+
+    /**
+     * Schedule the task.
+     *
+     * @param task   The task to run.
+     * @param delay  The delay of the first execution in milliseconds.
+     * @param period The period in milliseconds, 0 if the task must be executed only once.
+     *
+     * @return The timeout of the task.
+     *
+     * @throws IllegalStateException If the wheel is stopped.
+     */
+    private Timeout schedule(Runnable task, long delay, long period) {
+        if (task == null) {
+            throw new IllegalArgumentException("The task cannot be null");
+        }
+
+        if (stopped) {
+            throw new IllegalStateException("The wheel is stopped");
+        }
+
+        WheelTimeout timeout = new WheelTimeout(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay),
+                TimeUnit.MILLISECONDS.toNanos(period));
+
+        pending.add(timeout);
+
+        if (!started.get() && started.compareAndSet(false, true)) {
+            Thread worker = ThreadUtils.daemonThreadFactory().newThread(new Worker());
+            worker.setName("TimerWheel");
+
+            thread = worker;
+
+            worker.start();
+
+            //The wheel may have been stopped before the thread was published
+            if (stopped) {
+                worker.interrupt();
+            }
+        }
+
+        return timeout;
+    }
+
+    /**
+     * A handle on a scheduled task.
+     *
+     * @author Baptiste Wicht
+     */
+    public interface Timeout {
+        /**
+         * Cancel the task. If the task is running, the current execution is not interrupted.
+         */
+        void cancel();
+
+        /**
+         * Indicate if the task has been cancelled.
+         *
+         * @return {@code true} if the task has been cancelled otherwise {@code false}.
+         */
+        boolean isCancelled();
+    }
+
+    /**
+     * A task scheduled in the wheel.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class WheelTimeout implements Timeout {
+        private final Runnable task;
+        private final long period;
+        private volatile boolean cancelled;
+
+        private long deadline;
+        private long rounds;
+
+        /**
+         * Create a new WheelTimeout.
+         *
+         * @param task     The task to run.
+         * @param deadline The deadline in nanoseconds.
+         * @param period   The period in nanoseconds.
+         */
+        private WheelTimeout(Runnable task, long deadline, long period) {
+            super();
+
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * The worker of the wheel. The slots are only accessed from this worker.
+     *
+     * @author Baptiste Wicht
+     */
+    private final class Worker implements Runnable {
+        private long startTime;
+        private long tick;
+
+        @Override
+        public void run() {
+            startTime = System.nanoTime();
+
+            while (!stopped) {
+                if (!waitForNextTick()) {
+                    return;
+                }
+
+                transferPending();
+
+                expire(wheel.get((int) (tick & mask)));
+
+                tick++;
+            }
+        }
+
+        /**
+         * Wait until the next tick.
+         *
+         * @return {@code false} if the thread has been interrupted.
+         */
+        private boolean waitForNextTick() {
+            long deadline = startTime + tickDuration * (tick + 1);
+
+            long sleep = deadline - System.nanoTime();
+
+            while (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    return false;
+                }
+
+                sleep = deadline - System.nanoTime();
+            }
+
+            return true;
+        }
+
+        /**
+         * Put the pending timeouts in their slot. The slot of the tick t is expired at startTime + (t + 1) *
+         * tickDuration, so the timeout is put in the first slot expired at or after its deadline, rounding up, and
+         * never runs early.
+         */
+        private void transferPending() {
+            WheelTimeout timeout = pending.poll();
+
+            while (timeout != null) {
+                if (!timeout.isCancelled()) {
+                    long elapsed = timeout.deadline - startTime;
+                    long expiration = elapsed <= 0 ? 0 : (elapsed + tickDuration - 1) / tickDuration;
+
+                    long ticks = Math.max(tick, expiration - 1);
+
+                    timeout.rounds = (ticks - tick) / wheel.size();
+
+                    wheel.get((int) (ticks & mask)).add(timeout);
+                }
+
+                timeout = pending.poll();
+            }
+        }
+
+        /**
+         * Run the timeouts of the slot whose deadline has been reached.
+         *
+         * @param slot The current slot.
+         */
+        private void expire(Collection<WheelTimeout> slot) {
+            Iterator<WheelTimeout> iterator = slot.iterator();
+
+            while (iterator.hasNext()) {
+                WheelTimeout timeout = iterator.next();
+
+                if (timeout.isCancelled()) {
+                    iterator.remove();
+                } else if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                } else {
+                    iterator.remove();
+
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        LoggerFactory.getLogger(TimerWheel.class).error("Exception occurred in a timed task", e);
+                    }
+
+                    if (timeout.period > 0 && !timeout.isCancelled()) {
+                        timeout.deadline += timeout.period;
+
+                        pending.add(timeout);
+                    }
+                }
+            }
+        }
+    }
+}
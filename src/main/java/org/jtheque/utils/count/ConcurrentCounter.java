@@ -0,0 +1,129 @@
+package org.jtheque.utils.count;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe counter. The value is striped over several cells, each thread updating the cell of its own stripe, so
+ * concurrent updates don't contend on the same memory location, and is only summed on read. The cells are spaced by
+ * a cache line to avoid false sharing. The updates never lock and each cell is swapped atomically when the counter is
+ * read and cleared, so no update is lost.
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+public final class ConcurrentCounter {
+    /**
+     * The distance between two cells, 8 longs make a cache line of 64 bytes.
+     */
+    private static final int PADDING = 8;
+
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * Return the current value of the counter. The value is not an atomic snapshot if the counter is updated
+     * concurrently.
+     *
+     * @return The value of the counter.
+     */
+    public long getValue() {
+        long sum = 0;
+
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+
+        return sum;
+    }
+
+    /**
+     * Increment the counter of 1.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Decrement the counter of 1.
+     */
+    public void decrement() {
+        add(-1);
+    }
+
+    /**
+     * Add i to the counter.
+     *
+     * @param i The value to add.
+     */
+    public void add(long i) {
+        cells.getAndAdd(cellOfCurrentThread(), i);
+    }
+
+    /**
+     * Clear the counter. This method set the current counter value to 0.
+     */
+    public void clear() {
+        for (int i = 0; i < STRIPES; i++) {
+            cells.set(i * PADDING, 0);
+        }
+    }
+
+    /**
+     * Return the current value of the counter and set it to 0. Each cell is atomically swapped with 0, so the updates
+     * made concurrently are either counted in the returned value or kept in the counter, none is lost.
+     *
+     * @return The value of the counter before the reset.
+     */
+    public long getValueAndClear() {
+        long sum = 0;
+
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.getAndSet(i * PADDING, 0);
+        }
+
+        return sum;
+    }
+
+    /**
+     * Return the index of the cell of the current thread.
+     *
+     * @return The index of the cell.
+     */
+    private static int cellOfCurrentThread() {
+        long id = Thread.currentThread().getId();
+
+        int hash = (int) (id ^ id >>> 32) * 0x9E3779B9;
+
+        return (hash >>> 16 & STRIPES - 1) * PADDING;
+    }
+
+    /**
+     * Return the number of stripes, the power of two following the number of processors.
+     *
+     * @return The number of stripes.
+     */
+    private static int stripes() {
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        return Integer.highestOneBit(Math.max(1, processors) * 2 - 1);
+    }
+}
@@ -0,0 +1,135 @@
+package org.jtheque.utils.count;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.annotations.GuardedInternally;
+import org.jtheque.utils.annotations.ThreadSafe;
+import org.jtheque.utils.collections.CollectionUtils;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread safe collection of counters. The counters are created without locking and the iteration and the snapshots
+ * never block the threads updating the counters. In reset on read mode, each snapshot returns the values counted since
+ * the previous snapshot, which is convenient to export periodic metrics.
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+public final class ConcurrentCounters implements Iterable<Entry<String, ConcurrentCounter>> {
+    @GuardedInternally
+    private final ConcurrentMap<String, ConcurrentCounter> counters = new ConcurrentHashMap<String, ConcurrentCounter>(10);
+
+    private final boolean resetOnRead;
+
+    /**
+     * Create a new ConcurrentCounters. The snapshots don't reset the counters.
+     */
+    public ConcurrentCounters() {
+        this(false);
+    }
+
+    /**
+     * Create a new ConcurrentCounters.
+     *
+     * @param resetOnRead Indicate if the snapshots must reset the counters.
+     */
+    public ConcurrentCounters(boolean resetOnRead) {
+        super();
+
+        this.resetOnRead = resetOnRead;
+    }
+
+    /**
+     * Add a counter with a specific name to the collection. If a counter already exists with this name, it's kept.
+     *
+     * @param name The name of the new counter.
+     */
+    public void addCounter(String name) {
+        getCounterOrAdd(name);
+    }
+
+    /**
+     * Return the counter named with the specific name.
+     *
+     * @param name The name of the counter we search.
+     *
+     * @return The searched counter or {@code null} if there is no counter with this name.
+     */
+    public ConcurrentCounter getCounter(String name) {
+        return counters.get(name);
+    }
+
+    /**
+     * Return the named counter or a new if the counter doesn't exist. Concurrent callers always get the same counter.
+     *
+     * @param name The name of the counter.
+     *
+     * @return The searched counter or a new if we doesn't find one counter.
+     */
+    public ConcurrentCounter getCounterOrAdd(String name) {
+        ConcurrentCounter counter = counters.get(name);
+
+        if (counter == null) {
+            ConcurrentCounter newCounter = new ConcurrentCounter();
+
+            counter = counters.putIfAbsent(name, newCounter);
+
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+
+        return counter;
+    }
+
+    /**
+     * Return a snapshot of the values of the counters. In reset on read mode, the counters are reset.
+     *
+     * @return An unmodifiable map of the values of the counters by name.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = CollectionUtils.newHashMap(counters.size());
+
+        for (Entry<String, ConcurrentCounter> entry : counters.entrySet()) {
+            ConcurrentCounter counter = entry.getValue();
+
+            snapshot.put(entry.getKey(), resetOnRead ? counter.getValueAndClear() : counter.getValue());
+        }
+
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Indicate if the snapshots reset the counters.
+     *
+     * @return {@code true} if the counters are reset on read otherwise {@code false}.
+     */
+    public boolean isResetOnRead() {
+        return resetOnRead;
+    }
+
+    @Override
+    public Iterator<Entry<String, ConcurrentCounter>> iterator() {
+        return Collections.unmodifiableMap(counters).entrySet().iterator();
+    }
+}
@@ -0,0 +1,31 @@
+package org.jtheque.utils.count;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A gauge, the instantaneous value of something. The value is computed each time it's read.
+ *
+ * @author Baptiste Wicht
+ */
+public interface Gauge {
+    /**
+     * Return the current value of the gauge.
+     *
+     * @return The value of the gauge.
+     */
+    double getValue();
+}
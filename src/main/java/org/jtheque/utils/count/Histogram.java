@@ -0,0 +1,268 @@
+package org.jtheque.utils.count;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.annotations.Immutable;
+import org.jtheque.utils.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * A histogram of positive long values. The values are counted in logarithmic buckets : each power of two is split in 32
+ * sub buckets, so the values are recorded with a relative error of at most 3% whatever their magnitude and the memory
+ * of the histogram is bounded. Recording a value is lock free.
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+public final class Histogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+    private static final int BUCKETS = LINEAR_BUCKETS + (63 - (SUB_BITS + 1)) * SUB_BUCKETS;
+
+    private static final LongBinaryOperator MIN = new LongBinaryOperator() {
+        @Override
+        public long applyAsLong(long left, long right) {
+            return Math.min(left, right);
+        }
+    };
+
+    private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+        @Override
+        public long applyAsLong(long left, long right) {
+            return Math.max(left, right);
+        }
+    };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator min = new LongAccumulator(MIN, Long.MAX_VALUE);
+    private final LongAccumulator max = new LongAccumulator(MAX, Long.MIN_VALUE);
+
+    /**
+     * Record a value. The negative values are recorded as 0.
+     *
+     * @param value The value to record.
+     */
+    public void update(long value) {
+        long v = Math.max(0, value);
+
+        buckets.incrementAndGet(indexOf(v));
+
+        count.increment();
+        sum.add(v);
+        min.accumulate(v);
+        max.accumulate(v);
+    }
+
+    /**
+     * Return the number of recorded values.
+     *
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Return a snapshot of the histogram. The values recorded during the snapshot may be partially included.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot getSnapshot() {
+        long[] counts = new long[BUCKETS];
+
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        return new Snapshot(counts, total, sum.sum(), min.get(), max.get());
+    }
+
+    /**
+     * Return the index of the bucket of the value.
+     *
+     * @param value The positive value.
+     *
+     * @return The index of the bucket.
+     */
+    static int indexOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+
+        return LINEAR_BUCKETS + (exponent - SUB_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Return the highest value of the bucket.
+     *
+     * @param index The index of the bucket.
+     *
+     * @return The highest value counted in the bucket.
+     */
+    static long highestValueOf(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+
+        int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + SUB_BITS + 1;
+        int sub = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+
+        long lowest = (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+
+        return lowest + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * A snapshot of the histogram.
+     *
+     * @author Baptiste Wicht
+     */
+    @Immutable
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        /**
+         * Create a new Snapshot.
+         *
+         * @param counts The counts of the buckets.
+         * @param count  The number of values.
+         * @param sum    The sum of the values.
+         * @param min    The minimum value.
+         * @param max    The maximum value.
+         */
+        private Snapshot(long[] counts, long count, long sum, long min, long max) {
+            super();
+
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * Return the number of values.
+         *
+         * @return The number of values.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Return the minimum value.
+         *
+         * @return The minimum value or 0 if there is no value.
+         */
+        public long getMin() {
+            return count == 0 ? 0 : min;
+        }
+
+        /**
+         * Return the maximum value.
+         *
+         * @return The maximum value or 0 if there is no value.
+         */
+        public long getMax() {
+            return count == 0 ? 0 : max;
+        }
+
+        /**
+         * Return the mean of the values.
+         *
+         * @return The mean or 0 if there is no value.
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Return the value at the given quantile.
+         *
+         * @param quantile The quantile, in [0, 1].
+         *
+         * @return The highest value of the bucket containing the quantile, bounded by the maximum value.
+         */
+        public long getValue(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("The quantile must be in [0, 1]");
+            }
+
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+
+                if (seen >= rank) {
+                    return Math.max(getMin(), Math.min(getMax(), highestValueOf(i)));
+                }
+            }
+
+            return getMax();
+        }
+
+        /**
+         * Return the median.
+         *
+         * @return The median.
+         */
+        public long getMedian() {
+            return getValue(0.5);
+        }
+
+        /**
+         * Return the 99th percentile.
+         *
+         * @return The 99th percentile.
+         */
+        public long get99thPercentile() {
+            return getValue(0.99);
+        }
+
+        /**
+         * Return the 99.9th percentile.
+         *
+         * @return The 99.9th percentile.
+         */
+        public long get999thPercentile() {
+            return getValue(0.999);
+        }
+    }
+}
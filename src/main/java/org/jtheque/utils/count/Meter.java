@@ -0,0 +1,188 @@
+package org.jtheque.utils.count;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.annotations.GuardedBy;
+import org.jtheque.utils.annotations.ThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A meter, the rate of events. The meter gives the mean rate since its creation and the one, five and fifteen minutes
+ * exponentially weighted moving average rates. The events are counted in striped cells and the moving averages are
+ * updated every five seconds by the first thread seeing that the interval is elapsed, so marking an event never locks.
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+public final class Meter {
+    private static final long TICK_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * After this number of idle intervals, the moving averages are almost null, the next ones are not computed.
+     */
+    private static final long MAX_TICKS = 2000;
+
+    private static final double[] ALPHAS = {
+            1 - Math.exp(-5 / 60.0),
+            1 - Math.exp(-5 / 60.0 / 5),
+            1 - Math.exp(-5 / 60.0 / 15)
+    };
+
+    private final LongAdder count = new LongAdder();
+    private final ConcurrentCounter uncounted = new ConcurrentCounter();
+
+    private final long startTime;
+    private final AtomicLong lastTick;
+
+    @GuardedBy("this")
+    private final double[] rates = new double[3];
+
+    @GuardedBy("this")
+    private boolean initialized;
+
+    /**
+     * Create a new Meter.
+     */
+    public Meter() {
+        super();
+
+        startTime = System.nanoTime();
+        lastTick = new AtomicLong(startTime);
+    }
+
+    /**
+     * Mark the occurrence of an event.
+     */
+    public void mark() {
+        mark(1);
+    }
+
+    /**
+     * Mark the occurrence of n events.
+     *
+     * @param n The number of events.
+     */
+    public void mark(long n) {
+        tickIfNecessary();
+
+        count.add(n);
+        uncounted.add(n);
+    }
+
+    /**
+     * Return the number of events.
+     *
+     * @return The number of events.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Return the mean rate of events since the creation of the meter.
+     *
+     * @return The number of events per second.
+     */
+    public double getMeanRate() {
+        long elapsed = System.nanoTime() - startTime;
+
+        return elapsed <= 0 ? 0 : getCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * Return the one minute moving average rate.
+     *
+     * @return The number of events per second.
+     */
+    public double getOneMinuteRate() {
+        return getRate(0);
+    }
+
+    /**
+     * Return the five minutes moving average rate.
+     *
+     * @return The number of events per second.
+     */
+    public double getFiveMinutesRate() {
+        return getRate(1);
+    }
+
+    /**
+     * Return the fifteen minutes moving average rate.
+     *
+     * @return The number of events per second.
+     */
+    public double getFifteenMinutesRate() {
+        return getRate(2);
+    }
+
+    /**
+     * Return the moving average rate at the given index.
+     *
+     * @param index The index of the rate.
+     *
+     * @return The number of events per second.
+     */
+    private double getRate(int index) {
+        tickIfNecessary();
+
+        synchronized (this) {
+            return rates[index] * TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+
+    /**
+     * Update the moving averages if at least one interval is elapsed since the last update.
+     */
+    private void tickIfNecessary() {
+        long old = lastTick.get();
+        long age = System.nanoTime() - old;
+
+        if (age > TICK_INTERVAL) {
+            long newTick = old + age - age % TICK_INTERVAL;
+
+            if (lastTick.compareAndSet(old, newTick)) {
+                tick(age / TICK_INTERVAL);
+            }
+        }
+    }
+
+    /**
+     * Update the moving averages.
+     *
+     * @param ticks The number of elapsed intervals.
+     */
+    private synchronized void tick(long ticks) {
+        double instantRate = uncounted.getValueAndClear() / (double) TICK_INTERVAL;
+
+        for (long i = 0; i < Math.min(ticks, MAX_TICKS); i++) {
+            for (int r = 0; r < rates.length; r++) {
+                if (initialized) {
+                    rates[r] += ALPHAS[r] * (instantRate - rates[r]);
+                } else {
+                    rates[r] = instantRate;
+                }
+            }
+
+            initialized = true;
+            instantRate = 0;
+        }
+    }
+}
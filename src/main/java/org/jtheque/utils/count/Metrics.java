@@ -0,0 +1,363 @@
+package org.jtheque.utils.count;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.annotations.GuardedInternally;
+import org.jtheque.utils.annotations.ThreadSafe;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * A registry of named metrics : counters, gauges, meters, histograms and timers. The metrics are created on first use
+ * and a name can only be used by one type of metric. The registry can make a snapshot of all its metrics and dump them
+ * as plain text or as JSON. A process-wide registry is available with {@link #getDefault()}.
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+public final class Metrics {
+    private static final Metrics DEFAULT = new Metrics();
+
+    @GuardedInternally
+    private final ConcurrentNavigableMap<String, Object> metrics = new ConcurrentSkipListMap<String, Object>();
+
+    /**
+     * Return the process-wide registry.
+     *
+     * @return The default registry.
+     */
+    public static Metrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Return the counter of the given name. The counter is created if it doesn't exist.
+     *
+     * @param name The name of the counter.
+     *
+     * @return The counter.
+     */
+    public ConcurrentCounter counter(String name) {
+        return getOrAdd(name, ConcurrentCounter.class, new Supplier<ConcurrentCounter>() {
+            @Override
+            public ConcurrentCounter get() {
+                return new ConcurrentCounter();
+            }
+        });
+    }
+
+    /**
+     * Return the meter of the given name. The meter is created if it doesn't exist.
+     *
+     * @param name The name of the meter.
+     *
+     * @return The meter.
+     */
+    public Meter meter(String name) {
+        return getOrAdd(name, Meter.class, new Supplier<Meter>() {
+            @Override
+            public Meter get() {
+                return new Meter();
+            }
+        });
+    }
+
+    /**
+     * Return the histogram of the given name. The histogram is created if it doesn't exist.
+     *
+     * @param name The name of the histogram.
+     *
+     * @return The histogram.
+     */
+    public Histogram histogram(String name) {
+        return getOrAdd(name, Histogram.class, new Supplier<Histogram>() {
+            @Override
+            public Histogram get() {
+                return new Histogram();
+            }
+        });
+    }
+
+    /**
+     * Return the timer of the given name. The timer is created if it doesn't exist.
+     *
+     * @param name The name of the timer.
+     *
+     * @return The timer.
+     */
+    public Timer timer(String name) {
+        return getOrAdd(name, Timer.class, new Supplier<Timer>() {
+            @Override
+            public Timer get() {
+                return new Timer();
+            }
+        });
+    }
+
+    /**
+     * Register a gauge. An existing gauge with the same name is replaced. The name is never taken from another type
+     * of metric, even temporarily.
+     *
+     * @param name  The name of the gauge.
+     * @param gauge The gauge.
+     *
+     * @throws IllegalArgumentException If the name is used by another type of metric.
+     */
+    public void register(String name, Gauge gauge) {
+        while (true) {
+            Object previous = metrics.putIfAbsent(name, gauge);
+
+            if (previous == null) {
+                return;
+            }
+
+            if (!(previous instanceof Gauge)) {
+                throw new IllegalArgumentException("The name " + name + " is already used by another type of metric");
+            }
+
+            if (metrics.replace(name, previous, gauge)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove the metric of the given name.
+     *
+     * @param name The name of the metric.
+     */
+    public void remove(String name) {
+        metrics.remove(name);
+    }
+
+    /**
+     * Return a snapshot of all the metrics. Each metric is described by its values : count for the counters, value
+     * for the gauges, count and rates (per second) for the meters, count, min, max, mean and percentiles for the
+     * histograms and the timers (in nanoseconds) and the rates of the timers.
+     *
+     * @return An unmodifiable map of the values of the metrics, sorted by name.
+     */
+    public Map<String, Map<String, Number>> snapshot() {
+        Map<String, Map<String, Number>> snapshot = new LinkedHashMap<String, Map<String, Number>>(metrics.size());
+
+        for (Entry<String, Object> entry : metrics.entrySet()) {
+            Map<String, Number> values = new LinkedHashMap<String, Number>(12);
+
+            Object metric = entry.getValue();
+
+            if (metric instanceof ConcurrentCounter) {
+                values.put("count", ((ConcurrentCounter) metric).getValue());
+            } else if (metric instanceof Gauge) {
+                values.put("value", ((Gauge) metric).getValue());
+            } else if (metric instanceof Meter) {
+                addMeter(values, (Meter) metric);
+            } else if (metric instanceof Histogram) {
+                addHistogram(values, ((Histogram) metric).getSnapshot());
+            } else if (metric instanceof Timer) {
+                addHistogram(values, ((Timer) metric).getSnapshot());
+                addRates(values, ((Timer) metric).getMeter());
+            }
+
+            snapshot.put(entry.getKey(), Collections.unmodifiableMap(values));
+        }
+
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Return a plain text dump of the metrics, one metric by line.
+     *
+     * @return The plain text dump.
+     */
+    public String toText() {
+        StringBuilder builder = new StringBuilder(512);
+
+        for (Entry<String, Map<String, Number>> metric : snapshot().entrySet()) {
+            builder.append(metric.getKey()).append(':');
+
+            for (Entry<String, Number> value : metric.getValue().entrySet()) {
+                builder.append(' ').append(value.getKey()).append('=');
+                appendNumber(builder, value.getValue());
+            }
+
+            builder.append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Return a JSON dump of the metrics. The dump is an object with one member by metric.
+     *
+     * @return The JSON dump.
+     */
+    public String toJson() {
+        StringBuilder builder = new StringBuilder(512);
+
+        builder.append('{');
+
+        boolean firstMetric = true;
+
+        for (Entry<String, Map<String, Number>> metric : snapshot().entrySet()) {
+            if (!firstMetric) {
+                builder.append(',');
+            }
+
+            firstMetric = false;
+
+            appendString(builder, metric.getKey());
+            builder.append(":{");
+
+            boolean firstValue = true;
+
+            for (Entry<String, Number> value : metric.getValue().entrySet()) {
+                if (!firstValue) {
+                    builder.append(',');
+                }
+
+                firstValue = false;
+
+                appendString(builder, value.getKey());
+                builder.append(':');
+                appendNumber(builder, value.getValue());
+            }
+
+            builder.append('}');
+        }
+
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Return the metric of the given name and type. The metric is created if it doesn't exist.
+     *
+     * @param name    The name of the metric.
+     * @param type    The type of the metric.
+     * @param factory The factory to create the metric.
+     * @param <T>     The type of the metric.
+     *
+     * @return The metric.
+     *
+     * @throws IllegalArgumentException If the name is used by another type of metric.
+     */
+    private <T> T getOrAdd(String name, Class<T> type, Supplier<T> factory) {
+        Object metric = metrics.get(name);
+
+        if (metric == null) {
+            T newMetric = factory.get();
+
+            metric = metrics.putIfAbsent(name, newMetric);
+
+            if (metric == null) {
+                metric = newMetric;
+            }
+        }
+
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("The name " + name + " is already used by another type of metric");
+        }
+
+        return type.cast(metric);
+    }
+
+    /**
+     * Add the values of the meter.
+     *
+     * @param values The values of the metric.
+     * @param meter  The meter.
+     */
+    private static void addMeter(Map<String, Number> values, Meter meter) {
+        values.put("count", meter.getCount());
+
+        addRates(values, meter);
+    }
+
+    /**
+     * Add the rates of the meter.
+     *
+     * @param values The values of the metric.
+     * @param meter  The meter.
+     */
+    private static void addRates(Map<String, Number> values, Meter meter) {
+        values.put("mean_rate", meter.getMeanRate());
+        values.put("m1_rate", meter.getOneMinuteRate());
+        values.put("m5_rate", meter.getFiveMinutesRate());
+        values.put("m15_rate", meter.getFifteenMinutesRate());
+    }
+
+    /**
+     * Add the values of the histogram snapshot.
+     *
+     * @param values   The values of the metric.
+     * @param snapshot The histogram snapshot.
+     */
+    private static void addHistogram(Map<String, Number> values, Histogram.Snapshot snapshot) {
+        values.put("count", snapshot.getCount());
+        values.put("min", snapshot.getMin());
+        values.put("max", snapshot.getMax());
+        values.put("mean", snapshot.getMean());
+        values.put("p50", snapshot.getMedian());
+        values.put("p99", snapshot.get99thPercentile());
+        values.put("p999", snapshot.get999thPercentile());
+    }
+
+    /**
+     * Append a number. The decimal numbers are rounded to three decimals and the infinite values are written as 0.
+     *
+     * @param builder The builder to append to.
+     * @param number  The number.
+     */
+    private static void appendNumber(StringBuilder builder, Number number) {
+        if (number instanceof Double || number instanceof Float) {
+            double value = number.doubleValue();
+
+            builder.append(Double.isNaN(value) || Double.isInfinite(value) ? 0 : Math.round(value * 1000) / 1000.0);
+        } else {
+            builder.append(number.longValue());
+        }
+    }
+
+    /**
+     * Append a JSON string.
+     *
+     * @param builder The builder to append to.
+     * @param value   The string.
+     */
+    private static void appendString(StringBuilder builder, CharSequence value) {
+        builder.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+
+        builder.append('"');
+    }
+}
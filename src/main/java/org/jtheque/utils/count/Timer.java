@@ -0,0 +1,137 @@
+package org.jtheque.utils.count;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.annotations.ThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A timer, the latency and the rate of an operation. The durations are recorded in nanoseconds in a {@link Histogram}
+ * and the calls in a {@link Meter}.
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+public final class Timer {
+    private final Histogram histogram = new Histogram();
+    private final Meter meter = new Meter();
+
+    /**
+     * Record a duration.
+     *
+     * @param duration The duration.
+     * @param unit     The unit of the duration.
+     */
+    public void update(long duration, TimeUnit unit) {
+        histogram.update(unit.toNanos(duration));
+        meter.mark();
+    }
+
+    /**
+     * Time the execution of the runnable.
+     *
+     * @param runnable The runnable to execute.
+     */
+    public void time(Runnable runnable) {
+        long start = System.nanoTime();
+
+        try {
+            runnable.run();
+        } finally {
+            update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Start to time an operation. The duration is recorded when the returned context is stopped, the context can be
+     * used in a try-with-resources statement.
+     *
+     * @return The context of the operation.
+     */
+    public Context start() {
+        return new Context(this);
+    }
+
+    /**
+     * Return the number of recorded durations.
+     *
+     * @return The number of recorded durations.
+     */
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    /**
+     * Return a snapshot of the durations, in nanoseconds.
+     *
+     * @return The snapshot of the durations.
+     */
+    public Histogram.Snapshot getSnapshot() {
+        return histogram.getSnapshot();
+    }
+
+    /**
+     * Return the meter of the calls.
+     *
+     * @return The meter of the calls.
+     */
+    public Meter getMeter() {
+        return meter;
+    }
+
+    /**
+     * The context of a timed operation.
+     *
+     * @author Baptiste Wicht
+     */
+    public static final class Context implements AutoCloseable {
+        private final Timer timer;
+        private final long start;
+
+        /**
+         * Create a new Context.
+         *
+         * @param timer The timer to record the duration in.
+         */
+        private Context(Timer timer) {
+            super();
+
+            this.timer = timer;
+
+            start = System.nanoTime();
+        }
+
+        /**
+         * Stop the operation and record its duration.
+         *
+         * @return The duration in nanoseconds.
+         */
+        public long stop() {
+            long duration = System.nanoTime() - start;
+
+            timer.update(duration, TimeUnit.NANOSECONDS);
+
+            return duration;
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+/**
+ * An output stream replacing a file atomically. The content is written to a temporary file in the folder of the target
+ * and the temporary file is renamed to the target when the stream is closed, so the target always contains either the
+ * old content or the complete new content, even after a crash. If the stream is synchronized, the temporary file is
+ * forced to the disk before the rename and the folder after it. If a write fails or if the stream is aborted, the
+ * target is not modified. The replaced target keeps its permissions. The stream is not thread safe.
+ *
+ * @author Baptiste Wicht
+ * @see AtomicWriteBatch
+ */
+public final class AtomicFileOutputStream extends FilterOutputStream {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File target;
+    private final File temp;
+    private final FileOutputStream stream;
+    private final boolean sync;
+    private final AtomicWriteBatch batch;
+
+    private boolean failed;
+    private boolean closed;
+
+    /**
+     * Create a new AtomicFileOutputStream.
+     *
+     * @param target The file to replace.
+     * @param sync   Indicate if the file must be forced to the disk before the rename.
+     *
+     * @throws IOException If the temporary file cannot be created.
+     */
+    public AtomicFileOutputStream(File target, boolean sync) throws IOException {
+        this(target, sync, null);
+    }
+
+    /**
+     * Create a new AtomicFileOutputStream.
+     *
+     * @param target The file to replace.
+     * @param sync   Indicate if the file must be forced to the disk before the rename.
+     * @param batch  The batch committing the file or {@code null} if the file is committed on close.
+     *
+     * @throws IOException If the temporary file cannot be created.
+     */
+    AtomicFileOutputStream(File target, boolean sync, AtomicWriteBatch batch) throws IOException {
+        this(target, createTemp(target), sync, batch);
+    }
+
+    /**
+     * Create a new AtomicFileOutputStream.
+     *
+     * @param target The file to replace.
+     * @param temp   The temporary file.
+     * @param sync   Indicate if the file must be forced to the disk before the rename.
+     * @param batch  The batch committing the file or {@code null} if the file is committed on close.
+     *
+     * @throws IOException If the temporary file cannot be opened.
+     */
+    private AtomicFileOutputStream(File target, File temp, boolean sync, AtomicWriteBatch batch) throws IOException {
+        this(target, temp, openTemp(temp), sync, batch);
+    }
+
+    /**
+     * Create a new AtomicFileOutputStream.
+     *
+     * @param target The file to replace.
+     * @param temp   The temporary file.
+     * @param stream The stream to the temporary file.
+     * @param sync   Indicate if the file must be forced to the disk before the rename.
+     * @param batch  The batch committing the file or {@code null} if the file is committed on close.
+     */
+    private AtomicFileOutputStream(File target, File temp, FileOutputStream stream, boolean sync,
+                                   AtomicWriteBatch batch) {
+        super(new BufferedOutputStream(stream, BUFFER_SIZE));
+
+        this.target = target;
+        this.temp = temp;
+        this.stream = stream;
+        this.sync = sync;
+        this.batch = batch;
+    }
+
+    /**
+     * Return the file replaced by this stream.
+     *
+     * @return The target file.
+     */
+    public File getTarget() {
+        return target;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        try {
+            out.write(b);
+        } catch (IOException e) {
+            failed = true;
+
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        try {
+            out.write(b, off, len);
+        } catch (IOException e) {
+            failed = true;
+
+            throw e;
+        }
+    }
+
+    /**
+     * Abort the writing. The temporary file is deleted and the target is not modified.
+     */
+    public void abort() {
+        if (!closed) {
+            closed = true;
+
+            FileUtils.close(stream);
+            FileUtils.delete(temp);
+        }
+    }
+
+    /**
+     * Close the stream and replace the target with the written content. If a write has failed, the writing is aborted
+     * instead. If the stream is part of a batch, the file is only replaced when the batch is committed.
+     *
+     * @throws IOException If the content cannot be written or the file cannot be renamed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        if (failed) {
+            abort();
+
+            throw new IOException("The writing of " + target + " has failed, the file has not been replaced");
+        }
+
+        closed = true;
+
+        try {
+            out.flush();
+
+            if (sync && batch == null) {
+                stream.getChannel().force(true);
+            }
+        } catch (IOException e) {
+            FileUtils.close(stream);
+            FileUtils.delete(temp);
+
+            throw e;
+        }
+
+        stream.close();
+
+        if (batch == null) {
+            try {
+                rename(temp, target);
+            } catch (IOException e) {
+                FileUtils.delete(temp);
+
+                throw e;
+            }
+
+            if (sync) {
+                syncFolder(target.getAbsoluteFile().getParentFile());
+            }
+        } else {
+            batch.add(temp, target);
+        }
+    }
+
+    /**
+     * Create the temporary file of the target, in the same folder, so that it can be renamed atomically. The temporary
+     * file has the default permissions of a new file or, if the target exists, the permissions of the target, so that
+     * the rename doesn't change them.
+     *
+     * @param target The target file.
+     *
+     * @return The temporary file.
+     *
+     * @throws IOException If the file cannot be created.
+     */
+    static File createTemp(File target) throws IOException {
+        File folder = target.getAbsoluteFile().getParentFile();
+
+        //Unlike Files.createTempFile, the file is created with the permissions allowed by the umask
+        File temp = File.createTempFile('.' + target.getName() + '.', ".tmp", folder);
+
+        PosixFileAttributeView view = Files.getFileAttributeView(target.toPath(), PosixFileAttributeView.class);
+
+        if (view != null && target.exists()) {
+            try {
+                Files.setPosixFilePermissions(temp.toPath(), view.readAttributes().permissions());
+            } catch (IOException e) {
+                FileUtils.delete(temp);
+
+                throw e;
+            }
+        }
+
+        return temp;
+    }
+
+    /**
+     * Open the temporary file. The file is deleted if it cannot be opened.
+     *
+     * @param temp The temporary file.
+     *
+     * @return The stream to the temporary file.
+     *
+     * @throws IOException If the file cannot be opened.
+     */
+    private static FileOutputStream openTemp(File temp) throws IOException {
+        try {
+            return new FileOutputStream(temp);
+        } catch (IOException e) {
+            FileUtils.delete(temp);
+
+            throw e;
+        }
+    }
+
+    /**
+     * Rename the temporary file to the target, atomically if the file system supports it.
+     *
+     * @param temp   The temporary file.
+     * @param target The target file.
+     *
+     * @throws IOException If the file cannot be renamed.
+     */
+    static void rename(File temp, File target) throws IOException {
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Force the given file to the disk.
+     *
+     * @param file The file to force.
+     *
+     * @throws IOException If the file cannot be forced.
+     */
+    static void force(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+
+        try {
+            channel.force(true);
+        } finally {
+            FileUtils.close(channel);
+        }
+    }
+
+    /**
+     * Force the entries of the folder to the disk, so that the renames survive a crash. Some platforms cannot open a
+     * folder, in this case, nothing is done.
+     *
+     * @param folder The folder to force.
+     */
+    static void syncFolder(File folder) {
+        try {
+            FileChannel channel = FileChannel.open(folder.toPath(), StandardOpenOption.READ);
+
+            try {
+                channel.force(true);
+            } finally {
+                FileUtils.close(channel);
+            }
+        } catch (IOException e) {
+            LoggerFactory.getLogger(AtomicFileOutputStream.class).debug("Unable to sync the folder " + folder, e);
+        }
+    }
+}
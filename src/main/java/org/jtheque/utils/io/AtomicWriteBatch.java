@@ -0,0 +1,239 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.ThreadUtils;
+import org.jtheque.utils.annotations.GuardedBy;
+import org.jtheque.utils.annotations.ThreadSafe;
+import org.jtheque.utils.collections.CollectionUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A group commit of atomic file writes. The files are written with the streams of the batch and are only replaced
+ * when the batch is committed. The commit forces all the written files to the disk concurrently, so the file system
+ * can merge the flushes, then renames them and forces each of their folders only once. Each file is replaced
+ * atomically, but a crash during the commit can leave some of the files replaced and the others not. The files that
+ * are not committed when the batch is closed are discarded.
+ *
+ * @author Baptiste Wicht
+ * @see AtomicFileOutputStream
+ */
+@ThreadSafe
+public final class AtomicWriteBatch implements Closeable {
+    /**
+     * The maximum number of files forced at the same time.
+     */
+    private static final int SYNC_THREADS = 8;
+
+    @GuardedBy("this")
+    private List<File[]> pending = CollectionUtils.newList();
+
+    /**
+     * Create a new AtomicWriteBatch.
+     */
+    public AtomicWriteBatch() {
+        super();
+    }
+
+    /**
+     * Return a new stream to write the given file in this batch. The file is only replaced when the batch is
+     * committed, and only if the stream has been closed without error.
+     *
+     * @param target The file to write.
+     *
+     * @return The stream to write the file.
+     *
+     * @throws IOException If the temporary file cannot be created.
+     */
+    public OutputStream newOutputStream(File target) throws IOException {
+        return new AtomicFileOutputStream(target, true, this);
+    }
+
+    /**
+     * Add a written file to the batch.
+     *
+     * @param temp   The temporary file.
+     * @param target The file to replace.
+     */
+    synchronized void add(File temp, File target) {
+        pending.add(new File[]{temp, target});
+    }
+
+    /**
+     * Return the number of written files waiting for the commit.
+     *
+     * @return The number of pending files.
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Commit the written files. If a file cannot be forced to the disk, none of the files is replaced and they are all
+     * discarded.
+     *
+     * @return The number of replaced files.
+     *
+     * @throws IOException If a file cannot be forced or renamed.
+     */
+    public int commit() throws IOException {
+        List<File[]> files;
+
+        synchronized (this) {
+            files = pending;
+            pending = CollectionUtils.newList();
+        }
+
+        if (files.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            forceAll(files);
+        } catch (IOException e) {
+            discard(files);
+
+            throw e;
+        }
+
+        Set<File> folders = CollectionUtils.newSet(4);
+        IOException failure = null;
+        int replaced = 0;
+
+        for (File[] file : files) {
+            try {
+                AtomicFileOutputStream.rename(file[0], file[1]);
+
+                folders.add(file[1].getAbsoluteFile().getParentFile());
+                replaced++;
+            } catch (IOException e) {
+                FileUtils.delete(file[0]);
+
+                if (failure == null) {
+                    failure = new IOException("Unable to replace some of the files of the batch");
+                }
+
+                failure.addSuppressed(e);
+            }
+        }
+
+        for (File folder : folders) {
+            AtomicFileOutputStream.syncFolder(folder);
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        return replaced;
+    }
+
+    /**
+     * Discard the files that have not been committed.
+     */
+    @Override
+    public void close() {
+        List<File[]> files;
+
+        synchronized (this) {
+            files = pending;
+            pending = CollectionUtils.newList();
+        }
+
+        discard(files);
+    }
+
+    /**
+     * Force all the temporary files to the disk concurrently.
+     *
+     * @param files The files of the batch.
+     *
+     * @throws IOException If one of the files cannot be forced.
+     */
+    private static void forceAll(List<File[]> files) throws IOException {
+        if (files.size() == 1) {
+            AtomicFileOutputStream.force(files.get(0)[0]);
+
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(SYNC_THREADS, files.size()),
+                ThreadUtils.daemonThreadFactory());
+
+        try {
+            Collection<Future<Void>> futures = CollectionUtils.newList(files.size());
+
+            for (final File[] file : files) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        AtomicFileOutputStream.force(file[0]);
+
+                        return null;
+                    }
+                }));
+            }
+
+            IOException failure = null;
+
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = new IOException("Unable to force the files of the batch");
+                    }
+
+                    failure.addSuppressed(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    throw new IOException("Interrupted during the commit", e);
+                }
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Delete the temporary files.
+     *
+     * @param files The files of the batch.
+     */
+    private static void discard(Iterable<File[]> files) {
+        for (File[] file : files) {
+            FileUtils.delete(file[0]);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.ThreadUtils;
+import org.jtheque.utils.annotations.GuardedBy;
+import org.jtheque.utils.annotations.ThreadSafe;
+import org.jtheque.utils.collections.CollectionUtils;
+import org.jtheque.utils.collections.TimerWheel;
+
+import java.io.Closeable;
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A scheduler of concurrent downloads. The downloads are made by a bounded pool of threads and the number of
+ * concurrent connections to the same host is limited. The downloads waiting for their host don't hold a thread of the
+ * pool, so the other hosts are not blocked. A failed download is retried after an exponential delay, except for the
+ * client errors. Each download has its own future.
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+public final class BatchDownloader implements Closeable {
+    /**
+     * The delay before the first retry in milliseconds. The delay is doubled at each retry.
+     */
+    private static final long RETRY_DELAY = 250;
+
+    private final ExecutorService executor;
+    private final int connectionsPerHost;
+    private final int retries;
+
+    @GuardedBy("this")
+    private final Map<String, HostQueue> hosts = CollectionUtils.newHashMap();
+
+    @GuardedBy("this")
+    private boolean closed;
+
+    /**
+     * Create a new BatchDownloader.
+     *
+     * @param threads            The number of concurrent downloads.
+     * @param connectionsPerHost The maximum number of concurrent downloads from the same host.
+     * @param retries            The number of times a failed download is retried.
+     */
+    public BatchDownloader(int threads, int connectionsPerHost, int retries) {
+        super();
+
+        if (threads <= 0 || connectionsPerHost <= 0) {
+            throw new IllegalArgumentException("The number of threads and connections must be greater than zero. ");
+        }
+
+        if (retries < 0) {
+            throw new IllegalArgumentException("The number of retries is less than zero. ");
+        }
+
+        this.connectionsPerHost = connectionsPerHost;
+        this.retries = retries;
+
+        executor = Executors.newFixedThreadPool(threads, ThreadUtils.daemonThreadFactory());
+    }
+
+    /**
+     * Schedule the download of a file.
+     *
+     * @param url         The URL of the file to download.
+     * @param destination The destination file.
+     *
+     * @return The future of the download, completed with the length of the file.
+     */
+    public CompletableFuture<Long> download(URL url, File destination) {
+        Task task = new Task(url, destination);
+
+        submit(task);
+
+        return task.future;
+    }
+
+    /**
+     * Schedule the download of all the given files.
+     *
+     * @param downloads The destination files mapped by the URL of the file to download.
+     *
+     * @return The batch of downloads.
+     */
+    public Batch downloadAll(Map<String, File> downloads) {
+        Map<String, CompletableFuture<Long>> futures = CollectionUtils.newHashMap(downloads.size());
+
+        for (Map.Entry<String, File> download : downloads.entrySet()) {
+            try {
+                futures.put(download.getKey(), download(new URL(download.getKey()), download.getValue()));
+            } catch (MalformedURLException e) {
+                CompletableFuture<Long> future = new CompletableFuture<Long>();
+                future.completeExceptionally(new FileException("Invalid URL " + download.getKey(), e));
+
+                futures.put(download.getKey(), future);
+            }
+        }
+
+        return new Batch(futures);
+    }
+
+    /**
+     * Close the downloader. The scheduled downloads, including the ones waiting for their host, are completed and the
+     * threads are stopped after the last one. The downloads scheduled after the close and the retries after the close
+     * fail with a {@link RejectedExecutionException}.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+
+            if (!hosts.isEmpty()) {
+                return;
+            }
+        }
+
+        executor.shutdown();
+    }
+
+    /**
+     * Submit the task. The task is executed directly if its host has a free connection, otherwise it waits for one.
+     *
+     * @param task The task to submit.
+     */
+    private void submit(Task task) {
+        synchronized (this) {
+            if (closed) {
+                task.future.completeExceptionally(new RejectedExecutionException("The downloader is closed"));
+
+                return;
+            }
+
+            HostQueue queue = hosts.get(task.host);
+
+            if (queue == null) {
+                queue = new HostQueue();
+                hosts.put(task.host, queue);
+            }
+
+            if (queue.active >= connectionsPerHost) {
+                queue.waiting.add(task);
+
+                return;
+            }
+
+            queue.active++;
+        }
+
+        execute(task);
+    }
+
+    /**
+     * Release a connection of the host. The next waiting task of the host is executed.
+     *
+     * @param host The host.
+     */
+    private void release(String host) {
+        Task next = next(host);
+
+        if (next != null) {
+            execute(next);
+        }
+    }
+
+    /**
+     * Return the next waiting task of the host, which takes the connection of the finished task. If the host has no
+     * waiting task, its connection is released. The pool is shut down once the last download of a closed downloader
+     * is finished.
+     *
+     * @param host The host.
+     *
+     * @return The next task of the host or {@code null} if there is none.
+     */
+    private Task next(String host) {
+        synchronized (this) {
+            HostQueue queue = hosts.get(host);
+
+            Task next = queue.waiting.poll();
+
+            if (next != null) {
+                return next;
+            }
+
+            if (--queue.active == 0) {
+                hosts.remove(host);
+            }
+
+            if (!closed || !hosts.isEmpty()) {
+                return null;
+            }
+        }
+
+        executor.shutdown();
+
+        return null;
+    }
+
+    /**
+     * Execute the task in the pool. If the task is rejected, the next tasks of its host are failed too.
+     *
+     * @param task The task to execute.
+     */
+    private void execute(Task task) {
+        Task next = task;
+
+        while (next != null) {
+            try {
+                executor.execute(next);
+
+                return;
+            } catch (RejectedExecutionException e) {
+                next.future.completeExceptionally(e);
+
+                next = next(next.host);
+            }
+        }
+    }
+
+    /**
+     * A batch of downloads.
+     *
+     * @author Baptiste Wicht
+     */
+    public static final class Batch {
+        private final Map<String, CompletableFuture<Long>> futures;
+        private final CompletableFuture<Void> completion;
+
+        /**
+         * Create a new Batch.
+         *
+         * @param futures The futures of the downloads mapped by URL.
+         */
+        private Batch(Map<String, CompletableFuture<Long>> futures) {
+            super();
+
+            this.futures = Collections.unmodifiableMap(futures);
+
+            completion = CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[futures.size()]));
+        }
+
+        /**
+         * Return the futures of the downloads. Each future is completed with the length of its file.
+         *
+         * @return The futures mapped by URL.
+         */
+        public Map<String, CompletableFuture<Long>> getFutures() {
+            return futures;
+        }
+
+        /**
+         * Return the future completed when all the downloads are completed. If a download has failed, this future is
+         * completed exceptionally, but only once all the downloads are completed.
+         *
+         * @return The future of the batch.
+         */
+        public CompletableFuture<Void> getCompletion() {
+            return completion;
+        }
+    }
+
+    /**
+     * The downloads of a host.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class HostQueue {
+        private final Queue<Task> waiting = new ArrayDeque<Task>(8);
+        private int active;
+    }
+
+    /**
+     * The download of a file.
+     *
+     * @author Baptiste Wicht
+     */
+    private final class Task implements Runnable {
+        private final URL url;
+        private final File destination;
+        private final String host;
+        private final CompletableFuture<Long> future = new CompletableFuture<Long>();
+
+        private int attempt;
+
+        /**
+         * Create a new Task.
+         *
+         * @param url         The URL of the file to download.
+         * @param destination The destination file.
+         */
+        private Task(URL url, File destination) {
+            super();
+
+            this.url = url;
+            this.destination = destination;
+
+            host = url.getHost().toLowerCase(Locale.ENGLISH);
+        }
+
+        @Override
+        public void run() {
+            boolean retry = false;
+
+            try {
+                if (!future.isDone()) {
+                    future.complete(WebUtils.downloadFile(url, destination, 0));
+                }
+            } catch (FileException e) {
+                if (attempt < retries && !(e.getCause() instanceof HttpDownload.NotRetryableException)) {
+                    retry = true;
+                } else {
+                    future.completeExceptionally(e);
+                }
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                release(host);
+            }
+
+            if (retry) {
+                long delay = RETRY_DELAY << Math.min(attempt, 6);
+
+                attempt++;
+
+                TimerWheel.shared().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        submit(Task.this);
+                    }
+                }, delay);
+            }
+        }
+    }
+}
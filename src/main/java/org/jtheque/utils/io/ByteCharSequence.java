@@ -0,0 +1,109 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * A view of a byte buffer as ISO-8859-1 or US-ASCII characters : each byte is a char. Nothing is copied, so a mapped
+ * buffer can be viewed as text without loading it in the heap. In US-ASCII, the bytes above 127 are malformed and are
+ * viewed as the replacement character, as the decoder of the charset does.
+ *
+ * @author Baptiste Wicht
+ */
+final class ByteCharSequence implements CharSequence {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+    private final boolean ascii;
+
+    /**
+     * Create a new ByteCharSequence on the content of the buffer, from its position to its limit.
+     *
+     * @param buffer The buffer.
+     * @param ascii  Indicate if the content is in US-ASCII rather than in ISO-8859-1.
+     */
+    ByteCharSequence(ByteBuffer buffer, boolean ascii) {
+        this(buffer, buffer.position(), buffer.remaining(), ascii);
+    }
+
+    /**
+     * Create a new ByteCharSequence.
+     *
+     * @param buffer The buffer.
+     * @param offset The index of the first char in the buffer.
+     * @param length The number of chars.
+     * @param ascii  Indicate if the content is in US-ASCII rather than in ISO-8859-1.
+     */
+    private ByteCharSequence(ByteBuffer buffer, int offset, int length, boolean ascii) {
+        super();
+
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.ascii = ascii;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
+        }
+
+        return charAt(buffer.get(offset + index));
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Start: " + start + ", End: " + end + ", Length: " + length);
+        }
+
+        return new ByteCharSequence(buffer, offset + start, end - start, ascii);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+
+        for (int i = 0; i < length; i++) {
+            chars[i] = charAt(buffer.get(offset + i));
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Return the char of the given byte.
+     *
+     * @param b The byte.
+     *
+     * @return The char of the byte.
+     */
+    private char charAt(byte b) {
+        if (ascii && b < 0) {
+            return '\uFFFD';
+        }
+
+        return (char) (b & 0xFF);
+    }
+}
@@ -0,0 +1,37 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+
+/**
+ * A listener on the progress of a directory copy. With a parallel copy, the listener is called concurrently from the
+ * threads of the copy, so its implementation must be fast and thread safe.
+ *
+ * @author Baptiste Wicht
+ * @see FileUtils#copyDirectory(File, File, int, CopyProgressListener)
+ */
+public interface CopyProgressListener {
+    /**
+     * Called after the copy of a file.
+     *
+     * @param file   The copied source file.
+     * @param files  The number of files copied since the start of the copy.
+     * @param bytes  The number of bytes copied since the start of the copy.
+     */
+    void fileCopied(File file, long files, long bytes);
+}
@@ -0,0 +1,269 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.Hasher;
+import org.jtheque.utils.collections.CollectionUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * An incremental synchronization of a directory. Only the files that are missing or different in the target are
+ * copied. Two files are considered identical if they have the same size and the same modification date, or if a
+ * hasher is given, the same size and the same content hash. The copied files get the modification date of their
+ * source, so they are not copied again by the next synchronization. This class is not thread safe, an instance is
+ * made for each synchronization.
+ *
+ * @author Baptiste Wicht
+ */
+final class DirectorySynchronizer {
+    /**
+     * The tolerance on the modification dates, in milliseconds. Some file systems only store the dates with a
+     * precision of 2 seconds.
+     */
+    private static final long MODIFICATION_TOLERANCE = 2000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean deleteExtra;
+    private final Hasher hasher;
+
+    private final Collection<String> added = CollectionUtils.newList();
+    private final Collection<String> updated = CollectionUtils.newList();
+    private final Collection<String> deleted = CollectionUtils.newList();
+    private long unchanged;
+    private long bytes;
+
+    /**
+     * Create a new DirectorySynchronizer.
+     *
+     * @param deleteExtra Indicate if the files of the target that are not in the source must be deleted.
+     * @param hasher      The hasher used to compare the contents or {@code null} to compare the modification dates.
+     */
+    DirectorySynchronizer(boolean deleteExtra, Hasher hasher) {
+        super();
+
+        this.deleteExtra = deleteExtra;
+        this.hasher = hasher;
+    }
+
+    /**
+     * Synchronize the target directory with the source directory.
+     *
+     * @param source The source directory.
+     * @param target The target directory.
+     *
+     * @return The report of the synchronization.
+     *
+     * @throws CopyException If an error occurs during the synchronization.
+     */
+    SyncReport synchronize(File source, File target) throws CopyException {
+        synchronize(source, target, "");
+
+        return new SyncReport(added, updated, deleted, unchanged, bytes);
+    }
+
+    /**
+     * Return the number of bytes copied so far.
+     *
+     * @return The number of bytes copied.
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Return the number of files copied so far.
+     *
+     * @return The number of files copied.
+     */
+    int getFiles() {
+        return added.size() + updated.size();
+    }
+
+    /**
+     * Synchronize a directory.
+     *
+     * @param source The source directory.
+     * @param target The target directory.
+     * @param prefix The relative path of the directory, empty or ending with '/'.
+     *
+     * @throws CopyException If an error occurs during the synchronization.
+     */
+    private void synchronize(File source, File target, String prefix) throws CopyException {
+        if (target.isFile()) {
+            if (prefix.isEmpty()) {
+                throw new CopyException("The target is not a directory: " + target.getAbsolutePath());
+            }
+
+            FileUtils.delete(target);
+            deleted.add(prefix.substring(0, prefix.length() - 1));
+        }
+
+        if (!target.isDirectory() && !target.mkdirs()) {
+            throw new CopyException("Unable to create the target directory " + target.getAbsolutePath());
+        }
+
+        String[] names = source.list();
+
+        if (names == null) {
+            throw new CopyException("Unable to list the directory " + source.getAbsolutePath());
+        }
+
+        for (String name : names) {
+            File sourceFile = new File(source, name);
+            File targetFile = new File(target, name);
+
+            if (sourceFile.isDirectory()) {
+                synchronize(sourceFile, targetFile, prefix + name + '/');
+            } else {
+                synchronizeFile(sourceFile, targetFile, prefix + name);
+            }
+        }
+
+        if (deleteExtra) {
+            deleteExtra(target, prefix, names);
+        }
+    }
+
+    /**
+     * Synchronize a regular file.
+     *
+     * @param source The source file.
+     * @param target The target file.
+     * @param path   The relative path of the file.
+     *
+     * @throws CopyException If an error occurs during the copy.
+     */
+    private void synchronizeFile(File source, File target, String path) throws CopyException {
+        boolean exists = target.exists();
+
+        if (target.isDirectory()) {
+            FileUtils.delete(target);
+            deleted.add(path);
+
+            exists = false;
+        } else if (exists && isUpToDate(source, target)) {
+            unchanged++;
+
+            return;
+        }
+
+        bytes += FileUtils.copyFile(source, target);
+
+        if (!target.setLastModified(source.lastModified())) {
+            throw new CopyException("Unable to set the modification date of " + target.getAbsolutePath());
+        }
+
+        if (exists) {
+            updated.add(path);
+        } else {
+            added.add(path);
+        }
+    }
+
+    /**
+     * Delete the files of the target directory that are not in the source directory.
+     *
+     * @param target The target directory.
+     * @param prefix The relative path of the directory.
+     * @param names  The names of the files of the source directory.
+     */
+    private void deleteExtra(File target, String prefix, String[] names) {
+        String[] targetNames = target.list();
+
+        if (targetNames == null || targetNames.length == names.length) {
+            return;
+        }
+
+        Set<String> sourceNames = CollectionUtils.newSet(names.length);
+        sourceNames.addAll(Arrays.asList(names));
+
+        for (String name : targetNames) {
+            if (!sourceNames.contains(name)) {
+                FileUtils.delete(new File(target, name));
+                deleted.add(prefix + name);
+            }
+        }
+    }
+
+    /**
+     * Indicate if the target file is identical to the source file.
+     *
+     * @param source The source file.
+     * @param target The target file.
+     *
+     * @return {@code true} if the target is up to date otherwise {@code false}.
+     *
+     * @throws CopyException If the files cannot be hashed.
+     */
+    private boolean isUpToDate(File source, File target) throws CopyException {
+        if (source.length() != target.length()) {
+            return false;
+        }
+
+        if (hasher == null) {
+            return Math.abs(source.lastModified() - target.lastModified()) < MODIFICATION_TOLERANCE;
+        }
+
+        return Arrays.equals(hash(source), hash(target));
+    }
+
+    /**
+     * Return the content hash of the file.
+     *
+     * @param file The file to hash.
+     *
+     * @return The hash of the file.
+     *
+     * @throws CopyException If the file cannot be read.
+     */
+    private byte[] hash(File file) throws CopyException {
+        InputStream stream = null;
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance(hasher.getAlgorithm());
+
+            stream = FileUtils.asInputStream(file);
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            int read = stream.read(buffer);
+
+            while (read != -1) {
+                digest.update(buffer, 0, read);
+
+                read = stream.read(buffer);
+            }
+
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new CopyException("Unable to hash " + file.getAbsolutePath(), e);
+        } catch (IOException e) {
+            throw new CopyException("Unable to hash " + file.getAbsolutePath(), e);
+        } finally {
+            FileUtils.close(stream);
+        }
+    }
+}
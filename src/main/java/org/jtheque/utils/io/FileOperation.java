@@ -0,0 +1,50 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The operations of {@link FileUtils} reported to the {@link FileOperationListener}.
+ *
+ * @author Baptiste Wicht
+ */
+public enum FileOperation {
+    COPY("copy"),
+    COPY_DIRECTORY("copyDirectory"),
+    ZIP("zip"),
+    UNZIP("unzip"),
+    READ_LINES("readLines");
+
+    private final String name;
+
+    /**
+     * Create a new FileOperation with the given name.
+     *
+     * @param name The name of the operation.
+     */
+    FileOperation(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Return the name of the operation. The name is used to name the metrics of the operation.
+     *
+     * @return The name of the operation.
+     */
+    public String getName() {
+        return name;
+    }
+}
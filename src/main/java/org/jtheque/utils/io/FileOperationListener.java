@@ -0,0 +1,37 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A listener on the I/O operations of {@link FileUtils}. The listener is called in the thread of the operation, once
+ * the operation is completed, so its implementation must be fast and thread safe.
+ *
+ * @author Baptiste Wicht
+ * @see FileUtils#setOperationListener(FileOperationListener)
+ */
+public interface FileOperationListener {
+    /**
+     * Called when an operation is completed. The operations that failed are reported too, with the bytes and the files
+     * processed before the failure. The throughput of the operation is {@code bytes / nanos} bytes per nanosecond.
+     *
+     * @param operation The operation.
+     * @param bytes     The number of bytes transferred by the operation.
+     * @param files     The number of files processed by the operation.
+     * @param nanos     The duration of the operation in nanoseconds.
+     */
+    void operationCompleted(FileOperation operation, long bytes, int files, long nanos);
+}
@@ -0,0 +1,188 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.ThreadUtils;
+import org.jtheque.utils.annotations.GuardedInternally;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The transfer engine of the file copies. The content is transferred with {@link FileChannel#transferTo} in chunks
+ * until the whole file is transferred, because a single call can transfer less than the requested count (about 2 GB
+ * on several kernels). If the channel doesn't transfer anything, the rest of the file is copied through a direct
+ * buffer taken from a small pool.
+ *
+ * @author Baptiste Wicht
+ */
+final class FileTransfer {
+    /**
+     * The size of a transferTo chunk. Big enough to keep the number of system calls low and small enough to give a
+     * regular progress.
+     */
+    private static final long CHUNK_SIZE = 16L * 1024 * 1024;
+
+    /**
+     * The size of the direct buffers of the fallback path.
+     */
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * The maximum number of pooled direct buffers.
+     */
+    private static final int MAX_POOLED_BUFFERS = ThreadUtils.processors() * 2;
+
+    @GuardedInternally
+    private static final Queue<ByteBuffer> BUFFERS = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    private static final AtomicInteger POOLED = new AtomicInteger(0);
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private FileTransfer() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Transfer the whole content of the input channel to the output channel.
+     *
+     * @param in       The input channel, read from its start.
+     * @param out      The output channel, written at its current position.
+     * @param listener The transfer listener, can be {@code null}.
+     *
+     * @return The number of bytes transferred.
+     *
+     * @throws IOException           If an error occurs during the transfer.
+     * @throws CancellationException If the listener has cancelled the transfer.
+     */
+    static long transfer(FileChannel in, FileChannel out, TransferListener listener) throws IOException {
+        long size = in.size();
+        long position = 0;
+
+        while (position < size) {
+            long transferred = in.transferTo(position, Math.min(CHUNK_SIZE, size - position), out);
+
+            if (transferred <= 0) {
+                return transferBuffered(in, out, position, size, listener);
+            }
+
+            position += transferred;
+
+            fireProgress(listener, position, size);
+        }
+
+        return position;
+    }
+
+    /**
+     * Transfer the rest of the input channel through a direct buffer.
+     *
+     * @param in       The input channel.
+     * @param out      The output channel.
+     * @param position The position to start the transfer at.
+     * @param size     The size of the input channel.
+     * @param listener The transfer listener, can be {@code null}.
+     *
+     * @return The number of bytes transferred since the start of the input channel.
+     *
+     * @throws IOException If an error occurs during the transfer or if the input channel ends before its size.
+     */
+    private static long transferBuffered(FileChannel in, FileChannel out, long position, long size,
+                                         TransferListener listener) throws IOException {
+        ByteBuffer buffer = acquireBuffer();
+
+        try {
+            long current = position;
+
+            while (current < size) {
+                buffer.clear();
+
+                int read = in.read(buffer, current);
+
+                if (read < 0) {
+                    throw new IOException("The file has been truncated during the transfer (" + current + " of " + size + " bytes)");
+                }
+
+                buffer.flip();
+
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+
+                current += read;
+
+                fireProgress(listener, current, size);
+            }
+
+            return current;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Report the progress to the listener.
+     *
+     * @param listener    The transfer listener, can be {@code null}.
+     * @param transferred The number of bytes transferred.
+     * @param total       The total number of bytes.
+     *
+     * @throws CancellationException If the listener has cancelled the transfer.
+     */
+    private static void fireProgress(TransferListener listener, long transferred, long total) {
+        if (listener != null && !listener.transferred(transferred, total)) {
+            throw new CancellationException("The transfer has been cancelled");
+        }
+    }
+
+    /**
+     * Take a direct buffer from the pool or allocate a new one if the pool is empty.
+     *
+     * @return The direct buffer.
+     */
+    private static ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = BUFFERS.poll();
+
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        POOLED.decrementAndGet();
+
+        return buffer;
+    }
+
+    /**
+     * Return the buffer to the pool. The buffer is dropped if the pool is full.
+     *
+     * @param buffer The buffer to release.
+     */
+    private static void releaseBuffer(ByteBuffer buffer) {
+        if (POOLED.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            BUFFERS.add(buffer);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+}
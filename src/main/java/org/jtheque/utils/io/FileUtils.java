@@ -16,9 +16,10 @@ package org.jtheque.utils.io;
  * limitations under the License.
  */
 
+import org.jtheque.utils.Hasher;
 import org.jtheque.utils.StringUtils;
-import org.jtheque.utils.SystemProperty;
 import org.jtheque.utils.collections.CollectionUtils;
+import org.jtheque.utils.collections.Filter;
 
 import org.slf4j.LoggerFactory;
 
@@ -34,11 +35,18 @@ import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Scanner;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
@@ -55,6 +63,18 @@ public final class FileUtils {
      */
     private static final int BUFFER_SIZE = 2048;
 
+    /**
+     * The listener used when no listener is set. The operations are not timed when this listener is used.
+     */
+    private static final FileOperationListener NO_LISTENER = new FileOperationListener() {
+        @Override
+        public void operationCompleted(FileOperation operation, long bytes, int files, long nanos) {
+            //Nothing to do
+        }
+    };
+
+    private static volatile FileOperationListener operationListener = NO_LISTENER;
+
     /**
      * Construct a new FileUtils. This constructor is private because all methods are static.
      */
@@ -62,6 +82,16 @@ public final class FileUtils {
         throw new AssertionError();
     }
 
+    /**
+     * Set the listener of the I/O operations. The copies, the zips, the unzips and the readings of lines are reported
+     * to this listener. By default, no listener is set and the operations are not instrumented.
+     *
+     * @param listener The listener of the operations or {@code null} to remove the current listener.
+     */
+    public static void setOperationListener(FileOperationListener listener) {
+        operationListener = listener == null ? NO_LISTENER : listener;
+    }
+
     /**
      * Create the file if not exists.
      *
@@ -87,7 +117,7 @@ public final class FileUtils {
     public static String getTextOfSystemResource(String path) {
         InputStream stream = ClassLoader.getSystemResourceAsStream(path);
 
-        return getContentOfStream(stream);
+        return getContentOfStream(stream, 0);
     }
 
     /**
@@ -99,9 +129,9 @@ public final class FileUtils {
      */
     public static String getTextOf(String path) {
         try {
-            InputStream stream = asInputStream(path);
+            InputStream stream = new FileInputStream(path);
 
-            return getContentOfStream(stream);
+            return getContentOfStream(stream, new File(path).length());
         } catch (FileNotFoundException e) {
             LoggerFactory.getLogger(FileUtils.class).error("Unable to get the text of " + path, e);
         }
@@ -110,32 +140,99 @@ public final class FileUtils {
     }
 
     /**
-     * Return the content of the stream.
+     * Return the content of the stream. The lines are separated with '\n'.
      *
-     * @param stream The stream to read from.
+     * @param stream   The stream to read from, can be null.
+     * @param sizeHint The expected size of the content, used to presize the buffer, 0 if it's unknown.
      *
-     * @return all the content of the stream in a <code>String</code> object.
+     * @return all the content of the stream in a <code>String</code> object, an empty string if the stream is null.
      */
-    private static String getContentOfStream(InputStream stream) {
-        StringBuilder content = new StringBuilder(1000);
+    private static String getContentOfStream(InputStream stream, long sizeHint) {
+        if (stream == null) {
+            return "";
+        }
 
-        Collection<String> lines = getLinesOf(stream);
+        final StringBuilder content = new StringBuilder((int) Math.max(1000, Math.min(sizeHint, Integer.MAX_VALUE - 8)));
 
-        boolean first = true;
+        long start = startOperation();
+        CountingInputStream counting = start == 0 ? null : new CountingInputStream(stream);
 
-        for (String line : lines) {
-            if (first) {
-                first = false;
-            } else {
-                content.append('\n');
-            }
+        LineReader reader = new LineReader(counting == null ? stream : counting, Charset.defaultCharset());
+
+        try {
+            reader.forEachLine(new LineHandler() {
+                private boolean first = true;
+
+                @Override
+                public void handle(CharSequence line) {
+                    if (first) {
+                        first = false;
+                    } else {
+                        content.append('\n');
+                    }
+
+                    content.append(line);
+                }
+            });
+        } catch (IOException e) {
+            LoggerFactory.getLogger(FileUtils.class).error("Exception occurred during reading", e);
+        } finally {
+            close(reader);
 
-            content.append(line);
+            if (counting != null) {
+                endOperation(FileOperation.READ_LINES, start, counting.getCount(), 1);
+            }
         }
 
         return content.toString();
     }
 
+    /**
+     * Map the whole file in memory. The content is not copied in the Java heap. The files bigger than 2 GB must be
+     * mapped by windows with a {@link MappedFile}.
+     *
+     * @param file The file to map.
+     *
+     * @return A read-only buffer on the content of the file.
+     *
+     * @throws IOException If the file cannot be mapped or is bigger than 2 GB.
+     */
+    public static ByteBuffer map(File file) throws IOException {
+        MappedFile mapped = new MappedFile(file, Integer.MAX_VALUE);
+
+        try {
+            if (mapped.getWindowCount() > 1) {
+                throw new IOException("The file is too big to be mapped at once: " + file.getAbsolutePath());
+            }
+
+            return mapped.getWindowCount() == 0 ? ByteBuffer.allocate(0) : mapped.getWindow(0);
+        } finally {
+            close(mapped);
+        }
+    }
+
+    /**
+     * Return the text of the file. The file is mapped in memory. With the ISO-8859-1 and US-ASCII charsets, the
+     * returned sequence is a view of the mapped file and nothing is copied in the heap. With the other charsets, the
+     * mapped content is decoded in a char buffer on the heap, which can be larger than the text.
+     *
+     * @param file    The file to read.
+     * @param charset The charset of the file.
+     *
+     * @return The text of the file.
+     *
+     * @throws IOException If the file cannot be mapped.
+     */
+    public static CharSequence mapText(File file, Charset charset) throws IOException {
+        ByteBuffer buffer = map(file);
+
+        if (charset.equals(StandardCharsets.ISO_8859_1) || charset.equals(StandardCharsets.US_ASCII)) {
+            return new ByteCharSequence(buffer, charset.equals(StandardCharsets.US_ASCII));
+        }
+
+        return charset.decode(buffer);
+    }
+
     /**
      * Return the lines of the file. 
      *
@@ -158,27 +255,92 @@ public final class FileUtils {
      *
      * @param stream The stream to count the lines from.
      *
-     * @return The lines of the stream.
+     * @return The lines of the stream, an empty collection if the stream is null.
      */
     public static Collection<String> getLinesOf(InputStream stream) {
         Collection<String> lines = CollectionUtils.newList(100);
 
-        Scanner scanner = null;
+        if (stream == null) {
+            return lines;
+        }
+
+        long start = startOperation();
+        CountingInputStream counting = start == 0 ? null : new CountingInputStream(stream);
+
+        LineReader reader = new LineReader(counting == null ? stream : counting, Charset.defaultCharset());
+
         try {
-            scanner = new Scanner(new BufferedInputStream(stream));
+            String line = reader.readLine();
 
-            while (scanner.hasNextLine()) {
-                lines.add(scanner.nextLine());
+            while (line != null) {
+                lines.add(line);
+
+                line = reader.readLine();
             }
+        } catch (IOException e) {
+            LoggerFactory.getLogger(FileUtils.class).error("Exception occurred during reading", e);
         } finally {
-            if (scanner != null) {
-                scanner.close();
+            close(reader);
+
+            if (counting != null) {
+                endOperation(FileOperation.READ_LINES, start, counting.getCount(), 1);
             }
         }
 
         return lines;
     }
 
+    /**
+     * Return a lazy stream of the lines of the file. The lines are read as the stream is consumed, so the file is never
+     * fully loaded in memory. The stream must be closed to close the file.
+     *
+     * @param file The file.
+     *
+     * @return A stream of the lines of the file.
+     *
+     * @throws FileNotFoundException If the file cannot be opened.
+     */
+    public static Stream<String> lines(File file) throws FileNotFoundException {
+        return new LineReader(file).lines();
+    }
+
+    /**
+     * Return a lazy stream of the lines of the stream. The stream must be closed to close the input stream.
+     *
+     * @param stream  The stream to read the lines from.
+     * @param charset The charset of the stream.
+     *
+     * @return A stream of the lines.
+     */
+    public static Stream<String> lines(InputStream stream, Charset charset) {
+        return new LineReader(stream, charset).lines();
+    }
+
+    /**
+     * Pass each line of the file to the handler. The lines are views on the read buffer, no String is allocated per
+     * line, so this is the fastest way to scan a big file.
+     *
+     * @param file    The file.
+     * @param handler The line handler.
+     *
+     * @return The number of lines of the file.
+     *
+     * @throws IOException If an error occurs during the reading.
+     */
+    public static long forEachLine(File file, LineHandler handler) throws IOException {
+        long start = startOperation();
+
+        LineReader reader = new LineReader(file);
+
+        try {
+            return reader.forEachLine(handler);
+        } finally {
+            close(reader);
+
+            endOperation(FileOperation.READ_LINES, start, file.length(), 1);
+        }
+    }
+
     /**
      * Copy a file.
      *
@@ -204,35 +366,121 @@ public final class FileUtils {
      */
     public static void copy(File source, File target) throws CopyException {
         if (source.isDirectory()) {
-            copyDirectory(source, target);
-        } else if (source.exists()) {
-            FileChannel in = null;
-            FileChannel out = null;
-
-            FileInputStream inStream = null;
-            FileOutputStream outStream = null;
+            long start = startOperation();
+            long[] totals = new long[2];
 
             try {
-                inStream = new FileInputStream(source);
-                outStream = new FileOutputStream(target);
-
-                in = inStream.getChannel();
-                out = outStream.getChannel();
+                copyDirectory(source, target, totals);
+            } finally {
+                endOperation(FileOperation.COPY_DIRECTORY, start, totals[0], (int) totals[1]);
+            }
+        } else if (source.exists()) {
+            long start = startOperation();
+            long bytes = 0;
 
-                in.transferTo(0, in.size(), out);
-            } catch (IOException e) {
-                throw new CopyException("Unable to copy the file", e);
+            try {
+                bytes = copyFile(source, target);
             } finally {
-                close(inStream);
-                close(in);
-                close(outStream);
-                close(out);
+                endOperation(FileOperation.COPY, start, bytes, 1);
             }
         } else {
             throw new CopyException("File doesn't exist: " + source.getAbsolutePath());
         }
     }
 
+    /**
+     * Copy a regular file with a progress listener. The file is transferred in chunks without copying the content in
+     * the Java heap. If the listener cancels the copy, the partial target is deleted.
+     *
+     * @param source   The source's file.
+     * @param target   The destination's file.
+     * @param listener The transfer listener, can be {@code null}.
+     * @param sync     Indicate if the target must be forced to the storage device before returning.
+     *
+     * @return The number of bytes copied.
+     *
+     * @throws CopyException Thrown when a problem occurs during the copy or if the copy has been cancelled.
+     */
+    public static long copy(File source, File target, TransferListener listener, boolean sync) throws CopyException {
+        if (!source.isFile()) {
+            throw new CopyException("File doesn't exist: " + source.getAbsolutePath());
+        }
+
+        long start = startOperation();
+        long bytes = 0;
+
+        try {
+            bytes = copyFile(source, target, listener, sync);
+
+            return bytes;
+        } finally {
+            endOperation(FileOperation.COPY, start, bytes, 1);
+        }
+    }
+
+    /**
+     * Copy a regular file.
+     *
+     * @param source The source's file.
+     * @param target The destination's file.
+     *
+     * @return The number of bytes copied.
+     *
+     * @throws CopyException Thrown when a problem occurs during the copy.
+     */
+    static long copyFile(File source, File target) throws CopyException {
+        return copyFile(source, target, null, false);
+    }
+
+    /**
+     * Copy a regular file.
+     *
+     * @param source   The source's file.
+     * @param target   The destination's file.
+     * @param listener The transfer listener, can be {@code null}.
+     * @param sync     Indicate if the target must be forced to the storage device.
+     *
+     * @return The number of bytes copied.
+     *
+     * @throws CopyException Thrown when a problem occurs during the copy or if the copy has been cancelled.
+     */
+    private static long copyFile(File source, File target, TransferListener listener, boolean sync)
+            throws CopyException {
+        FileChannel in = null;
+        FileChannel out = null;
+
+        FileInputStream inStream = null;
+        FileOutputStream outStream = null;
+
+        try {
+            inStream = new FileInputStream(source);
+            outStream = new FileOutputStream(target);
+
+            in = inStream.getChannel();
+            out = outStream.getChannel();
+
+            long transferred = FileTransfer.transfer(in, out, listener);
+
+            if (sync) {
+                out.force(true);
+            }
+
+            return transferred;
+        } catch (IOException e) {
+            throw new CopyException("Unable to copy the file", e);
+        } catch (CancellationException e) {
+            close(outStream);
+            delete(target);
+
+            throw new CopyException("The copy has been cancelled", e);
+        } finally {
+            close(inStream);
+            close(in);
+            close(outStream);
+            close(out);
+        }
+    }
+
     /**
      * Copy the input stream content into the given file.
      *
@@ -245,6 +493,9 @@ public final class FileUtils {
         FilterInputStream input = null;
         OutputStream output = null;
 
+        long start = startOperation();
+        long bytes = 0;
+
         try {
             input = new BufferedInputStream(inputStream);
             output = asOutputStream(file);
@@ -254,6 +505,7 @@ public final class FileUtils {
 
             while (read > 0) {
                 output.write(buffer, 0, read);
+                bytes += read;
 
                 read = input.read(buffer);
             }
@@ -262,6 +514,8 @@ public final class FileUtils {
         } finally {
             close(input);
             close(output);
+
+            endOperation(FileOperation.COPY, start, bytes, 1);
         }
     }
 
@@ -270,10 +524,11 @@ public final class FileUtils {
      *
      * @param source The source.
      * @param target The target.
+     * @param totals The totals of the copy, the number of bytes and the number of files copied.
      *
      * @throws CopyException Thrown if an error occurs during the copying process.
      */
-    private static void copyDirectory(File source, File target) throws CopyException {
+    private static void copyDirectory(File source, File target, long[] totals) throws CopyException {
         if (!target.exists() && !target.mkdirs()) {
             throw new CopyException("Unable to create the target directory " + target.getAbsolutePath());
         }
@@ -281,13 +536,80 @@ public final class FileUtils {
         File[] files = source.listFiles();
 
         for (File sourceFile : files) {
+            File targetFile = new File(target, sourceFile.getName());
+
             if (sourceFile.isDirectory()) {
-                copyDirectory(sourceFile, new File(source, sourceFile.getName()));
+                copyDirectory(sourceFile, targetFile, totals);
+            } else {
+                totals[0] += copyFile(sourceFile, targetFile);
+                totals[1]++;
             }
+        }
+    }
 
-            String path = sourceFile.getAbsolutePath();
-            File targetFile = new File(target.getAbsolutePath() + path.substring(path.lastIndexOf(SystemProperty.FILE_SEPARATOR.get())));
-            copy(sourceFile, targetFile);
+    /**
+     * Copy a directory in parallel. The directories are listed and the files are copied concurrently by a fork-join
+     * pool with the given parallelism. Unlike {@link #copy(File, File)}, a failure doesn't stop the copy : all the
+     * files that can be copied are copied and the failures are reported at the end in a single exception.
+     *
+     * @param source      The source directory.
+     * @param target      The target directory.
+     * @param parallelism The number of threads of the copy.
+     * @param listener    The progress listener, can be {@code null}.
+     *
+     * @throws CopyException If the source is not a directory or if some files cannot be copied. In the later case, each
+     *                       failure is a suppressed exception of the thrown exception.
+     */
+    public static void copyDirectory(File source, File target, int parallelism, CopyProgressListener listener)
+            throws CopyException {
+        if (!source.isDirectory()) {
+            throw new CopyException("The source is not a directory: " + source.getAbsolutePath());
+        }
+
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be greater than zero. ");
+        }
+
+        long start = startOperation();
+
+        ParallelDirectoryCopy copy = new ParallelDirectoryCopy(listener);
+
+        try {
+            copy.copy(source, target, parallelism);
+        } finally {
+            endOperation(FileOperation.COPY_DIRECTORY, start, copy.getBytes(), (int) copy.getFiles());
+        }
+    }
+
+    /**
+     * Synchronize the target directory with the source directory. Only the files that are missing in the target or
+     * different from the source are copied. By default, two files are identical if they have the same size and the
+     * same modification date. If a hasher is given, the files of the same size are compared by the hash of their
+     * content, which is slower but detects the changes that keep the modification date.
+     *
+     * @param source      The source directory.
+     * @param target      The target directory.
+     * @param deleteExtra Indicate if the files of the target that are not in the source must be deleted.
+     * @param hasher      The hasher used to compare the contents or {@code null} to compare the modification dates.
+     *
+     * @return The report of the changes made in the target.
+     *
+     * @throws CopyException If the source is not a directory or if an error occurs during the synchronization.
+     */
+    public static SyncReport synchronize(File source, File target, boolean deleteExtra, Hasher hasher)
+            throws CopyException {
+        if (!source.isDirectory()) {
+            throw new CopyException("The source is not a directory: " + source.getAbsolutePath());
+        }
+
+        long start = startOperation();
+
+        DirectorySynchronizer synchronizer = new DirectorySynchronizer(deleteExtra, hasher);
+
+        try {
+            return synchronizer.synchronize(source, target);
+        } finally {
+            endOperation(FileOperation.COPY_DIRECTORY, start, synchronizer.getBytes(), synchronizer.getFiles());
         }
     }
 
@@ -321,6 +643,9 @@ public final class FileUtils {
 
         ZipInputStream zis = new ZipInputStream(source);
 
+        long start = startOperation();
+        long bytes = 0;
+
         try {
             ZipEntry entry = zis.getNextEntry();
 
@@ -328,6 +653,7 @@ public final class FileUtils {
                 File file = readFile(destinationFolder, zis, entry);
 
                 files.add(file);
+                bytes += file.length();
 
                 entry = zis.getNextEntry();
             }
@@ -337,11 +663,61 @@ public final class FileUtils {
             LoggerFactory.getLogger(FileUtils.class).error("Exception occurred during unzipping " + e);
         } finally {
             close(zis);
+
+            endOperation(FileOperation.UNZIP, start, bytes, files.size());
         }
 
         return files;
     }
 
+    /**
+     * Unzip all the entries of an archive file in parallel.
+     *
+     * @param archive     The archive file.
+     * @param destination The destination folder.
+     * @param parallelism The number of extraction threads.
+     *
+     * @return The extracted files.
+     *
+     * @throws IOException If the archive cannot be read or if some entries cannot be extracted.
+     * @see #unzip(File, File, int, Filter)
+     */
+    public static Collection<File> unzip(File archive, File destination, int parallelism) throws IOException {
+        return unzip(archive, destination, parallelism, null);
+    }
+
+    /**
+     * Unzip the selected entries of an archive file in parallel. The entries are read from the central directory of
+     * the archive and extracted concurrently. If an entry would be extracted outside of the destination folder, nothing
+     * is extracted. A failure doesn't stop the extraction of the other entries, all the failures are reported at the
+     * end as the suppressed exceptions of the thrown exception.
+     *
+     * @param archive     The archive file.
+     * @param destination The destination folder.
+     * @param parallelism The number of extraction threads.
+     * @param filter      The filter on the names of the entries, {@code null} to extract all the entries.
+     *
+     * @return The extracted files.
+     *
+     * @throws IOException If the archive cannot be read or if some entries cannot be extracted.
+     */
+    public static Collection<File> unzip(File archive, File destination, int parallelism, Filter<String> filter)
+            throws IOException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be greater than zero. ");
+        }
+
+        long start = startOperation();
+
+        ZipExtractor extractor = new ZipExtractor(archive);
+
+        try {
+            return extractor.extract(destination, parallelism, filter);
+        } finally {
+            endOperation(FileOperation.UNZIP, start, extractor.getBytes(), extractor.getFiles());
+        }
+    }
+
     /**
      * Read an entry from the zip and unzip them into the specified destination folder.
      *
@@ -356,7 +732,7 @@ public final class FileUtils {
     private static File readFile(String destinationFolder, ZipInputStream zis, ZipEntry entry) throws IOException {
         byte[] data = new byte[BUFFER_SIZE];
 
-        File file = new File(destinationFolder + '/' + entry.getName());
+        File file = ZipExtractor.resolve(new File(destinationFolder), entry.getName());
 
         OutputStream outputStream = asOutputStream(file);
 
@@ -394,29 +770,78 @@ public final class FileUtils {
      * @param buffer The destination stream.
      */
     public static void zip(Iterable<File> files, OutputStream buffer) {
+        long start = startOperation();
+        long[] totals = new long[2];
+
         ZipOutputStream zos = null;
         try {
             zos = new ZipOutputStream(buffer);
             zos.setMethod(ZipOutputStream.DEFLATED);
             zos.setLevel(9);
 
-            zipFiles(files, zos);
+            zipFiles(files, zos, totals);
         } catch (Exception e) {
             LoggerFactory.getLogger(FileUtils.class).error("Exception occurred during zipping " + e);
         } finally {
             close(zos);
+
+            endOperation(FileOperation.ZIP, start, totals[0], (int) totals[1]);
+        }
+    }
+
+    /**
+     * Zip files to a destination, compressing them on several threads. The files are compressed with the best
+     * compression, like {@link #zip(Iterable, File)}, but the big files are cut in blocks compressed in parallel. If
+     * the zipping fails, the destination is deleted.
+     *
+     * @param files       The files we have to zip.
+     * @param destination The archive destination file.
+     * @param parallelism The number of compression threads.
+     *
+     * @throws IOException If an error occurs during the zipping.
+     * @throws IllegalArgumentException If the parallelism is less than or equals to zero.
+     * @see ParallelZipWriter
+     */
+    public static void zip(Iterable<File> files, File destination, int parallelism) throws IOException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be greater than zero. ");
+        }
+
+        long start = startOperation();
+
+        ParallelZipWriter writer = new ParallelZipWriter(asOutputStream(destination), parallelism);
+
+        boolean complete = false;
+
+        try {
+            for (File file : files) {
+                writer.putFile(file.getName(), file);
+            }
+
+            writer.close();
+
+            complete = true;
+        } finally {
+            if (!complete) {
+                writer.abort();
+
+                delete(destination);
+            }
+
+            endOperation(FileOperation.ZIP, start, writer.getBytes(), writer.getEntries());
         }
     }
 
     /**
      * Zip a list of files into a zip output stream
      *
-     * @param files The files to zip.
-     * @param zos   The output stream to write in.
+     * @param files  The files to zip.
+     * @param zos    The output stream to write in.
+     * @param totals The totals of the zipping, the number of bytes and the number of files zipped.
      *
      * @throws IOException If an IO problem occurs during the zipping.
      */
-    private static void zipFiles(Iterable<File> files, ZipOutputStream zos) throws IOException {
+    private static void zipFiles(Iterable<File> files, ZipOutputStream zos, long[] totals) throws IOException {
         byte[] buf = new byte[BUFFER_SIZE];
 
         for (File f : files) {
@@ -431,11 +856,13 @@ public final class FileUtils {
                 int len = in.read(buf);
                 while (len > 0) {
                     zos.write(buf, 0, len);
+                    totals[0] += len;
 
                     len = in.read(buf);
                 }
 
                 zos.closeEntry();
+                totals[1]++;
             } finally {
                 close(in);
             }
@@ -610,6 +1037,22 @@ public final class FileUtils {
         return new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
     }
 
+    /**
+     * Return an output stream replacing the file atomically. The content is written in a temporary file that replaces
+     * the file when the stream is closed, so a crash never leaves a half-written file. The stream will be buffered.
+     *
+     * @param file The file to replace.
+     * @param sync Indicate if the content must be forced to the disk before the file is replaced.
+     *
+     * @return An output stream to the file.
+     *
+     * @throws IOException If the temporary file cannot be created.
+     * @see AtomicWriteBatch
+     */
+    public static AtomicFileOutputStream asAtomicOutputStream(File file, boolean sync) throws IOException {
+        return new AtomicFileOutputStream(file, sync);
+    }
+
     /**
      * Close a closable resource.
      *
@@ -721,7 +1164,9 @@ public final class FileUtils {
 
     /**
      * Return the next free name for the specified name in the specified folder. If there is also a file named name in
-     * the specified folder, it will search for files name[n].extension while it find a not existing file.
+     * the specified folder, it will search for files name[n].extension while it find a not existing file. The folder is
+     * listed once instead of testing each candidate. To allocate several names in the same folder or to allocate names
+     * concurrently, use a {@link FreeNameAllocator}.
      *
      * @param folder The folder to search free name in.
      * @param name   The name to add.
@@ -730,23 +1175,16 @@ public final class FileUtils {
      */
     public static String getFreeName(String folder, String name) {
         if (new File(folder, name).exists()) {
-            int count = 1;
-
-            String freeName;
-
-            do {
-                freeName = name.substring(0, name.lastIndexOf('.')) + '[' + count + ']' + name.substring(name.lastIndexOf('.'));
-                count++;
-            } while (new File(folder, freeName).exists());
-
-            return freeName;
+            return new FreeNameAllocator(new File(folder)).getFreeName(name);
         }
 
         return name;
     }
 
     /**
-     * Return all the files of the folder include the sub files and folders with no level limit.
+     * Return all the files of the folder include the sub files and folders with no level limit. The folders are read
+     * in parallel by a {@link TreeWalker} and the filter is applied to the folders too, so the folders that are not
+     * accepted are not read. The order of the files is not defined.
      *
      * @param folder     The folder to get the files from.
      * @param fileFilter The filter to use to select the files.
@@ -754,32 +1192,64 @@ public final class FileUtils {
      * @return A Collection containing all the files of the folder and his sub folders selected by the specified file
      *         filter.
      */
-    public static Collection<File> getFilesOfFolder(File folder, FileFilter fileFilter) {
+    public static Collection<File> getFilesOfFolder(File folder, final FileFilter fileFilter) {
         if (folder.isDirectory()) {
-            Collection<File> files = CollectionUtils.newList(50);
+            final Collection<File> files = new ConcurrentLinkedQueue<File>();
+
+            TreeWalker walker = new TreeWalker().followLinks(true);
 
-            readFolder(folder, files, fileFilter);
+            if (fileFilter != null) {
+                walker.filter(new TreeWalker.PathFilter() {
+                    @Override
+                    public boolean accept(Path path, BasicFileAttributes attributes) {
+                        return fileFilter.accept(path.toFile());
+                    }
+                });
+            }
 
-            return files;
+            try {
+                walker.walk(folder.toPath(), new TreeWalker.Visitor() {
+                    @Override
+                    public void visitFile(Path file, BasicFileAttributes attributes) {
+                        files.add(file.toFile());
+                    }
+                });
+            } catch (IOException e) {
+                LoggerFactory.getLogger(FileUtils.class).error("Unable to read all the files of " + folder, e);
+            }
+
+            return CollectionUtils.copyOf(files);
         }
 
         return Collections.emptyList();
     }
 
     /**
-     * Read the folder and all the files of the folder in the collection.
+     * Start an instrumented operation.
      *
-     * @param folder     The folder to read.
-     * @param files      The collection to add the files to.
-     * @param fileFilter The filter to get the files with.
+     * @return The start time of the operation in nanoseconds or 0 if there is no operation listener.
      */
-    private static void readFolder(File folder, Collection<File> files, FileFilter fileFilter) {
-        for (File file : folder.listFiles(fileFilter)) {
-            if (file.isDirectory()) {
-                readFolder(file, files, fileFilter);
-            } else {
-                files.add(file);
+    private static long startOperation() {
+        return operationListener == NO_LISTENER ? 0 : System.nanoTime();
+    }
+
+    /**
+     * End an instrumented operation and report it to the operation listener.
+     *
+     * @param operation The operation.
+     * @param start     The start time of the operation, as returned by {@link #startOperation()}.
+     * @param bytes     The number of bytes transferred.
+     * @param files     The number of files processed.
+     */
+    private static void endOperation(FileOperation operation, long start, long bytes, int files) {
+        FileOperationListener listener = operationListener;
+
+        if (start != 0 && listener != NO_LISTENER) {
+            try {
+                listener.operationCompleted(operation, bytes, files, System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                LoggerFactory.getLogger(FileUtils.class).error("Exception occurred in the operation listener", e);
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,302 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.OSUtils;
+import org.jtheque.utils.annotations.GuardedBy;
+import org.jtheque.utils.annotations.ThreadSafe;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An allocator of free names in a folder. The free names are of the form name[n].extension, like the names returned
+ * by {@link FileUtils#getFreeName(String, String)}. The folder is listed only once, on the first allocation, and the
+ * used indexes of each name are kept in a bit set, so the next free index is found without testing the candidates one
+ * by one. The names can be reserved : the file is atomically created, so the concurrent users of the same allocator,
+ * or the other processes writing in the folder, never get the same name. On the case insensitive file systems of
+ * Windows and Mac OS, the names differing only by their case are the same name.
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+public final class FreeNameAllocator {
+    /**
+     * The maximum index read from the existing names. The greater indexes are never reached by the allocation, so
+     * they are not stored.
+     */
+    private static final int MAX_INDEX = 1 << 20;
+
+    private final File folder;
+    private final boolean caseSensitive;
+
+    @GuardedBy("this")
+    private Map<String, BitSet> used;
+
+    /**
+     * Create a new FreeNameAllocator.
+     *
+     * @param folder The folder to allocate the names in.
+     */
+    public FreeNameAllocator(File folder) {
+        this(folder, !OSUtils.isWindows() && !OSUtils.isMac());
+    }
+
+    /**
+     * Create a new FreeNameAllocator.
+     *
+     * @param folder        The folder to allocate the names in.
+     * @param caseSensitive Indicate if the file system of the folder is case sensitive.
+     */
+    FreeNameAllocator(File folder, boolean caseSensitive) {
+        super();
+
+        this.folder = folder;
+        this.caseSensitive = caseSensitive;
+    }
+
+    /**
+     * Return the folder of the allocator.
+     *
+     * @return The folder.
+     */
+    public File getFolder() {
+        return folder;
+    }
+
+    /**
+     * Return the next free name for the specified name, without reserving it. If the name is free, it's returned
+     * directly. The result is computed from the listing of the folder and the names reserved with this allocator, so
+     * another caller can take the name before it's used. Use {@link #reserve(String)} to get a name that cannot be
+     * taken. The returned name is checked to not exist, the names created since the listing are skipped.
+     *
+     * @param name The name.
+     *
+     * @return The next free name.
+     */
+    public synchronized String getFreeName(String name) {
+        BitSet indexes = indexesOf(name);
+
+        while (true) {
+            int index = indexes.nextClearBit(0);
+
+            String freeName = nameOf(name, index);
+
+            if (!new File(folder, freeName).exists()) {
+                return freeName;
+            }
+
+            indexes.set(index);
+        }
+    }
+
+    /**
+     * Reserve the next free name for the specified name. The file is created empty with an atomic creation, so it can
+     * only be reserved once. If the file has been created by somebody else since the listing, the next free name is
+     * tried.
+     *
+     * @param name The name.
+     *
+     * @return The reserved file, created empty.
+     *
+     * @throws IOException If the file cannot be created.
+     */
+    public File reserve(String name) throws IOException {
+        while (true) {
+            String freeName;
+
+            synchronized (this) {
+                BitSet indexes = indexesOf(name);
+
+                int index = indexes.nextClearBit(0);
+
+                indexes.set(index);
+
+                freeName = nameOf(name, index);
+            }
+
+            File file = new File(folder, freeName);
+
+            try {
+                Files.createFile(file.toPath());
+
+                return file;
+            } catch (FileAlreadyExistsException e) {
+                //Already taken, the index is kept as used and the next one is tried
+            }
+        }
+    }
+
+    /**
+     * Return the used indexes of the name. The index 0 is the name itself. Must be called with the lock of the
+     * allocator.
+     *
+     * @param name The name.
+     *
+     * @return The bit set of the used indexes.
+     */
+    private BitSet indexesOf(String name) {
+        if (used == null) {
+            used = listFolder();
+        }
+
+        String key = keyOf(name);
+
+        BitSet indexes = used.get(key);
+
+        if (indexes == null) {
+            indexes = new BitSet();
+
+            used.put(key, indexes);
+        }
+
+        return indexes;
+    }
+
+    /**
+     * List the folder and parse the indexes of the existing names. A file name[n].extension is both the index n of
+     * name.extension and the index 0 of name[n].extension.
+     *
+     * @return The used indexes of each name.
+     */
+    private Map<String, BitSet> listFolder() {
+        Map<String, BitSet> indexes = new HashMap<String, BitSet>(64);
+
+        String[] names = folder.list();
+
+        if (names == null) {
+            return indexes;
+        }
+
+        for (String name : names) {
+            mark(indexes, name, 0);
+
+            int dot = extensionStart(name);
+
+            if (dot > 0 && name.charAt(dot - 1) == ']') {
+                int open = name.lastIndexOf('[', dot - 1);
+
+                int index = open < 0 ? -1 : parseIndex(name, open + 1, dot - 1);
+
+                if (index > 0) {
+                    mark(indexes, name.substring(0, open) + name.substring(dot), index);
+                }
+            }
+        }
+
+        return indexes;
+    }
+
+    /**
+     * Mark the index of the name as used.
+     *
+     * @param indexes The used indexes of each name.
+     * @param name    The name.
+     * @param index   The index to mark.
+     */
+    private void mark(Map<String, BitSet> indexes, String name, int index) {
+        String key = keyOf(name);
+
+        BitSet bits = indexes.get(key);
+
+        if (bits == null) {
+            bits = new BitSet();
+
+            indexes.put(key, bits);
+        }
+
+        bits.set(index);
+    }
+
+    /**
+     * Return the key of the name in the map of the used indexes. The case of the name is folded if the file system is
+     * not case sensitive.
+     *
+     * @param name The name.
+     *
+     * @return The key of the name.
+     */
+    private String keyOf(String name) {
+        return caseSensitive ? name : name.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Parse the index between the given positions.
+     *
+     * @param name  The name.
+     * @param start The start of the index, inclusive.
+     * @param end   The end of the index, exclusive.
+     *
+     * @return The index or -1 if it's not a valid index.
+     */
+    private static int parseIndex(String name, int start, int end) {
+        if (start >= end || end - start > 7) {
+            return -1;
+        }
+
+        int index = 0;
+
+        for (int i = start; i < end; i++) {
+            char c = name.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            index = index * 10 + c - '0';
+        }
+
+        return index <= MAX_INDEX ? index : -1;
+    }
+
+    /**
+     * Return the name with the given index.
+     *
+     * @param name  The name.
+     * @param index The index, 0 for the name itself.
+     *
+     * @return The indexed name.
+     */
+    private static String nameOf(String name, int index) {
+        if (index == 0) {
+            return name;
+        }
+
+        int dot = extensionStart(name);
+
+        return name.substring(0, dot) + '[' + index + ']' + name.substring(dot);
+    }
+
+    /**
+     * Return the position of the extension in the name.
+     *
+     * @param name The name.
+     *
+     * @return The position of the last dot or the length of the name if there is no extension.
+     */
+    private static int extensionStart(String name) {
+        int dot = name.lastIndexOf('.');
+
+        return dot < 0 ? name.length() : dot;
+    }
+}
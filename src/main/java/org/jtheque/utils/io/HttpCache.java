@@ -0,0 +1,520 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.annotations.GuardedBy;
+import org.jtheque.utils.annotations.ThreadSafe;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local cache of HTTP resources. For each resource, the body is stored in a file of the cache folder with the ETag
+ * and the Last-Modified date of the response. When a cached resource is requested again, the request is made
+ * conditional with the If-None-Match and If-Modified-Since headers and a 304 response is served from the disk. The
+ * cache is bounded by a number of bytes, the least recently used resources being deleted first. The entries of the
+ * folder are reused by the next instances of the cache.
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+public final class HttpCache {
+    private static final String BODY = ".body";
+    private static final String META = ".meta";
+
+    /**
+     * The number of locks serializing the stores of the entries.
+     */
+    private static final int LOCKS = 32;
+
+    private final File folder;
+    private final long maximumSize;
+
+    @GuardedBy("this")
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(64, 0.75f, true);
+
+    @GuardedBy("this")
+    private long size;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final Object[] locks = new Object[LOCKS];
+
+    /**
+     * Create a new HttpCache. The existing entries of the folder are reused.
+     *
+     * @param folder      The folder of the cache.
+     * @param maximumSize The maximum size of the cache in bytes.
+     */
+    public HttpCache(File folder, long maximumSize) {
+        super();
+
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("The maximum size is less than or equals to zero. ");
+        }
+
+        this.folder = folder;
+        this.maximumSize = maximumSize;
+
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new Object();
+        }
+
+        FileUtils.createIfNotExists(folder);
+
+        loadEntries();
+    }
+
+    /**
+     * Download the resource to the destination file. If the resource is in the cache, the request is conditional and
+     * if the resource has not been modified, the cached copy is used.
+     *
+     * @param url         The URL of the resource.
+     * @param destination The destination file.
+     *
+     * @return {@code true} if the resource has been served from the cache otherwise {@code false}.
+     *
+     * @throws FileException If an error occurs during the downloading process.
+     */
+    public boolean download(URL url, File destination) throws FileException {
+        String name = nameOf(url);
+
+        try {
+            Properties meta = readMeta(name, url);
+
+            HttpURLConnection connection = HttpDownload.open(url, -1, -1, null);
+
+            try {
+                if (meta != null) {
+                    setConditions(connection, meta);
+                }
+
+                int code = connection.getResponseCode();
+
+                if (code == HttpURLConnection.HTTP_NOT_MODIFIED && meta != null) {
+                    FileUtils.close(connection.getInputStream());
+
+                    if (serve(name, destination)) {
+                        hits.incrementAndGet();
+
+                        return true;
+                    }
+
+                    return download(url, destination);
+                }
+
+                if (code != HttpURLConnection.HTTP_OK) {
+                    throw HttpDownload.checkStatus(connection, code);
+                }
+
+                misses.incrementAndGet();
+
+                //The body and the metadata of an entry are stored and copied by one thread at a time
+                synchronized (lockOf(name)) {
+                    store(name, url, connection);
+
+                    copy(new File(folder, name + BODY), destination);
+                }
+            } finally {
+                connection.disconnect();
+            }
+
+            register(name);
+
+            return false;
+        } catch (IOException e) {
+            throw new FileException("Exception occurred during downloading", e);
+        }
+    }
+
+    /**
+     * Return the number of requests served from the cache.
+     *
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Return the number of requests that have downloaded the resource.
+     *
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Return the current size of the cache.
+     *
+     * @return The size of the cache in bytes.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Return the maximum size of the cache.
+     *
+     * @return The maximum size of the cache in bytes.
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Remove all the resources of the cache.
+     */
+    public synchronized void clear() {
+        for (String name : entries.keySet()) {
+            deleteEntry(name);
+        }
+
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Add the conditional headers of the cached resource to the request.
+     *
+     * @param connection The connection.
+     * @param meta       The metadata of the cached resource.
+     */
+    private static void setConditions(HttpURLConnection connection, Properties meta) {
+        String etag = meta.getProperty("etag");
+        String lastModified = meta.getProperty("lastModified");
+
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+
+        if (lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+    }
+
+    /**
+     * Copy the file to the destination. The file is copied next to the destination and then renamed, so the
+     * destination is never seen partially written.
+     *
+     * @param source      The file to copy.
+     * @param destination The destination file.
+     *
+     * @throws IOException If the file cannot be copied.
+     */
+    private static void copy(File source, File destination) throws IOException {
+        File temp = AtomicFileOutputStream.createTemp(destination);
+
+        try {
+            Files.copy(source.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            AtomicFileOutputStream.rename(temp, destination);
+        } catch (IOException e) {
+            FileUtils.delete(temp);
+
+            throw e;
+        }
+    }
+
+    /**
+     * Copy the cached body to the destination.
+     *
+     * @param name        The name of the entry.
+     * @param destination The destination file.
+     *
+     * @return {@code true} if the body has been copied, {@code false} if it has been evicted in the meantime.
+     *
+     * @throws IOException If the body cannot be copied.
+     */
+    private boolean serve(String name, File destination) throws IOException {
+        synchronized (this) {
+            if (entries.get(name) == null) {
+                return false;
+            }
+        }
+
+        File body = new File(folder, name + BODY);
+
+        try {
+            copy(body, destination);
+        } catch (NoSuchFileException e) {
+            remove(name);
+
+            return false;
+        }
+
+        //The date of the metadata orders the entries when the cache is reloaded
+        new File(folder, name + META).setLastModified(System.currentTimeMillis());
+
+        return true;
+    }
+
+    /**
+     * Store the body of the response and its metadata. Both files are replaced atomically. A body shorter or longer
+     * than the Content-Length of the response is not stored. Must be called with the lock of the entry.
+     *
+     * @param name       The name of the entry.
+     * @param url        The URL of the resource.
+     * @param connection The connection.
+     *
+     * @throws IOException If the response cannot be stored.
+     */
+    private void store(String name, URL url, HttpURLConnection connection) throws IOException {
+        Properties meta = new Properties();
+        meta.setProperty("url", url.toString());
+
+        String etag = connection.getHeaderField("ETag");
+        String lastModified = connection.getHeaderField("Last-Modified");
+
+        if (etag != null) {
+            meta.setProperty("etag", etag);
+        }
+
+        if (lastModified != null) {
+            meta.setProperty("lastModified", lastModified);
+        }
+
+        InputStream in = connection.getInputStream();
+        AtomicFileOutputStream out = new AtomicFileOutputStream(new File(folder, name + BODY), false);
+
+        try {
+            byte[] buffer = new byte[64 * 1024];
+
+            long length = 0;
+
+            int read = in.read(buffer);
+
+            while (read != -1) {
+                out.write(buffer, 0, read);
+                length += read;
+
+                read = in.read(buffer);
+            }
+
+            long expected = connection.getContentLengthLong();
+
+            if (expected >= 0 && length != expected) {
+                throw new IOException("Invalid body length " + length + ", expected " + expected + " (" + url + ')');
+            }
+        } catch (IOException e) {
+            out.abort();
+
+            throw e;
+        } finally {
+            FileUtils.close(in);
+        }
+
+        out.close();
+
+        OutputStream metaOut = new AtomicFileOutputStream(new File(folder, name + META), false);
+
+        try {
+            meta.store(metaOut, null);
+        } finally {
+            metaOut.close();
+        }
+    }
+
+    /**
+     * Return the lock of the entry with the given name.
+     *
+     * @param name The name of the entry.
+     *
+     * @return The lock of the entry.
+     */
+    private Object lockOf(String name) {
+        return locks[(name.hashCode() & Integer.MAX_VALUE) % LOCKS];
+    }
+
+    /**
+     * Read the metadata of the cached resource.
+     *
+     * @param name The name of the entry.
+     * @param url  The URL of the resource.
+     *
+     * @return The metadata or {@code null} if the resource is not in the cache.
+     */
+    private Properties readMeta(String name, URL url) {
+        synchronized (this) {
+            if (entries.get(name) == null) {
+                return null;
+            }
+        }
+
+        Properties meta = new Properties();
+
+        InputStream stream = null;
+
+        try {
+            stream = FileUtils.asInputStream(new File(folder, name + META));
+
+            meta.load(stream);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            FileUtils.close(stream);
+        }
+
+        if (!url.toString().equals(meta.getProperty("url")) || !new File(folder, name + BODY).exists()) {
+            return null;
+        }
+
+        return meta;
+    }
+
+    /**
+     * Register the stored entry and evict the least recently used entries if necessary.
+     *
+     * @param name The name of the entry.
+     */
+    private synchronized void register(String name) {
+        Long previous = entries.remove(name);
+
+        if (previous != null) {
+            size -= previous;
+        }
+
+        long length = new File(folder, name + BODY).length() + new File(folder, name + META).length();
+
+        entries.put(name, length);
+        size += length;
+
+        evict();
+    }
+
+    /**
+     * Load the entries of the folder. The least recently used entries are the first to be evicted.
+     */
+    private void loadEntries() {
+        File[] files = folder.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(o1.lastModified(), o2.lastModified());
+            }
+        });
+
+        synchronized (this) {
+            for (File file : files) {
+                String fileName = file.getName();
+
+                if (fileName.endsWith(".tmp")) {
+                    FileUtils.delete(file);
+                } else if (fileName.endsWith(META)) {
+                    String name = fileName.substring(0, fileName.length() - META.length());
+
+                    File body = new File(folder, name + BODY);
+
+                    if (body.exists()) {
+                        long length = file.length() + body.length();
+
+                        entries.put(name, length);
+                        size += length;
+                    } else {
+                        FileUtils.delete(file);
+                    }
+                }
+            }
+
+            evict();
+        }
+    }
+
+    /**
+     * Remove the entry with the given name.
+     *
+     * @param name The name of the entry.
+     */
+    private synchronized void remove(String name) {
+        Long length = entries.remove(name);
+
+        if (length != null) {
+            size -= length;
+
+            deleteEntry(name);
+        }
+    }
+
+    /**
+     * Delete the least recently used entries until the size of the cache respects the maximum size. Must be called
+     * with the lock of the cache.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+
+        while (size > maximumSize && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+
+            iterator.remove();
+            size -= entry.getValue();
+
+            deleteEntry(entry.getKey());
+        }
+    }
+
+    /**
+     * Delete the files of the entry.
+     *
+     * @param name The name of the entry.
+     */
+    private void deleteEntry(String name) {
+        FileUtils.delete(new File(folder, name + META));
+        FileUtils.delete(new File(folder, name + BODY));
+    }
+
+    /**
+     * Return the name of the entry of the URL. The name is a 64 bits FNV-1a hash of the URL, the collisions are
+     * detected with the URL stored in the metadata.
+     *
+     * @param url The URL.
+     *
+     * @return The name of the entry.
+     */
+    private static String nameOf(URL url) {
+        String key = url.toString();
+
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return Long.toHexString(hash);
+    }
+}
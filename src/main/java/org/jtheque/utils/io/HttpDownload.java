@@ -0,0 +1,362 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A streaming HTTP download. The body is written directly in a file channel through a bounded buffer, at the position
+ * of the range being downloaded, so the size of the file doesn't matter and the length of the response doesn't need to
+ * be known. When the connection fails or the body is truncated, the download is resumed where it has stopped with an
+ * HTTP Range request. The If-Range header ensures that the resumed part comes from the same version of the resource.
+ *
+ * @author Baptiste Wicht
+ */
+final class HttpDownload {
+    /**
+     * The connect timeout in milliseconds.
+     */
+    static final int CONNECT_TIMEOUT = 15000;
+
+    /**
+     * The read timeout in milliseconds.
+     */
+    static final int READ_TIMEOUT = 30000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The delay before the first retry in milliseconds. The delay is doubled at each retry.
+     */
+    private static final long RETRY_DELAY = 250;
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private HttpDownload() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Download the given range of the URL in the channel. The bytes are written at their position in the resource.
+     *
+     * @param url     The URL to download.
+     * @param channel The channel to write to.
+     * @param start   The first byte to download.
+     * @param end     The last byte to download, inclusive, or -1 to download until the end of the resource.
+     * @param retries The number of times the download is resumed after a failure.
+     *
+     * @return The position after the last written byte.
+     *
+     * @throws IOException If the download fails after all the retries.
+     */
+    static long fetch(URL url, FileChannel channel, long start, long end, int retries) throws IOException {
+        return fetch(url, channel, start, end, retries, null);
+    }
+
+    /**
+     * Download the given range of the URL in the channel. The bytes are written at their position in the resource. If
+     * a validator is given, the ranges are only accepted from the same version of the resource.
+     *
+     * @param url       The URL to download.
+     * @param channel   The channel to write to.
+     * @param start     The first byte to download.
+     * @param end       The last byte to download, inclusive, or -1 to download until the end of the resource.
+     * @param retries   The number of times the download is resumed after a failure.
+     * @param validator The ETag or Last-Modified of the resource or {@code null}.
+     *
+     * @return The position after the last written byte.
+     *
+     * @throws IOException If the download fails after all the retries.
+     */
+    static long fetch(URL url, FileChannel channel, long start, long end, int retries, String validator) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        long[] progress = {start};
+
+        String currentValidator = validator;
+
+        for (int attempt = 0; ; attempt++) {
+            long position = progress[0];
+
+            HttpURLConnection connection = open(url, position, end, currentValidator);
+
+            try {
+                int code = connection.getResponseCode();
+
+                if (code == HttpURLConnection.HTTP_OK) {
+                    if (start > 0 || end >= 0) {
+                        throw new NotRetryableException("The server doesn't support ranges (" + url + ')');
+                    }
+
+                    position = 0;
+                    progress[0] = 0;
+                    channel.truncate(0);
+                } else if (code == HttpURLConnection.HTTP_PARTIAL) {
+                    long first = parseContentRange(connection.getHeaderField("Content-Range"))[0];
+
+                    if (first != position) {
+                        throw new NotRetryableException("Unexpected range from " + url + " : " + connection.getHeaderField("Content-Range"));
+                    }
+                } else if (code == 416 && position > start && end < 0) {
+                    long total = parseContentRange(connection.getHeaderField("Content-Range"))[2];
+
+                    if (total == position) {
+                        return position;
+                    }
+
+                    throw new NotRetryableException("The resource has changed during the download (" + url + ')');
+                } else {
+                    throw checkStatus(connection, code);
+                }
+
+                if (currentValidator == null) {
+                    currentValidator = validatorOf(connection);
+                }
+
+                long expectedEnd = expectedEnd(connection, code, position);
+
+                position = copy(connection, channel, buffer, progress, expectedEnd);
+
+                if (expectedEnd >= 0 && position < expectedEnd) {
+                    throw new IOException("The body has been truncated (" + position + " of " + expectedEnd + ')');
+                }
+
+                return position;
+            } catch (NotRetryableException e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt >= retries) {
+                    throw e;
+                }
+
+                connection.disconnect();
+
+                pause(RETRY_DELAY << Math.min(attempt, 6));
+            }
+        }
+    }
+
+    /**
+     * Open a connection to the URL.
+     *
+     * @param url       The URL.
+     * @param from      The first byte to get.
+     * @param to        The last byte to get, inclusive, or -1 for the end of the resource.
+     * @param validator The validator of the resource used for the If-Range header or {@code null}.
+     *
+     * @return The connection.
+     *
+     * @throws IOException If the connection cannot be opened.
+     */
+    static HttpURLConnection open(URL url, long from, long to, String validator) throws IOException {
+        URLConnection urlConnection = url.openConnection();
+
+        if (!(urlConnection instanceof HttpURLConnection)) {
+            throw new NotRetryableException("Not an HTTP URL : " + url);
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) urlConnection;
+
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+
+        if (from > 0 || to >= 0) {
+            connection.setRequestProperty("Range", "bytes=" + from + '-' + (to >= 0 ? Long.toString(to) : ""));
+
+            if (validator != null) {
+                connection.setRequestProperty("If-Range", validator);
+            }
+        }
+
+        return connection;
+    }
+
+    /**
+     * Copy the body of the connection in the channel.
+     *
+     * @param connection  The connection.
+     * @param channel     The channel to write to.
+     * @param buffer      The buffer to use.
+     * @param progress    The position of the next byte, updated after each write.
+     * @param expectedEnd The expected position after the body or -1 if unknown.
+     *
+     * @return The position after the last written byte.
+     *
+     * @throws IOException If an error occurs during the copy.
+     */
+    private static long copy(HttpURLConnection connection, FileChannel channel, ByteBuffer buffer, long[] progress,
+                             long expectedEnd) throws IOException {
+        InputStream stream = connection.getInputStream();
+
+        try {
+            ReadableByteChannel source = Channels.newChannel(stream);
+
+            buffer.clear();
+
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+
+                while (buffer.hasRemaining()) {
+                    progress[0] += channel.write(buffer, progress[0]);
+                }
+
+                buffer.clear();
+
+                if (expectedEnd >= 0 && progress[0] > expectedEnd) {
+                    throw new NotRetryableException("The body is longer than expected");
+                }
+            }
+
+            return progress[0];
+        } finally {
+            FileUtils.close(stream);
+        }
+    }
+
+    /**
+     * Return the expected position after the body of the response.
+     *
+     * @param connection The connection.
+     * @param code       The response code.
+     * @param position   The position of the first byte of the body.
+     *
+     * @return The expected end or -1 if the length of the body is not known.
+     */
+    private static long expectedEnd(HttpURLConnection connection, int code, long position) {
+        if (code == HttpURLConnection.HTTP_PARTIAL) {
+            return parseContentRange(connection.getHeaderField("Content-Range"))[1] + 1;
+        }
+
+        long length = connection.getContentLengthLong();
+
+        return length < 0 ? -1 : position + length;
+    }
+
+    /**
+     * Return the validator of the resource, the entity tag if it's a strong one or the last modification date.
+     *
+     * @param connection The connection.
+     *
+     * @return The validator or {@code null} if the response has no validator.
+     */
+    static String validatorOf(URLConnection connection) {
+        String etag = connection.getHeaderField("ETag");
+
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+
+        return connection.getHeaderField("Last-Modified");
+    }
+
+    /**
+     * Parse a Content-Range header of the form bytes first-last/total.
+     *
+     * @param header The header value.
+     *
+     * @return An array with the first byte, the last byte and the total length. The unknown values are -1.
+     */
+    static long[] parseContentRange(String header) {
+        long[] range = {-1, -1, -1};
+
+        if (header == null || !header.startsWith("bytes")) {
+            return range;
+        }
+
+        String value = header.substring(5).trim();
+
+        int slash = value.indexOf('/');
+        int dash = value.indexOf('-');
+
+        try {
+            if (slash >= 0 && !"*".equals(value.substring(slash + 1))) {
+                range[2] = Long.parseLong(value.substring(slash + 1));
+            }
+
+            if (dash > 0 && (slash < 0 || dash < slash)) {
+                range[0] = Long.parseLong(value.substring(0, dash));
+                range[1] = Long.parseLong(value.substring(dash + 1, slash < 0 ? value.length() : slash));
+            }
+        } catch (NumberFormatException e) {
+            return new long[]{-1, -1, -1};
+        }
+
+        return range;
+    }
+
+    /**
+     * Return the exception for an unexpected status. The client errors are not retried.
+     *
+     * @param connection The connection.
+     * @param code       The response code.
+     *
+     * @return The exception to throw.
+     */
+    static IOException checkStatus(HttpURLConnection connection, int code) {
+        String message = "Unexpected response " + code + " from " + connection.getURL();
+
+        if (code >= 400 && code < 500) {
+            return new NotRetryableException(message);
+        }
+
+        return new IOException(message);
+    }
+
+    /**
+     * Wait before a retry.
+     *
+     * @param delay The delay in milliseconds.
+     *
+     * @throws IOException If the thread is interrupted.
+     */
+    static void pause(long delay) throws IOException {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new NotRetryableException("Interrupted during the download");
+        }
+    }
+
+    /**
+     * An exception after which the download must not be retried.
+     *
+     * @author Baptiste Wicht
+     */
+    static final class NotRetryableException extends IOException {
+        private static final long serialVersionUID = -4381549206428367170L;
+
+        /**
+         * Construct a new NotRetryableException.
+         *
+         * @param message The message of the exception.
+         */
+        NotRetryableException(String message) {
+            super(message);
+        }
+    }
+}
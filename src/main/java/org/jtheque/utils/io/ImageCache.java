@@ -1,5 +1,7 @@
 package org.jtheque.utils.io;
 
+import org.jtheque.utils.ThreadUtils;
+import org.jtheque.utils.annotations.GuardedBy;
 import org.jtheque.utils.annotations.GuardedInternally;
 import org.jtheque.utils.annotations.ThreadSafe;
 import org.jtheque.utils.collections.CollectionUtils;
@@ -8,14 +10,27 @@ import org.jtheque.utils.ui.ImageUtils;
 import javax.swing.ImageIcon;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.io.File;
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 /*
  * Copyright JTheque (Baptiste Wicht)
@@ -34,14 +49,45 @@ import java.util.concurrent.FutureTask;
  */
 
 /**
- * A thread safe cache for image.
+ * A thread safe cache for image. The cache is bounded by a budget of bytes, the weight of an image being the size of
+ * its raster. When the budget is exceeded, the images are evicted using a segmented LRU policy : a new image enters the
+ * probation segment and is only promoted to the protected segment when it's accessed again, so a scan of images used
+ * only once cannot flush the images that are frequently used.
+ * <p/>
+ * The images can also be loaded asynchronously. The asynchronous loads are made by a decode pool shared by all the
+ * caches and sized from the number of processors. Whatever the way they are requested, an image is only loaded once
+ * at a time.
+ * <p/>
+ * The cache can also create thumbnails of image files. A {@link ThumbnailDiskCache} can be set to keep the thumbnails
+ * between the executions of the application, the thumbnails found on the disk are used without decoding the images.
  *
  * @author Baptiste Wicht
  */
 @ThreadSafe
 public class ImageCache {
+    /**
+     * The default budget of the cache in bytes.
+     */
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 64L * 1024 * 1024;
+
+    /**
+     * The percentage of the budget reserved for the protected segment.
+     */
+    private static final int PROTECTED_PERCENTAGE = 80;
+
+    private static final ExecutorService DECODE_POOL = newDecodePool();
+
     @GuardedInternally
-    private final ConcurrentMap<String, Future<SoftImage>> cache;
+    private final ConcurrentMap<String, ImageFuture> cache;
+
+    private final Policy policy;
+
+    private volatile ThumbnailDiskCache diskCache;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong loadTime = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
 
     /**
      * Construct a new ImageCache. The initial capacity is 25.
@@ -51,23 +97,85 @@ public class ImageCache {
     }
 
     /**
-     * Construct a new ImageCache.
+     * Construct a new ImageCache with the default budget.
      *
      * @param capacity The initial capacity of the cache.
+     *
+     * @see #DEFAULT_MAXIMUM_WEIGHT
      */
     public ImageCache(int capacity) {
+        this(capacity, DEFAULT_MAXIMUM_WEIGHT);
+    }
+
+    /**
+     * Construct a new ImageCache.
+     *
+     * @param capacity      The initial capacity of the cache.
+     * @param maximumWeight The budget of the cache in bytes.
+     */
+    public ImageCache(int capacity, long maximumWeight) {
         super();
 
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("The maximum weight is less than or equals to zero. ");
+        }
+
         cache = CollectionUtils.newConcurrentMap(capacity);
+        policy = new Policy(maximumWeight);
+    }
+
+    /**
+     * Set the disk cache used to store the thumbnails.
+     *
+     * @param diskCache The disk cache, {@code null} to disable the disk cache.
+     */
+    public void setDiskCache(ThumbnailDiskCache diskCache) {
+        this.diskCache = diskCache;
     }
 
     /**
-     * Invalidate the image of the path.
+     * Invalidate the image of the path, its thumbnails and its scaled versions.
      *
      * @param path The path of the image to invalidate.
      */
     public void invalidate(String path) {
         cache.remove(path);
+        policy.remove(path);
+
+        for (String key : cache.keySet()) {
+            if (isVariantOf(key, path)) {
+                cache.remove(key);
+                policy.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Indicate if the key is the key of a variant of the image of the path, a thumbnail or a scaled version.
+     *
+     * @param key  The key.
+     * @param path The path of the image.
+     *
+     * @return {@code true} if the key is the key of a variant of the image otherwise {@code false}.
+     */
+    private static boolean isVariantOf(String key, String path) {
+        if (key.length() <= path.length() + 1 || !key.startsWith(path)) {
+            return false;
+        }
+
+        char separator = key.charAt(path.length());
+
+        if (separator != '@' && separator != '#') {
+            return false;
+        }
+
+        for (int i = path.length() + 1; i < key.length(); i++) {
+            if (!Character.isDigit(key.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     /**
@@ -102,10 +210,12 @@ public class ImageCache {
      * @param path   The path to the image.
      * @param stream The stream of the image.
      *
-     * @return The ImageIcon.
+     * @return The ImageIcon or null if the thread has been interrupted while waiting for the image.
      */
     public ImageIcon getIcon(String path, InputStream stream) {
-        return new ImageIcon(get(path, stream));
+        BufferedImage image = get(path, stream);
+
+        return image == null ? null : new ImageIcon(image);
     }
 
     /**
@@ -114,10 +224,12 @@ public class ImageCache {
      * @param path   The path to the image.
      * @param stream The stream of the image.
      *
-     * @return The ImageIcon.
+     * @return The ImageIcon or null if the thread has been interrupted while waiting for the image.
      */
     public ImageIcon getIcon(String path, OnDemandStream stream) {
-        return new ImageIcon(get(path, stream));
+        BufferedImage image = get(path, stream);
+
+        return image == null ? null : new ImageIcon(image);
     }
 
     /**
@@ -138,41 +250,446 @@ public class ImageCache {
      * @param path   The path to the image.
      * @param stream The stream of the image.
      *
-     * @return The BufferedImage.
+     * @return The BufferedImage or null if the thread has been interrupted while waiting for the image.
      */
     public BufferedImage get(String path, OnDemandStream stream) {
+        return get(path, new StreamLoader(stream));
+    }
+
+    /**
+     * Return the thumbnail of the image file. The thumbnail is first searched in the memory, then in the disk cache. If
+     * it's not found, the image is decoded at a reduced resolution and scaled and the thumbnail is stored in the disk
+     * cache. The thumbnail has the requested width, or the width of the image if it's smaller, the images are never
+     * enlarged.
+     *
+     * @param path The path to the file.
+     * @param size The requested size of the thumbnail.
+     *
+     * @return The thumbnail or null if the file doesn't exist.
+     */
+    public BufferedImage getThumbnail(String path, int size) {
+        File f = new File(path);
+
+        return f.exists() ? get(path + '@' + size, new ThumbnailLoader(f, size)) : null;
+    }
+
+    /**
+     * Return the image of the file scaled to fit in a square of the given dimension. The entry is cached by path and
+     * dimension and only the needed pixels of the image are decoded.
+     *
+     * @param path   The path to the file.
+     * @param maxDim The maximum width and height of the image.
+     *
+     * @return The scaled image or null if the file doesn't exist.
+     *
+     * @see ImageUtils#readScaled(File, int)
+     */
+    public BufferedImage getScaled(String path, int maxDim) {
+        File f = new File(path);
+
+        return f.exists() ? get(path + '#' + maxDim, new ScaledLoader(f, maxDim)) : null;
+    }
+
+    /**
+     * Return the image of the file scaled to fit in a square of the given dimension. The image is loaded in the decode
+     * pool.
+     *
+     * @param path   The path to the file.
+     * @param maxDim The maximum width and height of the image.
+     *
+     * @return A future completed with the scaled image or with null if the file doesn't exist.
+     *
+     * @see #getScaled(String, int)
+     */
+    public CompletableFuture<BufferedImage> getScaledAsync(String path, int maxDim) {
+        File f = new File(path);
+
+        if (f.exists()) {
+            return getAsync(path + '#' + maxDim, new ScaledLoader(f, maxDim));
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Return the thumbnail of the image file. The thumbnail is loaded in the decode pool.
+     *
+     * @param path The path to the file.
+     * @param size The requested size of the thumbnail.
+     *
+     * @return A future completed with the thumbnail or with null if the file doesn't exist.
+     *
+     * @see #getThumbnail(String, int)
+     */
+    public CompletableFuture<BufferedImage> getThumbnailAsync(String path, int size) {
+        File f = new File(path);
+
+        if (f.exists()) {
+            return getAsync(path + '@' + size, new ThumbnailLoader(f, size));
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Return the image of the given key using the given loader.
+     *
+     * @param path   The key of the image.
+     * @param loader The loader of the image.
+     *
+     * @return The BufferedImage or null if the thread has been interrupted while waiting for the image.
+     */
+    private BufferedImage get(String path, Loader loader) {
         while (true) {
-            Future<SoftImage> f = cache.get(path);
+            ImageFuture f = cache.get(path);
+
+            boolean loaded = false;
 
             if (f == null) {
-                FutureTask<SoftImage> ft = new FutureTask<SoftImage>(new ImageLoader(stream.get()));
+                ImageFuture newFuture = new ImageFuture();
 
-                f = cache.putIfAbsent(path, ft);
+                f = cache.putIfAbsent(path, newFuture);
 
                 if (f == null) {
-                    f = ft;
-                    ft.run();
+                    f = newFuture;
+                    loaded = true;
+
+                    load(path, loader, f);
                 } else {
-                    FileUtils.close(stream.get());
+                    loader.discard();
                 }
             }
 
+            f.retain();
+
             try {
-                SoftImage image = f.get();
+                BufferedImage image = f.get();
 
-                if (image.hasBeenCleared()) {
-                    cache.remove(path, f);
-                } else {
-                    return image.get();
+                if (!loaded) {
+                    hit(path);
                 }
+
+                return image;
             } catch (CancellationException e) {
                 cache.remove(path, f);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
+
+                return null;
             } catch (ExecutionException e) {
                 throw launderThrowable(e.getCause());
+            } finally {
+                if (f.release()) {
+                    cache.remove(path, f);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the image of the given path using the given on demand stream. The image is loaded in the decode pool, the
+     * stream is only opened if the image must be loaded. Cancelling the returned future cancels the load if no other
+     * request is waiting for the same image.
+     *
+     * @param path   The path to the image.
+     * @param stream The stream of the image.
+     *
+     * @return A future completed with the BufferedImage.
+     */
+    public CompletableFuture<BufferedImage> getAsync(String path, OnDemandStream stream) {
+        return getAsync(path, new StreamLoader(stream));
+    }
+
+    /**
+     * Return the image of the given key using the given loader. The image is loaded in the decode pool.
+     *
+     * @param path   The key of the image.
+     * @param loader The loader of the image.
+     *
+     * @return A future completed with the BufferedImage.
+     */
+    private CompletableFuture<BufferedImage> getAsync(final String path, final Loader loader) {
+        ImageFuture f = cache.get(path);
+
+        boolean loaded = false;
+
+        if (f == null) {
+            final ImageFuture newFuture = new ImageFuture();
+
+            f = cache.putIfAbsent(path, newFuture);
+
+            if (f == null) {
+                f = newFuture;
+                loaded = true;
+
+                newFuture.task = DECODE_POOL.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        load(path, loader, newFuture);
+                    }
+                });
+            } else {
+                loader.discard();
+            }
+        }
+
+        return request(path, loader, f, loaded);
+    }
+
+    /**
+     * Return the image of the given file. The image is loaded in the decode pool.
+     *
+     * @param path The path to the file.
+     *
+     * @return A future completed with the BufferedImage or with null if the file doesn't exist.
+     *
+     * @see #getAsync(String, OnDemandStream)
+     */
+    public CompletableFuture<BufferedImage> getFromFileAsync(String path) {
+        File f = new File(path);
+
+        if (f.exists()) {
+            return getAsync(path, new OnDemandInputStream(f));
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Load the images of the given files in the decode pool. The files that don't exist are ignored.
+     *
+     * @param paths The paths to the files.
+     *
+     * @return A future completed when all the images have been loaded.
+     */
+    public CompletableFuture<Void> prefetch(Collection<String> paths) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[paths.size()];
+
+        int i = 0;
+        for (String path : paths) {
+            futures[i++] = getFromFileAsync(path);
+        }
+
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Create the request of a caller for the image future. The request completes with the future and releases the
+     * future if it's cancelled. If the future is cancelled by the other requests, the image is requested again, as
+     * the synchronous requests do.
+     *
+     * @param path   The path to the image.
+     * @param loader The loader of the image.
+     * @param future The shared future of the image.
+     * @param loaded Indicate if the caller has started the load of the image.
+     *
+     * @return The request of the caller.
+     */
+    private CompletableFuture<BufferedImage> request(final String path, final Loader loader, final ImageFuture future,
+                                                     final boolean loaded) {
+        final CompletableFuture<BufferedImage> request = new CompletableFuture<BufferedImage>();
+
+        future.retain();
+
+        future.whenComplete(new BiConsumer<BufferedImage, Throwable>() {
+            @Override
+            public void accept(BufferedImage image, Throwable error) {
+                if (future.isCancelled()) {
+                    cache.remove(path, future);
+
+                    if (!request.isDone()) {
+                        retry(path, loader, request);
+                    }
+                } else if (error != null) {
+                    request.completeExceptionally(error);
+                } else {
+                    if (!loaded) {
+                        hit(path);
+                    }
+
+                    request.complete(image);
+                }
+            }
+        });
+
+        request.whenComplete(new BiConsumer<BufferedImage, Throwable>() {
+            @Override
+            public void accept(BufferedImage image, Throwable error) {
+                if (request.isCancelled() && future.release()) {
+                    cache.remove(path, future);
+                }
+            }
+        });
+
+        return request;
+    }
+
+    /**
+     * Request again the image of a request whose shared future has been cancelled by the other requests. The request
+     * completes with the new request and cancelling it cancels the new request.
+     *
+     * @param path    The path to the image.
+     * @param loader  The loader of the image.
+     * @param request The request of the caller.
+     */
+    private void retry(String path, Loader loader, final CompletableFuture<BufferedImage> request) {
+        final CompletableFuture<BufferedImage> retry = getAsync(path, loader);
+
+        retry.whenComplete(new BiConsumer<BufferedImage, Throwable>() {
+            @Override
+            public void accept(BufferedImage image, Throwable error) {
+                if (error != null) {
+                    request.completeExceptionally(error);
+                } else {
+                    request.complete(image);
+                }
+            }
+        });
+
+        request.whenComplete(new BiConsumer<BufferedImage, Throwable>() {
+            @Override
+            public void accept(BufferedImage image, Throwable error) {
+                if (request.isCancelled()) {
+                    retry.cancel(true);
+                }
             }
+        });
+    }
+
+    /**
+     * Load the image in the given future and admit it in the cache.
+     *
+     * @param path   The key of the image.
+     * @param loader The loader of the image.
+     * @param future The future to complete.
+     */
+    private void load(String path, Loader loader, ImageFuture future) {
+        if (future.isDone()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        BufferedImage image;
+
+        try {
+            image = loader.call();
+        } catch (Exception e) {
+            cache.remove(path, future);
+            future.completeExceptionally(e);
+
+            return;
+        } catch (Error e) {
+            cache.remove(path, future);
+            future.completeExceptionally(e);
+
+            throw e;
         }
+
+        loadTime.addAndGet(System.nanoTime() - start);
+        misses.incrementAndGet();
+
+        if (future.complete(image)) {
+            admit(path, future, image);
+        }
+    }
+
+    /**
+     * Record a hit on the given image.
+     *
+     * @param path The path to the image.
+     */
+    private void hit(String path) {
+        hits.incrementAndGet();
+        policy.recordAccess(path);
+    }
+
+    /**
+     * Return the number of requests served by an image already loaded or being loaded.
+     *
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Return the number of requests that have loaded an image.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Return the total time spent loading images.
+     *
+     * @return The total load time in nanoseconds.
+     */
+    public long getTotalLoadTime() {
+        return loadTime.get();
+    }
+
+    /**
+     * Return the number of images evicted from the cache to respect the budget.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Return the current weight of the cached images.
+     *
+     * @return The weight of the cache in bytes.
+     */
+    public long getWeight() {
+        return policy.getWeight();
+    }
+
+    /**
+     * Return the budget of the cache.
+     *
+     * @return The maximum weight of the cache in bytes.
+     */
+    public long getMaximumWeight() {
+        return policy.maximumWeight;
+    }
+
+    /**
+     * Admit the loaded image in the policy and remove the images evicted by the policy.
+     *
+     * @param path   The path of the image.
+     * @param future The future of the image.
+     * @param image  The loaded image.
+     */
+    private void admit(String path, Future<BufferedImage> future, BufferedImage image) {
+        List<Map.Entry<String, Future<BufferedImage>>> evicted = policy.add(path, future, weightOf(image));
+
+        for (Map.Entry<String, Future<BufferedImage>> entry : evicted) {
+            cache.remove(entry.getKey(), entry.getValue());
+        }
+
+        evictions.addAndGet(evicted.size());
+    }
+
+    /**
+     * Return the weight of the image.
+     *
+     * @param image The image.
+     *
+     * @return The weight of the image in bytes, the size of its raster.
+     */
+    static long weightOf(BufferedImage image) {
+        if (image == null) {
+            return 0;
+        }
+
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+
+        return (long) DataBuffer.getDataTypeSize(buffer.getDataType()) / 8 * buffer.getSize() * buffer.getNumBanks();
     }
 
     /**
@@ -193,27 +710,398 @@ public class ImageCache {
     }
 
     /**
-     * A Callable to load an image.
+     * A loader of image.
      *
      * @author Baptiste Wicht
      */
-    private static class ImageLoader implements Callable<SoftImage> {
-        private final InputStream stream;
+    private abstract static class Loader implements Callable<BufferedImage> {
+        /**
+         * Release the resources of the loader when the image is loaded by another request.
+         */
+        void discard() {
+            //Nothing by default
+        }
+    }
+
+    /**
+     * A Loader decoding an image from a stream.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class StreamLoader extends Loader {
+        private final OnDemandStream stream;
 
         /**
-         * Create a new ImageLoader for an input stream.
+         * Create a new StreamLoader.
          *
          * @param stream The stream of the image.
          */
-        private ImageLoader(InputStream stream) {
+        private StreamLoader(OnDemandStream stream) {
             super();
 
             this.stream = stream;
         }
 
         @Override
-        public SoftImage call() throws Exception {
-            return new SoftImage(ImageUtils.openCompatibleImage(stream));
+        public BufferedImage call() {
+            InputStream input = null;
+            try {
+                input = stream.get();
+
+                return ImageUtils.openCompatibleImage(input);
+            } finally {
+                FileUtils.close(input);
+            }
+        }
+
+        @Override
+        void discard() {
+            FileUtils.close(stream.get());
+        }
+    }
+
+    /**
+     * A Loader decoding an image file at a reduced size.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class ScaledLoader extends Loader {
+        private final File file;
+        private final int maxDim;
+
+        /**
+         * Create a new ScaledLoader.
+         *
+         * @param file   The image file.
+         * @param maxDim The maximum width and height of the image.
+         */
+        private ScaledLoader(File file, int maxDim) {
+            super();
+
+            this.file = file;
+            this.maxDim = maxDim;
+        }
+
+        @Override
+        public BufferedImage call() {
+            return ImageUtils.readScaled(file, maxDim);
+        }
+    }
+
+    /**
+     * A Loader creating the thumbnail of an image file. The thumbnail is taken from the disk cache when possible.
+     *
+     * @author Baptiste Wicht
+     */
+    private final class ThumbnailLoader extends Loader {
+        private final File file;
+        private final int size;
+
+        /**
+         * Create a new ThumbnailLoader.
+         *
+         * @param file The image file.
+         * @param size The size of the thumbnail.
+         */
+        private ThumbnailLoader(File file, int size) {
+            super();
+
+            this.file = file;
+            this.size = size;
+        }
+
+        @Override
+        public BufferedImage call() {
+            ThumbnailDiskCache disk = diskCache;
+
+            if (disk != null) {
+                BufferedImage thumbnail = disk.get(file, size);
+
+                if (thumbnail != null) {
+                    return ImageUtils.createCompatibleImage(thumbnail);
+                }
+            }
+
+            BufferedImage thumbnail = ImageUtils.readScaled(file, size, Integer.MAX_VALUE);
+
+            if (disk != null) {
+                disk.put(file, size, thumbnail);
+            }
+
+            return thumbnail;
+        }
+    }
+
+    /**
+     * Create the pool used to load the images asynchronously. The threads are daemon and are stopped when the pool is
+     * idle.
+     *
+     * @return The decode pool.
+     */
+    private static ExecutorService newDecodePool() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(ThreadUtils.processors(), ThreadUtils.processors(),
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), ThreadUtils.daemonThreadFactory());
+
+        pool.allowCoreThreadTimeOut(true);
+
+        return pool;
+    }
+
+    /**
+     * The shared future of an image. The future counts the requests waiting for it, the load is cancelled when all the
+     * requests have been cancelled.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class ImageFuture extends CompletableFuture<BufferedImage> {
+        private final AtomicInteger requests = new AtomicInteger(0);
+
+        private volatile Future<?> task;
+
+        /**
+         * Add a request waiting for the image.
+         */
+        void retain() {
+            requests.incrementAndGet();
+        }
+
+        /**
+         * Remove a request waiting for the image. If it was the last one and the image is not loaded, the load is
+         * cancelled.
+         *
+         * @return {@code true} if the load has been cancelled otherwise {@code false}.
+         */
+        boolean release() {
+            if (requests.decrementAndGet() == 0 && cancel(false)) {
+                Future<?> running = task;
+
+                if (running != null) {
+                    running.cancel(true);
+                }
+
+                return true;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * The segmented LRU policy of the cache. The two segments are access ordered maps, the eldest entry of a map being
+     * the least recently used.
+     *
+     * @author Baptiste Wicht
+     */
+    private final class Policy {
+        private final long maximumWeight;
+        private final long maximumProtectedWeight;
+
+        @GuardedBy("this")
+        private final LinkedHashMap<String, Node> probation = new LinkedHashMap<String, Node>(16, 0.75f, true);
+
+        @GuardedBy("this")
+        private final LinkedHashMap<String, Node> protectedSegment = new LinkedHashMap<String, Node>(16, 0.75f, true);
+
+        @GuardedBy("this")
+        private long weight;
+
+        @GuardedBy("this")
+        private long protectedWeight;
+
+        /**
+         * Create a new Policy.
+         *
+         * @param maximumWeight The budget of the cache.
+         */
+        private Policy(long maximumWeight) {
+            super();
+
+            this.maximumWeight = maximumWeight;
+
+            maximumProtectedWeight = maximumWeight * PROTECTED_PERCENTAGE / 100;
+        }
+
+        /**
+         * Add a loaded image in the probation segment. An image heavier than the whole budget is not admitted.
+         *
+         * @param path   The path of the image.
+         * @param future The future of the image.
+         * @param w      The weight of the image.
+         *
+         * @return The evicted entries.
+         */
+        synchronized List<Map.Entry<String, Future<BufferedImage>>> add(String path, Future<BufferedImage> future, long w) {
+            List<Map.Entry<String, Future<BufferedImage>>> evicted = CollectionUtils.newList(2);
+
+            if (cache.get(path) != future) {
+                return evicted;
+            }
+
+            removeNode(path);
+
+            if (w > maximumWeight) {
+                evicted.add(new Node(path, future, w));
+
+                return evicted;
+            }
+
+            probation.put(path, new Node(path, future, w));
+            weight += w;
+
+            evict(evicted);
+
+            return evicted;
+        }
+
+        /**
+         * Record an access to the image. An image of the probation segment is promoted to the protected segment, the
+         * least recently used images of the protected segment are then demoted if it's too heavy.
+         *
+         * @param path The path of the image.
+         */
+        synchronized void recordAccess(String path) {
+            if (protectedSegment.get(path) != null) {
+                return;
+            }
+
+            Node node = probation.remove(path);
+
+            if (node != null) {
+                protectedSegment.put(path, node);
+                protectedWeight += node.weight;
+
+                Iterator<Node> iterator = protectedSegment.values().iterator();
+
+                while (protectedWeight > maximumProtectedWeight && iterator.hasNext()) {
+                    Node demoted = iterator.next();
+
+                    iterator.remove();
+                    protectedWeight -= demoted.weight;
+
+                    probation.put(demoted.getKey(), demoted);
+                }
+            }
+        }
+
+        /**
+         * Remove the image from the policy.
+         *
+         * @param path The path of the image.
+         */
+        synchronized void remove(String path) {
+            removeNode(path);
+        }
+
+        /**
+         * Return the current weight.
+         *
+         * @return The weight of the images in bytes.
+         */
+        synchronized long getWeight() {
+            return weight;
+        }
+
+        /**
+         * Remove the node of the given path from the segments.
+         *
+         * @param path The path of the image.
+         */
+        private void removeNode(String path) {
+            Node node = probation.remove(path);
+
+            if (node == null) {
+                node = protectedSegment.remove(path);
+
+                if (node != null) {
+                    protectedWeight -= node.weight;
+                }
+            }
+
+            if (node != null) {
+                weight -= node.weight;
+            }
+        }
+
+        /**
+         * Evict the least recently used images until the weight respects the budget. The images are first taken from
+         * the probation segment.
+         *
+         * @param evicted The list to add the evicted entries to.
+         */
+        private void evict(List<Map.Entry<String, Future<BufferedImage>>> evicted) {
+            evictFrom(probation, evicted);
+
+            if (weight > maximumWeight) {
+                protectedWeight -= evictFrom(protectedSegment, evicted);
+            }
+        }
+
+        /**
+         * Evict the least recently used images of the segment until the weight respects the budget.
+         *
+         * @param segment The segment to evict the images from.
+         * @param evicted The list to add the evicted entries to.
+         *
+         * @return The weight of the evicted images.
+         */
+        private long evictFrom(Map<String, Node> segment, List<Map.Entry<String, Future<BufferedImage>>> evicted) {
+            long evictedWeight = 0;
+
+            Iterator<Node> iterator = segment.values().iterator();
+
+            while (weight > maximumWeight && iterator.hasNext()) {
+                Node node = iterator.next();
+
+                iterator.remove();
+
+                weight -= node.weight;
+                evictedWeight += node.weight;
+
+                evicted.add(node);
+            }
+
+            return evictedWeight;
+        }
+    }
+
+    /**
+     * A node of the policy.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class Node implements Map.Entry<String, Future<BufferedImage>> {
+        private final String path;
+        private final Future<BufferedImage> future;
+        private final long weight;
+
+        /**
+         * Create a new Node.
+         *
+         * @param path   The path of the image.
+         * @param future The future of the image.
+         * @param weight The weight of the image.
+         */
+        private Node(String path, Future<BufferedImage> future, long weight) {
+            super();
+
+            this.path = path;
+            this.future = future;
+            this.weight = weight;
+        }
+
+        @Override
+        public String getKey() {
+            return path;
+        }
+
+        @Override
+        public Future<BufferedImage> getValue() {
+            return future;
+        }
+
+        @Override
+        public Future<BufferedImage> setValue(Future<BufferedImage> value) {
+            throw new UnsupportedOperationException();
         }
     }
 }
@@ -0,0 +1,33 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A handler of the lines read by a {@link LineReader}.
+ *
+ * @author Baptiste Wicht
+ * @see LineReader#forEachLine(LineHandler)
+ */
+public interface LineHandler {
+    /**
+     * Handle a line. The line is a view on the buffer of the reader, so it's only valid during the call. The line
+     * must be copied, for example with {@code toString()}, to be kept.
+     *
+     * @param line The line, without its terminator.
+     */
+    void handle(CharSequence line);
+}
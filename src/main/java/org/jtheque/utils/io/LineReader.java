@@ -0,0 +1,364 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A streaming reader of lines. The bytes are decoded by large blocks in a char buffer that is scanned for the line
+ * terminators, so only the current block is kept in memory, whatever the size of the stream. The lines can be read
+ * one by one, iterated, streamed or handled by a callback without allocating a String per line. The lines are
+ * terminated by '\n', '\r' or "\r\n". The malformed input is replaced by the replacement character of the charset.
+ * This class is not thread safe.
+ *
+ * @author Baptiste Wicht
+ */
+public final class LineReader implements Closeable, Iterable<String> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream stream;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final LineView view = new LineView();
+
+    private char[] chars = new char[BUFFER_SIZE];
+    private int start;
+    private int end;
+
+    private int lineStart;
+    private int lineEnd;
+
+    private boolean skipLF;
+    private boolean inputDone;
+    private boolean eof;
+
+    /**
+     * Create a new LineReader on the given file with the default charset.
+     *
+     * @param file The file to read.
+     *
+     * @throws FileNotFoundException If the file cannot be opened.
+     */
+    public LineReader(File file) throws FileNotFoundException {
+        this(new FileInputStream(file), Charset.defaultCharset());
+    }
+
+    /**
+     * Create a new LineReader on the given stream. The stream is closed with the reader.
+     *
+     * @param stream  The stream to read.
+     * @param charset The charset of the stream.
+     */
+    public LineReader(InputStream stream, Charset charset) {
+        super();
+
+        this.stream = stream;
+
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Read the next line.
+     *
+     * @return The next line or {@code null} if the end of the stream has been reached.
+     *
+     * @throws IOException If an error occurs during the reading.
+     */
+    public String readLine() throws IOException {
+        if (nextLine()) {
+            return new String(chars, lineStart, lineEnd - lineStart);
+        }
+
+        return null;
+    }
+
+    /**
+     * Pass all the remaining lines to the handler. The same view is passed for each line, so no object is allocated
+     * per line.
+     *
+     * @param handler The line handler.
+     *
+     * @return The number of handled lines.
+     *
+     * @throws IOException If an error occurs during the reading.
+     */
+    public long forEachLine(LineHandler handler) throws IOException {
+        long count = 0;
+
+        while (nextLine()) {
+            view.set(lineStart, lineEnd - lineStart);
+
+            handler.handle(view);
+
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Return an iterator on the remaining lines. The I/O errors are thrown as {@link UncheckedIOException}.
+     *
+     * @return An iterator on the lines.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new LineIterator();
+    }
+
+    /**
+     * Return a lazy stream of the remaining lines. Closing the stream closes the reader. The I/O errors are thrown as
+     * {@link UncheckedIOException}.
+     *
+     * @return A stream of the lines.
+     */
+    public Stream<String> lines() {
+        Spliterator<String> spliterator = Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+
+        return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+            @Override
+            public void run() {
+                FileUtils.close(LineReader.this);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+    /**
+     * Find the next line and store its bounds in lineStart and lineEnd.
+     *
+     * @return {@code true} if there is a next line otherwise {@code false}.
+     *
+     * @throws IOException If an error occurs during the reading.
+     */
+    private boolean nextLine() throws IOException {
+        int scanned = 0;
+
+        while (true) {
+            if (skipLF) {
+                if (start < end) {
+                    if (chars[start] == '\n') {
+                        start++;
+                    }
+
+                    skipLF = false;
+                } else if (eof) {
+                    skipLF = false;
+                } else {
+                    fill();
+
+                    continue;
+                }
+            }
+
+            for (int i = start + scanned; i < end; i++) {
+                char c = chars[i];
+
+                if (c == '\n' || c == '\r') {
+                    lineStart = start;
+                    lineEnd = i;
+
+                    start = i + 1;
+                    skipLF = c == '\r';
+
+                    return true;
+                }
+            }
+
+            scanned = end - start;
+
+            if (eof) {
+                if (start < end) {
+                    lineStart = start;
+                    lineEnd = end;
+
+                    start = end;
+
+                    return true;
+                }
+
+                return false;
+            }
+
+            fill();
+        }
+    }
+
+    /**
+     * Decode the next chars of the stream. The unread chars are moved at the start of the buffer, that is grown if
+     * there is not enough room for a surrogate pair.
+     *
+     * @throws IOException If an error occurs during the reading.
+     */
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(chars, start, chars, 0, end - start);
+
+            end -= start;
+            start = 0;
+        }
+
+        if (chars.length - end < 2) {
+            chars = Arrays.copyOf(chars, chars.length * 2);
+        }
+
+        CharBuffer out = CharBuffer.wrap(chars, end, chars.length - end);
+
+        int before = end;
+
+        while (out.position() == before && !eof) {
+            if (!inputDone) {
+                int read = stream.read(bytes.array(), bytes.position(), bytes.remaining());
+
+                if (read < 0) {
+                    inputDone = true;
+                } else {
+                    bytes.position(bytes.position() + read);
+                }
+            }
+
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, out, inputDone);
+            bytes.compact();
+
+            if (inputDone && result.isUnderflow()) {
+                result = decoder.flush(out);
+
+                eof = result.isUnderflow();
+            }
+
+            if (result.isOverflow() && out.position() == before) {
+                chars = Arrays.copyOf(chars, chars.length * 2);
+
+                out = CharBuffer.wrap(chars, before, chars.length - before);
+            }
+        }
+
+        end = out.position();
+    }
+
+    /**
+     * A view on the current line in the buffer of the reader.
+     *
+     * @author Baptiste Wicht
+     */
+    private final class LineView implements CharSequence {
+        private int offset;
+        private int length;
+
+        /**
+         * Set the bounds of the view.
+         *
+         * @param offset The offset of the line in the buffer.
+         * @param length The length of the line.
+         */
+        private void set(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
+            }
+
+            return chars[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+    }
+
+    /**
+     * An iterator on the lines of the reader.
+     *
+     * @author Baptiste Wicht
+     */
+    private final class LineIterator implements Iterator<String> {
+        private String next;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            String line = next;
+
+            next = null;
+
+            return line;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
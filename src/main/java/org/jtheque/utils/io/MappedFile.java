@@ -0,0 +1,170 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only memory mapping of a file. The file is mapped in windows of fixed size, mapped on first access, so files
+ * bigger than 2 GB can be mapped and only the accessed parts of the file use address space. The content is never
+ * copied in the Java heap. This class is not thread safe, but the windows can be read concurrently once they have been
+ * obtained.
+ *
+ * @author Baptiste Wicht
+ */
+public final class MappedFile implements Closeable {
+    /**
+     * The default size of a window, 256 MB.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private final ByteBuffer[] windows;
+
+    /**
+     * Map the given file with the default window size.
+     *
+     * @param file The file to map.
+     *
+     * @throws IOException If the file cannot be opened.
+     */
+    public MappedFile(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Map the given file.
+     *
+     * @param file       The file to map.
+     * @param windowSize The size of a window in bytes.
+     *
+     * @throws IOException If the file cannot be opened.
+     */
+    public MappedFile(File file, int windowSize) throws IOException {
+        super();
+
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("The window size must be greater than zero. ");
+        }
+
+        this.file = new RandomAccessFile(file, "r");
+        this.windowSize = windowSize;
+
+        channel = this.file.getChannel();
+        size = channel.size();
+
+        long count = (size + windowSize - 1) / windowSize;
+
+        if (count > Integer.MAX_VALUE) {
+            FileUtils.close(this.file);
+
+            throw new IOException("The file is too big for the window size: " + file.getAbsolutePath());
+        }
+
+        windows = new ByteBuffer[(int) count];
+    }
+
+    /**
+     * Return the size of the file.
+     *
+     * @return The size of the file in bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Return the number of windows of the file.
+     *
+     * @return The number of windows.
+     */
+    public int getWindowCount() {
+        return windows.length;
+    }
+
+    /**
+     * Return the window of the given index. The window is mapped if it was not already. The returned buffer is a
+     * read-only view with its own position and limit, its position 0 is the start of the window in the file.
+     *
+     * @param index The index of the window.
+     *
+     * @return The window.
+     *
+     * @throws IOException If the window cannot be mapped.
+     */
+    public ByteBuffer getWindow(int index) throws IOException {
+        return window(index).duplicate();
+    }
+
+    /**
+     * Return the byte at the given position of the file.
+     *
+     * @param position The position in the file.
+     *
+     * @return The byte at this position.
+     *
+     * @throws IOException If the window of the byte cannot be mapped.
+     */
+    public byte get(long position) throws IOException {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + size);
+        }
+
+        return window((int) (position / windowSize)).get((int) (position % windowSize));
+    }
+
+    /**
+     * Close the file. The buffers already mapped stay valid until they are garbage collected.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Return the mapped window of the given index.
+     *
+     * @param index The index of the window.
+     *
+     * @return The window.
+     *
+     * @throws IOException If the window cannot be mapped.
+     */
+    private ByteBuffer window(int index) throws IOException {
+        ByteBuffer window = windows[index];
+
+        if (window == null) {
+            long position = (long) index * windowSize;
+
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+
+            windows[index] = window;
+        }
+
+        return window;
+    }
+}
@@ -0,0 +1,61 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.annotations.ThreadSafe;
+import org.jtheque.utils.count.Metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A file operation listener recording the operations in a {@link Metrics} registry. For an operation named "copy",
+ * the durations are recorded in the timer "io.copy", the bytes in the meter "io.copy.bytes", so its rates are the
+ * throughput of the operation in bytes per second, and the files in the counter "io.copy.files".
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+public final class MetricsFileOperationListener implements FileOperationListener {
+    private final Metrics metrics;
+
+    /**
+     * Create a new MetricsFileOperationListener recording in the default registry.
+     */
+    public MetricsFileOperationListener() {
+        this(Metrics.getDefault());
+    }
+
+    /**
+     * Create a new MetricsFileOperationListener.
+     *
+     * @param metrics The registry to record the operations in.
+     */
+    public MetricsFileOperationListener(Metrics metrics) {
+        super();
+
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void operationCompleted(FileOperation operation, long bytes, int files, long nanos) {
+        String name = "io." + operation.getName();
+
+        metrics.timer(name).update(nanos, TimeUnit.NANOSECONDS);
+        metrics.meter(name + ".bytes").mark(bytes);
+        metrics.counter(name + ".files").add(files);
+    }
+}
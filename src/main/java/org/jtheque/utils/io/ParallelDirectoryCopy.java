@@ -0,0 +1,204 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.annotations.GuardedInternally;
+import org.jtheque.utils.annotations.ThreadSafe;
+import org.jtheque.utils.collections.CollectionUtils;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A parallel copy of a directory tree. Each directory and each file is copied by its own fork-join task, so the
+ * listing of the directories is overlapped with the transfer of the files and the idle threads steal the pending work
+ * of the busy ones. A failure doesn't stop the copy, the failures are collected and reported at the end.
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+final class ParallelDirectoryCopy {
+    private final CopyProgressListener listener;
+
+    private final AtomicLong files = new AtomicLong(0);
+    private final AtomicLong bytes = new AtomicLong(0);
+
+    @GuardedInternally
+    private final Queue<CopyException> failures = new ConcurrentLinkedQueue<CopyException>();
+
+    /**
+     * Create a new ParallelDirectoryCopy.
+     *
+     * @param listener The progress listener, can be {@code null}.
+     */
+    ParallelDirectoryCopy(CopyProgressListener listener) {
+        super();
+
+        this.listener = listener;
+    }
+
+    /**
+     * Copy the source directory to the target directory.
+     *
+     * @param source      The source directory.
+     * @param target      The target directory.
+     * @param parallelism The number of threads of the copy.
+     *
+     * @throws CopyException If at least one file or directory cannot be copied. The failures are the suppressed
+     *                       exceptions of the thrown exception.
+     */
+    void copy(File source, File target, int parallelism) throws CopyException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            pool.invoke(new DirectoryTask(source, target));
+        } finally {
+            pool.shutdown();
+        }
+
+        if (!failures.isEmpty()) {
+            CopyException exception = new CopyException(failures.size() + " files or directories cannot be copied from "
+                    + source.getAbsolutePath() + " to " + target.getAbsolutePath());
+
+            for (CopyException failure : failures) {
+                exception.addSuppressed(failure);
+            }
+
+            throw exception;
+        }
+    }
+
+    /**
+     * Return the number of files copied.
+     *
+     * @return The number of files copied.
+     */
+    long getFiles() {
+        return files.get();
+    }
+
+    /**
+     * Return the number of bytes copied.
+     *
+     * @return The number of bytes copied.
+     */
+    long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * The task copying a directory. The task creates the target directory and forks a task for each of its children.
+     *
+     * @author Baptiste Wicht
+     */
+    private final class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 2516862744358917946L;
+
+        private final File source;
+        private final File target;
+
+        /**
+         * Create a new DirectoryTask.
+         *
+         * @param source The source directory.
+         * @param target The target directory.
+         */
+        private DirectoryTask(File source, File target) {
+            super();
+
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        protected void compute() {
+            if (!target.isDirectory() && !target.mkdirs()) {
+                failures.add(new CopyException("Unable to create the target directory " + target.getAbsolutePath()));
+
+                return;
+            }
+
+            File[] children = source.listFiles();
+
+            if (children == null) {
+                failures.add(new CopyException("Unable to list the directory " + source.getAbsolutePath()));
+
+                return;
+            }
+
+            Collection<RecursiveAction> tasks = CollectionUtils.newList(children.length);
+
+            for (File child : children) {
+                File targetChild = new File(target, child.getName());
+
+                if (child.isDirectory()) {
+                    tasks.add(new DirectoryTask(child, targetChild));
+                } else {
+                    tasks.add(new FileTask(child, targetChild));
+                }
+            }
+
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * The task copying a regular file.
+     *
+     * @author Baptiste Wicht
+     */
+    private final class FileTask extends RecursiveAction {
+        private static final long serialVersionUID = -3357398562208412870L;
+
+        private final File source;
+        private final File target;
+
+        /**
+         * Create a new FileTask.
+         *
+         * @param source The source file.
+         * @param target The target file.
+         */
+        private FileTask(File source, File target) {
+            super();
+
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                long copied = FileUtils.copyFile(source, target);
+
+                long copiedFiles = files.incrementAndGet();
+                long copiedBytes = bytes.addAndGet(copied);
+
+                if (listener != null) {
+                    listener.fileCopied(source, copiedFiles, copiedBytes);
+                }
+            } catch (CopyException e) {
+                failures.add(new CopyException("Unable to copy " + source.getAbsolutePath(), e));
+            }
+        }
+    }
+}
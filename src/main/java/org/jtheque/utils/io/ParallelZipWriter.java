@@ -0,0 +1,757 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.ThreadUtils;
+import org.jtheque.utils.collections.CollectionUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * A ZIP writer compressing the entries on several threads. The content of the entries is cut in blocks of 128 KB that
+ * are deflated in parallel, each block using the end of the previous one as dictionary, and the compressed blocks are
+ * concatenated in order, so a big entry is compressed as fast as several small ones. The blocks are written as soon as
+ * they are compressed and only a bounded number of blocks are in flight, so the memory used doesn't depend on the size
+ * of the entries. The deflated entries are followed by a data descriptor, the stored ones are read twice to compute
+ * their checksum before being written. The archives are limited to 4 GB and 65535 entries (no ZIP64). This class is
+ * not thread safe.
+ *
+ * @author Baptiste Wicht
+ */
+public final class ParallelZipWriter implements Closeable {
+    private static final int BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_16 = 0xFFFF;
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int DATA_DESCRIPTOR = 0x08074b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+    private static final int VERSION = 20;
+    private static final int FLAG_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private final OutputStream out;
+    private final ExecutorService pool;
+    private final int maxPendingBlocks;
+    private final int level;
+
+    private final Deque<Block> pending = new ArrayDeque<Block>();
+    private final Collection<Entry> entries = CollectionUtils.newList();
+
+    private long written;
+    private long bytes;
+    private boolean closed;
+
+    /**
+     * Create a new ParallelZipWriter with the best compression.
+     *
+     * @param out         The stream to write the archive to.
+     * @param parallelism The number of compression threads.
+     */
+    public ParallelZipWriter(OutputStream out, int parallelism) {
+        this(out, parallelism, Deflater.BEST_COMPRESSION);
+    }
+
+    /**
+     * Create a new ParallelZipWriter.
+     *
+     * @param out         The stream to write the archive to.
+     * @param parallelism The number of compression threads.
+     * @param level       The default compression level, from 0 to 9.
+     */
+    public ParallelZipWriter(OutputStream out, int parallelism, int level) {
+        super();
+
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be greater than zero. ");
+        }
+
+        checkLevel(level);
+
+        this.out = out;
+        this.level = level;
+
+        pool = Executors.newFixedThreadPool(parallelism, ThreadUtils.daemonThreadFactory());
+        maxPendingBlocks = parallelism * 4;
+    }
+
+    /**
+     * Add a deflated entry with the default level.
+     *
+     * @param name The name of the entry.
+     * @param file The file to add.
+     *
+     * @throws IOException If the file cannot be read or the archive cannot be written.
+     */
+    public void putFile(String name, File file) throws IOException {
+        putFile(name, file, ZipEntry.DEFLATED, level);
+    }
+
+    /**
+     * Add an entry. If the entry cannot be added, it's not written in the central directory, but its local header and
+     * the part of its data already written remain in the stream. The archive is then only readable from its central
+     * directory and should be abandoned with {@link #abort()}.
+     *
+     * @param name   The name of the entry.
+     * @param file   The file to add.
+     * @param method The method of the entry, {@link ZipEntry#DEFLATED} or {@link ZipEntry#STORED}.
+     * @param level  The compression level of a deflated entry, from 0 to 9.
+     *
+     * @throws IOException If the file cannot be read or the archive cannot be written.
+     */
+    public void putFile(String name, File file, int method, int level) throws IOException {
+        if (closed) {
+            throw new IOException("The writer is closed");
+        }
+
+        if (method != ZipEntry.DEFLATED && method != ZipEntry.STORED) {
+            throw new IllegalArgumentException("Unsupported method: " + method);
+        }
+
+        checkLevel(level);
+
+        if (entries.size() == MAX_16) {
+            throw new ZipException("Too many entries, ZIP64 is not supported");
+        }
+
+        Entry entry = new Entry(name, method, file.lastModified());
+
+        if (method == ZipEntry.STORED) {
+            computeChecksum(entry, file);
+        }
+
+        InputStream stream = new FileInputStream(file);
+
+        try {
+            readBlocks(entry, stream, level);
+        } finally {
+            FileUtils.close(stream);
+        }
+
+        //Only the complete entries are written in the central directory
+        entries.add(entry);
+    }
+
+    /**
+     * Return the number of uncompressed bytes added so far.
+     *
+     * @return The number of uncompressed bytes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Return the number of entries added so far.
+     *
+     * @return The number of entries.
+     */
+    public int getEntries() {
+        return entries.size();
+    }
+
+    /**
+     * Write the remaining blocks and the central directory and close the underlying stream.
+     *
+     * @throws IOException If the archive cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            drain(0);
+
+            writeCentralDirectory();
+
+            out.flush();
+        } finally {
+            pool.shutdownNow();
+
+            FileUtils.close(out);
+        }
+    }
+
+    /**
+     * Abandon the archive. The pending blocks and the central directory are not written, the underlying stream is only
+     * closed. The written archive is not valid and must be deleted.
+     */
+    public void abort() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        pending.clear();
+
+        pool.shutdownNow();
+
+        FileUtils.close(out);
+    }
+
+    /**
+     * Read the content of an entry and queue its blocks.
+     *
+     * @param entry  The entry.
+     * @param stream The content of the entry.
+     * @param level  The compression level.
+     *
+     * @throws IOException If the content cannot be read or the archive cannot be written.
+     */
+    private void readBlocks(Entry entry, InputStream stream, int level) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+
+        byte[] previous = null;
+        byte[] block = new byte[BLOCK_SIZE];
+        int length = readFully(stream, block);
+        boolean first = true;
+
+        while (true) {
+            byte[] next = new byte[BLOCK_SIZE];
+            int nextLength = length < BLOCK_SIZE ? -1 : readFully(stream, next);
+
+            boolean last = nextLength <= 0;
+
+            crc.update(block, 0, length);
+            size += length;
+
+            if (last) {
+                checkSize(size);
+
+                if (entry.method == ZipEntry.STORED && (size != entry.size || crc.getValue() != entry.crc)) {
+                    throw new IOException("The file of the entry " + entry.name + " has changed during the zipping");
+                }
+
+                entry.crc = crc.getValue();
+                entry.size = size;
+            }
+
+            Future<byte[]> data;
+
+            if (entry.method == ZipEntry.STORED) {
+                data = CompletableFuture.completedFuture(length == BLOCK_SIZE ? block : copyOf(block, length));
+            } else {
+                data = pool.submit(new DeflateTask(block, length, previous, level, last));
+            }
+
+            pending.add(new Block(entry, data, first, last));
+
+            drain(maxPendingBlocks);
+
+            if (last) {
+                break;
+            }
+
+            first = false;
+            previous = block;
+            block = next;
+            length = nextLength;
+        }
+
+        bytes += size;
+    }
+
+    /**
+     * Compute the checksum and the size of a stored entry.
+     *
+     * @param entry The entry.
+     * @param file  The file of the entry.
+     *
+     * @throws IOException If the file cannot be read.
+     */
+    private static void computeChecksum(Entry entry, File file) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+
+        InputStream stream = new FileInputStream(file);
+
+        try {
+            byte[] buffer = new byte[BLOCK_SIZE];
+
+            int read = stream.read(buffer);
+
+            while (read != -1) {
+                crc.update(buffer, 0, read);
+                size += read;
+
+                read = stream.read(buffer);
+            }
+        } finally {
+            FileUtils.close(stream);
+        }
+
+        checkSize(size);
+
+        entry.crc = crc.getValue();
+        entry.size = size;
+    }
+
+    /**
+     * Write the blocks at the head of the queue that are compressed, and wait for the others until there is at most
+     * the given number of blocks in the queue.
+     *
+     * @param maxPending The maximum number of blocks to keep in the queue.
+     *
+     * @throws IOException If a block cannot be compressed or written.
+     */
+    private void drain(int maxPending) throws IOException {
+        while (!pending.isEmpty() && (pending.size() > maxPending || pending.peek().data.isDone())) {
+            writeBlock(pending.poll());
+        }
+    }
+
+    /**
+     * Write a block. The local header of the entry is written before its first block and the data descriptor after
+     * its last one.
+     *
+     * @param block The block to write.
+     *
+     * @throws IOException If the block cannot be compressed or written.
+     */
+    private void writeBlock(Block block) throws IOException {
+        byte[] data = get(block.data);
+
+        Entry entry = block.entry;
+
+        if (block.first) {
+            entry.offset = written;
+
+            writeLocalHeader(entry);
+        }
+
+        write(data);
+
+        entry.compressedSize += data.length;
+
+        if (block.last && entry.method == ZipEntry.DEFLATED) {
+            checkSize(entry.compressedSize);
+
+            ByteBuffer buffer = newBuffer(16);
+            buffer.putInt(DATA_DESCRIPTOR);
+            buffer.putInt((int) entry.crc);
+            buffer.putInt((int) entry.compressedSize);
+            buffer.putInt((int) entry.size);
+
+            write(buffer.array());
+        }
+    }
+
+    /**
+     * Write the local header of the entry.
+     *
+     * @param entry The entry.
+     *
+     * @throws IOException If the header cannot be written.
+     */
+    private void writeLocalHeader(Entry entry) throws IOException {
+        boolean stored = entry.method == ZipEntry.STORED;
+
+        ByteBuffer buffer = newBuffer(30 + entry.nameBytes.length);
+        buffer.putInt(LOCAL_HEADER);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) entry.flags());
+        buffer.putShort((short) entry.method);
+        buffer.putInt(entry.dosTime);
+        buffer.putInt(stored ? (int) entry.crc : 0);
+        buffer.putInt(stored ? (int) entry.size : 0);
+        buffer.putInt(stored ? (int) entry.size : 0);
+        buffer.putShort((short) entry.nameBytes.length);
+        buffer.putShort((short) 0);
+        buffer.put(entry.nameBytes);
+
+        write(buffer.array());
+    }
+
+    /**
+     * Write the central directory of the archive.
+     *
+     * @throws IOException If the central directory cannot be written.
+     */
+    private void writeCentralDirectory() throws IOException {
+        long start = written;
+
+        for (Entry entry : entries) {
+            checkSize(entry.offset);
+
+            ByteBuffer buffer = newBuffer(46 + entry.nameBytes.length);
+            buffer.putInt(CENTRAL_HEADER);
+            buffer.putShort((short) VERSION);
+            buffer.putShort((short) VERSION);
+            buffer.putShort((short) entry.flags());
+            buffer.putShort((short) entry.method);
+            buffer.putInt(entry.dosTime);
+            buffer.putInt((int) entry.crc);
+            buffer.putInt((int) entry.compressedSize);
+            buffer.putInt((int) entry.size);
+            buffer.putShort((short) entry.nameBytes.length);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putInt(0);
+            buffer.putInt((int) entry.offset);
+            buffer.put(entry.nameBytes);
+
+            write(buffer.array());
+        }
+
+        checkSize(written);
+
+        ByteBuffer buffer = newBuffer(22);
+        buffer.putInt(END_OF_CENTRAL_DIRECTORY);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) entries.size());
+        buffer.putShort((short) entries.size());
+        buffer.putInt((int) (written - start));
+        buffer.putInt((int) start);
+        buffer.putShort((short) 0);
+
+        write(buffer.array());
+    }
+
+    /**
+     * Write bytes to the archive.
+     *
+     * @param data The bytes to write.
+     *
+     * @throws IOException If the bytes cannot be written.
+     */
+    private void write(byte[] data) throws IOException {
+        out.write(data);
+
+        written += data.length;
+    }
+
+    /**
+     * Return the result of the future.
+     *
+     * @param future The future.
+     *
+     * @return The result of the future.
+     *
+     * @throws IOException If the computation failed or has been interrupted.
+     */
+    private static byte[] get(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Interrupted during the zipping", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to compress a block", e.getCause());
+        }
+    }
+
+    /**
+     * Fill the buffer from the stream.
+     *
+     * @param stream The stream to read from.
+     * @param buffer The buffer to fill.
+     *
+     * @return The number of bytes read, less than the size of the buffer only at the end of the stream.
+     *
+     * @throws IOException If the stream cannot be read.
+     */
+    private static int readFully(InputStream stream, byte[] buffer) throws IOException {
+        int length = 0;
+
+        while (length < buffer.length) {
+            int read = stream.read(buffer, length, buffer.length - length);
+
+            if (read == -1) {
+                break;
+            }
+
+            length += read;
+        }
+
+        return length;
+    }
+
+    /**
+     * Return a copy of the beginning of the array.
+     *
+     * @param array  The array.
+     * @param length The length of the copy.
+     *
+     * @return The copy.
+     */
+    private static byte[] copyOf(byte[] array, int length) {
+        byte[] copy = new byte[length];
+
+        System.arraycopy(array, 0, copy, 0, length);
+
+        return copy;
+    }
+
+    /**
+     * Return a new little-endian buffer.
+     *
+     * @param capacity The capacity of the buffer.
+     *
+     * @return The buffer.
+     */
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Check that the size fits in the 32 bits fields of the ZIP format.
+     *
+     * @param size The size to check.
+     *
+     * @throws ZipException If the size is too big.
+     */
+    private static void checkSize(long size) throws ZipException {
+        if (size > MAX_32) {
+            throw new ZipException("The archive is too big, ZIP64 is not supported");
+        }
+    }
+
+    /**
+     * Check the compression level.
+     *
+     * @param level The compression level.
+     */
+    private static void checkLevel(int level) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("The level must be between 0 and 9. ");
+        }
+    }
+
+    /**
+     * Return the MS-DOS date and time of the given time.
+     *
+     * @param time The time in milliseconds.
+     *
+     * @return The time and the date in the MS-DOS format, the time in the low 16 bits.
+     */
+    private static int dosTime(long time) {
+        LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+
+        if (date.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+
+        return (date.getYear() - 1980) << 25 | date.getMonthValue() << 21 | date.getDayOfMonth() << 16
+                | date.getHour() << 11 | date.getMinute() << 5 | date.getSecond() >> 1;
+    }
+
+    /**
+     * An entry of the archive.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class Entry {
+        private final String name;
+        private final byte[] nameBytes;
+        private final int method;
+        private final int dosTime;
+
+        private long crc;
+        private long size;
+        private long compressedSize;
+        private long offset;
+
+        /**
+         * Create a new Entry.
+         *
+         * @param name         The name of the entry.
+         * @param method       The method of the entry.
+         * @param lastModified The modification time of the entry.
+         *
+         * @throws ZipException If the name is too long.
+         */
+        private Entry(String name, int method, long lastModified) throws ZipException {
+            super();
+
+            this.name = name;
+            this.method = method;
+
+            nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            dosTime = dosTime(lastModified);
+
+            if (nameBytes.length > MAX_16) {
+                throw new ZipException("The name of the entry is too long: " + name);
+            }
+        }
+
+        /**
+         * Return the general purpose flags of the entry.
+         *
+         * @return The flags of the entry.
+         */
+        private int flags() {
+            return method == ZipEntry.DEFLATED ? FLAG_UTF8 | FLAG_DESCRIPTOR : FLAG_UTF8;
+        }
+    }
+
+    /**
+     * A block of an entry.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class Block {
+        private final Entry entry;
+        private final Future<byte[]> data;
+        private final boolean first;
+        private final boolean last;
+
+        /**
+         * Create a new Block.
+         *
+         * @param entry The entry of the block.
+         * @param data  The future data of the block.
+         * @param first Indicate if this is the first block of the entry.
+         * @param last  Indicate if this is the last block of the entry.
+         */
+        private Block(Entry entry, Future<byte[]> data, boolean first, boolean last) {
+            super();
+
+            this.entry = entry;
+            this.data = data;
+            this.first = first;
+            this.last = last;
+        }
+    }
+
+    /**
+     * The task deflating a block. The blocks are flushed on a byte boundary, so the compressed blocks can be
+     * concatenated in a single deflate stream, the last block ending the stream.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class DeflateTask implements Callable<byte[]> {
+        private final byte[] block;
+        private final int length;
+        private final byte[] dictionary;
+        private final int level;
+        private final boolean last;
+
+        /**
+         * Create a new DeflateTask.
+         *
+         * @param block      The block to compress.
+         * @param length     The length of the block.
+         * @param dictionary The previous block or {@code null} if this is the first block.
+         * @param level      The compression level.
+         * @param last       Indicate if this is the last block of the entry.
+         */
+        private DeflateTask(byte[] block, int length, byte[] dictionary, int level, boolean last) {
+            super();
+
+            this.block = block;
+            this.length = length;
+            this.dictionary = dictionary;
+            this.level = level;
+            this.last = last;
+        }
+
+        @Override
+        public byte[] call() {
+            Deflater deflater = new Deflater(level, true);
+
+            try {
+                if (dictionary != null) {
+                    deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+                }
+
+                deflater.setInput(block, 0, length);
+
+                ByteBuffer output = ByteBuffer.allocate(length + length / 8 + 64);
+                byte[] buffer = new byte[16 * 1024];
+
+                if (last) {
+                    deflater.finish();
+
+                    while (!deflater.finished()) {
+                        output = append(output, buffer, deflater.deflate(buffer));
+                    }
+                } else {
+                    int count;
+
+                    do {
+                        count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+
+                        output = append(output, buffer, count);
+                    } while (count == buffer.length);
+                }
+
+                return copyOf(output.array(), output.position());
+            } finally {
+                deflater.end();
+            }
+        }
+
+        /**
+         * Append the bytes to the output, growing it if necessary.
+         *
+         * @param output The output.
+         * @param bytes  The bytes to append.
+         * @param count  The number of bytes to append.
+         *
+         * @return The output.
+         */
+        private static ByteBuffer append(ByteBuffer output, byte[] bytes, int count) {
+            ByteBuffer result = output;
+
+            if (result.remaining() < count) {
+                result = ByteBuffer.allocate(Math.max(result.capacity() * 2, result.position() + count));
+                result.put(output.array(), 0, output.position());
+            }
+
+            result.put(bytes, 0, count);
+
+            return result;
+        }
+    }
+}
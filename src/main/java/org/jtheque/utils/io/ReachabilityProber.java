@@ -0,0 +1,190 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.ThreadUtils;
+import org.jtheque.utils.annotations.GuardedInternally;
+import org.jtheque.utils.annotations.ThreadSafe;
+import org.jtheque.utils.collections.CollectionUtils;
+import org.jtheque.utils.collections.SimpleTimedCache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A non blocking prober of the reachability of URLs. The probes are made by a small pool of daemon threads and their
+ * results are cached, the positive and the negative results with different timeouts. The concurrent probes of the same
+ * URL are merged, so only one connection is made and all the callers get its result.
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+public final class ReachabilityProber implements Closeable {
+    private static final int THREADS = 4;
+
+    private final int connectTimeout;
+    private final int readTimeout;
+
+    private final SimpleTimedCache<String> reachable;
+    private final SimpleTimedCache<String> unreachable;
+
+    @GuardedInternally
+    private final ConcurrentMap<String, CompletableFuture<Boolean>> probes = CollectionUtils.newConcurrentMap(8);
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Create a new ReachabilityProber.
+     *
+     * @param positiveTimeout The time the reachable URLs are cached, in milliseconds.
+     * @param negativeTimeout The time the unreachable URLs are cached, in milliseconds.
+     * @param connectTimeout  The connect timeout of the probes in milliseconds.
+     * @param readTimeout     The read timeout of the probes in milliseconds.
+     */
+    public ReachabilityProber(long positiveTimeout, long negativeTimeout, int connectTimeout, int readTimeout) {
+        super();
+
+        if (connectTimeout < 0 || readTimeout < 0) {
+            throw new IllegalArgumentException("The timeouts cannot be less than zero. ");
+        }
+
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+
+        reachable = new SimpleTimedCache<String>(positiveTimeout);
+        unreachable = new SimpleTimedCache<String>(negativeTimeout);
+
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                ThreadUtils.daemonThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Indicate if the URL is reachable. If the result is cached, the returned future is already completed. Otherwise,
+     * the URL is probed in background. The future is never completed exceptionally, a failed probe means that the URL
+     * is not reachable.
+     *
+     * @param url The URL to test.
+     *
+     * @return The future of the reachability of the URL.
+     */
+    public CompletableFuture<Boolean> isReachable(final URL url) {
+        final String key = url.toExternalForm();
+
+        if (reachable.contains(key)) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        if (unreachable.contains(key)) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        CompletableFuture<Boolean> probe = probes.get(key);
+
+        if (probe != null) {
+            return probe;
+        }
+
+        final CompletableFuture<Boolean> newProbe = new CompletableFuture<Boolean>();
+
+        probe = probes.putIfAbsent(key, newProbe);
+
+        if (probe != null) {
+            return probe;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean result = probe(url);
+
+                    if (result) {
+                        reachable.add(key);
+                    } else {
+                        unreachable.add(key);
+                    }
+
+                    probes.remove(key, newProbe);
+
+                    newProbe.complete(result);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            probes.remove(key, newProbe);
+
+            newProbe.complete(false);
+        }
+
+        return newProbe;
+    }
+
+    /**
+     * Close the prober. The running probes are completed, but the new ones are not made.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+
+        reachable.close();
+        unreachable.close();
+    }
+
+    /**
+     * Probe the URL. An HTTP URL is reachable if the response code is not an error or a redirection, another URL if
+     * a connection can be opened.
+     *
+     * @param url The URL to probe.
+     *
+     * @return {@code true} if the URL is reachable otherwise {@code false}.
+     */
+    private boolean probe(URL url) {
+        URLConnection connection = null;
+
+        try {
+            connection = url.openConnection();
+
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+
+            if (connection instanceof HttpURLConnection) {
+                return ((HttpURLConnection) connection).getResponseCode() < 300;
+            }
+
+            connection.connect();
+
+            return true;
+        } catch (IOException e) {
+            return false;
+        } catch (RuntimeException e) {
+            return false;
+        } finally {
+            if (connection instanceof HttpURLConnection) {
+                ((HttpURLConnection) connection).disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.CryptoUtils;
+import org.jtheque.utils.Hasher;
+import org.jtheque.utils.ThreadUtils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A download split in ranges fetched concurrently. The server is first probed with a HEAD request. If it accepts the
+ * byte ranges and gives the length and a validator of the resource, the file is preallocated and each range is written
+ * at its position by its own connection, with its own retries. Otherwise, or if the probe fails, the resource is
+ * downloaded as a single stream. All the ranges are requested with the validator of the probe, so they all come from
+ * the same version of the resource.
+ *
+ * @author Baptiste Wicht
+ */
+final class SegmentedDownload {
+    /**
+     * The minimal size of a segment. The small files are not split.
+     */
+    static final long MIN_SEGMENT_SIZE = 256 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private SegmentedDownload() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Download the URL in the channel.
+     *
+     * @param url      The URL to download.
+     * @param channel  The channel to write to.
+     * @param segments The maximum number of segments.
+     * @param retries  The number of retries of each segment.
+     *
+     * @return The length of the downloaded file.
+     *
+     * @throws IOException If the download fails.
+     */
+    static long download(URL url, FileChannel channel, int segments, int retries) throws IOException {
+        long length = -1;
+        String validator = null;
+        boolean ranges = false;
+
+        HttpURLConnection probe = HttpDownload.open(url, -1, -1, null);
+
+        try {
+            probe.setRequestMethod("HEAD");
+
+            //Some servers reject the HEAD requests (405 or 501), the resource is then downloaded as a single stream
+            if (probe.getResponseCode() < 300) {
+                String acceptRanges = probe.getHeaderField("Accept-Ranges");
+
+                length = probe.getContentLengthLong();
+                validator = HttpDownload.validatorOf(probe);
+                ranges = acceptRanges != null && acceptRanges.contains("bytes");
+            }
+        } catch (IOException e) {
+            //The probe has failed, the single stream has its own retries
+        } finally {
+            probe.disconnect();
+        }
+
+        int count = (int) Math.min(segments, length / MIN_SEGMENT_SIZE);
+
+        //Without validator, the segments could come from different versions of the resource
+        if (!ranges || validator == null || count < 2) {
+            return HttpDownload.fetch(url, channel, 0, -1, retries);
+        }
+
+        channel.truncate(0);
+        channel.write(ByteBuffer.allocate(1), length - 1);
+
+        fetchSegments(url, channel, length, count, retries, validator);
+
+        return length;
+    }
+
+    /**
+     * Fetch all the segments concurrently. The first failed segment cancels the others.
+     *
+     * @param url       The URL to download.
+     * @param channel   The channel to write to.
+     * @param length    The length of the resource.
+     * @param count     The number of segments.
+     * @param retries   The number of retries of each segment.
+     * @param validator The validator of the resource.
+     *
+     * @throws IOException If one of the segments cannot be downloaded.
+     */
+    private static void fetchSegments(final URL url, final FileChannel channel, long length, int count,
+                                      final int retries, final String validator) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(count, ThreadUtils.daemonThreadFactory());
+
+        try {
+            CompletionService<Void> completion = new ExecutorCompletionService<Void>(executor);
+
+            long segmentSize = length / count;
+
+            for (int i = 0; i < count; i++) {
+                final long start = i * segmentSize;
+                final long end = i == count - 1 ? length - 1 : start + segmentSize - 1;
+
+                completion.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        long position = HttpDownload.fetch(url, channel, start, end, retries, validator);
+
+                        if (position != end + 1) {
+                            throw new IOException("Incomplete segment " + start + '-' + end + " (" + position + ')');
+                        }
+
+                        return null;
+                    }
+                });
+            }
+
+            //The segments are awaited in completion order, so a failure is seen without waiting for the others
+            for (int i = 0; i < count; i++) {
+                try {
+                    completion.take().get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Unable to download a segment of " + url, e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    throw new IOException("Interrupted during the download of " + url, e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Verify the checksum of the downloaded file.
+     *
+     * @param channel  The channel of the file.
+     * @param hasher   The hash algorithm.
+     * @param checksum The expected checksum as an hexadecimal string.
+     *
+     * @throws IOException If the file cannot be read or if the checksum doesn't match.
+     */
+    static void verify(FileChannel channel, Hasher hasher, String checksum) throws IOException {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance(hasher.getAlgorithm());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Unsupported hash algorithm " + hasher.getAlgorithm(), e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        long position = 0;
+
+        int read = channel.read(buffer, position);
+
+        while (read != -1) {
+            position += read;
+
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+
+            read = channel.read(buffer, position);
+        }
+
+        String actual = CryptoUtils.toHex(digest.digest());
+
+        if (!actual.equalsIgnoreCase(checksum.trim())) {
+            throw new IOException("Checksum mismatch, expected " + checksum + " but was " + actual);
+        }
+    }
+}
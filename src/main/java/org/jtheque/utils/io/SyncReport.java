@@ -0,0 +1,118 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.annotations.Immutable;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * The report of a directory synchronization. The files are identified by their path relative to the synchronized
+ * directories, with '/' as separator.
+ *
+ * @author Baptiste Wicht
+ * @see FileUtils#synchronize(java.io.File, java.io.File, boolean, org.jtheque.utils.Hasher)
+ */
+@Immutable
+public final class SyncReport {
+    private final Collection<String> added;
+    private final Collection<String> updated;
+    private final Collection<String> deleted;
+    private final long unchanged;
+    private final long bytes;
+
+    /**
+     * Create a new SyncReport.
+     *
+     * @param added     The files copied because they were not in the target.
+     * @param updated   The files copied because they were different in the target.
+     * @param deleted   The files and directories deleted from the target.
+     * @param unchanged The number of files that were already up to date.
+     * @param bytes     The number of bytes copied.
+     */
+    SyncReport(Collection<String> added, Collection<String> updated, Collection<String> deleted, long unchanged,
+               long bytes) {
+        super();
+
+        this.added = Collections.unmodifiableCollection(added);
+        this.updated = Collections.unmodifiableCollection(updated);
+        this.deleted = Collections.unmodifiableCollection(deleted);
+        this.unchanged = unchanged;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Return the files copied because they were not in the target.
+     *
+     * @return The added files.
+     */
+    public Collection<String> getAdded() {
+        return added;
+    }
+
+    /**
+     * Return the files copied because they were different in the target.
+     *
+     * @return The updated files.
+     */
+    public Collection<String> getUpdated() {
+        return updated;
+    }
+
+    /**
+     * Return the files and directories deleted from the target because they were not in the source.
+     *
+     * @return The deleted files.
+     */
+    public Collection<String> getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Return the number of files that were already up to date.
+     *
+     * @return The number of unchanged files.
+     */
+    public long getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * Return the number of bytes copied.
+     *
+     * @return The number of bytes copied.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Indicate if the synchronization has changed something in the target.
+     *
+     * @return {@code true} if files have been copied or deleted otherwise {@code false}.
+     */
+    public boolean hasChanges() {
+        return !added.isEmpty() || !updated.isEmpty() || !deleted.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "SyncReport{added=" + added.size() + ", updated=" + updated.size() + ", deleted=" + deleted.size()
+                + ", unchanged=" + unchanged + ", bytes=" + bytes + '}';
+    }
+}
@@ -0,0 +1,440 @@
+package org.jtheque.utils.io;
+
+import org.jtheque.utils.annotations.GuardedBy;
+import org.jtheque.utils.annotations.ThreadSafe;
+
+import org.slf4j.LoggerFactory;
+
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A persistent cache for thumbnails. Each thumbnail is stored as raw pixels in its own file of the cache folder, so a
+ * thumbnail is read back by mapping its file, without decoding anything. The entries are keyed by the path of the
+ * source image and the size of the thumbnail and the last modification date of the source is stored in the entry, so a
+ * modified source invalidates its thumbnails. The cache is bounded by a number of bytes, the least recently used
+ * entries being deleted first.
+ *
+ * @author Baptiste Wicht
+ */
+@ThreadSafe
+public final class ThumbnailDiskCache {
+    private static final int MAGIC = 0x4A544854;
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".thumb";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File folder;
+    private final long maximumSize;
+
+    @GuardedBy("this")
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(64, 0.75f, true);
+
+    @GuardedBy("this")
+    private long size;
+
+    /**
+     * Create a new ThumbnailDiskCache. The existing entries of the folder are reused.
+     *
+     * @param folder      The folder of the cache.
+     * @param maximumSize The maximum size of the cache in bytes.
+     */
+    public ThumbnailDiskCache(File folder, long maximumSize) {
+        super();
+
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("The maximum size is less than or equals to zero. ");
+        }
+
+        this.folder = folder;
+        this.maximumSize = maximumSize;
+
+        FileUtils.createIfNotExists(folder);
+
+        loadEntries();
+    }
+
+    /**
+     * Return the thumbnail of the given source.
+     *
+     * @param source The source image file.
+     * @param size   The size of the thumbnail.
+     *
+     * @return The thumbnail or {@code null} if there is no valid thumbnail in the cache.
+     */
+    public BufferedImage get(File source, int size) {
+        Date lastModified = FileUtils.getLastModifiedDate(source);
+
+        if (lastModified == null) {
+            return null;
+        }
+
+        String key = keyOf(source, size);
+        String name = fileNameOf(key);
+
+        synchronized (this) {
+            if (entries.get(name) == null) {
+                return null;
+            }
+        }
+
+        File file = new File(folder, name);
+
+        try {
+            BufferedImage image = read(file, key, lastModified.getTime());
+
+            if (image == null) {
+                remove(name);
+            }
+
+            return image;
+        } catch (IOException e) {
+            LoggerFactory.getLogger(ThumbnailDiskCache.class).debug("Unable to read thumbnail " + file, e);
+
+            remove(name);
+
+            return null;
+        } catch (RuntimeException e) {
+            LoggerFactory.getLogger(ThumbnailDiskCache.class).debug("Corrupted thumbnail " + file, e);
+
+            remove(name);
+
+            return null;
+        }
+    }
+
+    /**
+     * Store the thumbnail of the given source.
+     *
+     * @param source    The source image file.
+     * @param size      The size of the thumbnail.
+     * @param thumbnail The thumbnail.
+     */
+    public void put(File source, int size, BufferedImage thumbnail) {
+        Date lastModified = FileUtils.getLastModifiedDate(source);
+
+        if (lastModified == null || thumbnail == null) {
+            return;
+        }
+
+        String key = keyOf(source, size);
+        String name = fileNameOf(key);
+
+        File file = new File(folder, name);
+        File temp = null;
+
+        try {
+            temp = File.createTempFile(name + '.', ".tmp", folder);
+
+            write(temp, key, lastModified.getTime(), thumbnail);
+
+            synchronized (this) {
+                remove(name);
+
+                if (!temp.renameTo(file)) {
+                    FileUtils.delete(temp);
+
+                    return;
+                }
+
+                long length = file.length();
+
+                entries.put(name, length);
+                this.size += length;
+
+                evict();
+            }
+        } catch (IOException e) {
+            LoggerFactory.getLogger(ThumbnailDiskCache.class).error("Unable to write thumbnail " + file, e);
+
+            if (temp != null) {
+                FileUtils.delete(temp);
+            }
+        }
+    }
+
+    /**
+     * Remove all the thumbnails of the cache.
+     */
+    public synchronized void clear() {
+        for (String name : entries.keySet()) {
+            FileUtils.delete(new File(folder, name));
+        }
+
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Return the current size of the cache.
+     *
+     * @return The size of the cache in bytes.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Return the maximum size of the cache.
+     *
+     * @return The maximum size of the cache in bytes.
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Load the entries of the folder. The least recently modified entries are the first to be evicted.
+     */
+    private void loadEntries() {
+        File[] files = folder.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(o1.lastModified(), o2.lastModified());
+            }
+        });
+
+        synchronized (this) {
+            for (File file : files) {
+                if (file.getName().endsWith(EXTENSION)) {
+                    entries.put(file.getName(), file.length());
+                    size += file.length();
+                } else if (file.getName().endsWith(".tmp")) {
+                    FileUtils.delete(file);
+                }
+            }
+
+            evict();
+        }
+    }
+
+    /**
+     * Remove the entry with the given file name.
+     *
+     * @param name The name of the entry file.
+     */
+    private synchronized void remove(String name) {
+        Long length = entries.remove(name);
+
+        if (length != null) {
+            size -= length;
+
+            FileUtils.delete(new File(folder, name));
+        }
+    }
+
+    /**
+     * Delete the least recently used entries until the size of the cache respects the maximum size. Must be called
+     * with the lock of the cache.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+
+        while (size > maximumSize && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+
+            iterator.remove();
+            size -= entry.getValue();
+
+            FileUtils.delete(new File(folder, entry.getKey()));
+        }
+    }
+
+    /**
+     * Read the thumbnail of the given file.
+     *
+     * @param file         The entry file.
+     * @param key          The expected key of the entry.
+     * @param lastModified The expected modification date of the source.
+     *
+     * @return The thumbnail or {@code null} if the entry is not valid. All the lengths are checked against the
+     *         length of the file, so a truncated or corrupted entry is not valid.
+     *
+     * @throws IOException If an error occurs during the reading.
+     */
+    private static BufferedImage read(File file, String key, long lastModified) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            FileChannel channel = raf.getChannel();
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.remaining() < 20 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != lastModified) {
+                return null;
+            }
+
+            int keyLength = buffer.getInt();
+
+            if (keyLength < 0 || keyLength > buffer.remaining() - 12) {
+                return null;
+            }
+
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(keyBytes);
+
+            if (!key.equals(new String(keyBytes, UTF8))) {
+                return null;
+            }
+
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            int type = buffer.getInt();
+
+            if (width <= 0 || height <= 0 || buffer.remaining() != (long) width * height * 4
+                    || type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_RGB) {
+                return null;
+            }
+
+            BufferedImage image = new BufferedImage(width, height, type);
+
+            buffer.asIntBuffer().get(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+
+            return image;
+        } finally {
+            FileUtils.close(raf);
+        }
+    }
+
+    /**
+     * Write the thumbnail in the given file.
+     *
+     * @param file         The entry file.
+     * @param key          The key of the entry.
+     * @param lastModified The modification date of the source.
+     * @param thumbnail    The thumbnail.
+     *
+     * @throws IOException If an error occurs during the writing.
+     */
+    private static void write(File file, String key, long lastModified, BufferedImage thumbnail) throws IOException {
+        BufferedImage image = toIntImage(thumbnail);
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        //The data buffer of a sub image is shared with its parent, only the pixels of the image are copied
+        int[] pixels = (int[]) image.getRaster().getDataElements(0, 0, width, height, null);
+
+        byte[] keyBytes = key.getBytes(UTF8);
+
+        ByteBuffer header = ByteBuffer.allocate(32 + keyBytes.length);
+        header.putInt(MAGIC).putInt(VERSION).putLong(lastModified);
+        header.putInt(keyBytes.length).put(keyBytes);
+        header.putInt(width).putInt(height).putInt(image.getType());
+        header.flip();
+
+        ByteBuffer data = ByteBuffer.allocate(width * height * 4);
+        data.asIntBuffer().put(pixels, 0, width * height);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            raf.setLength(0);
+
+            FileChannel channel = raf.getChannel();
+
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        } finally {
+            FileUtils.close(raf);
+        }
+    }
+
+    /**
+     * Return the image as an image backed by an array of int pixels.
+     *
+     * @param image The image to convert.
+     *
+     * @return An image of type ARGB or RGB.
+     */
+    private static BufferedImage toIntImage(BufferedImage image) {
+        if ((image.getType() == BufferedImage.TYPE_INT_ARGB || image.getType() == BufferedImage.TYPE_INT_RGB)
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt) {
+            return image;
+        }
+
+        int type = image.getTransparency() == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), type);
+
+        Graphics2D g2 = converted.createGraphics();
+        g2.drawImage(image, 0, 0, null);
+        g2.dispose();
+
+        return converted;
+    }
+
+    /**
+     * Return the key of the thumbnail.
+     *
+     * @param source The source image file.
+     * @param size   The size of the thumbnail.
+     *
+     * @return The key of the thumbnail.
+     */
+    private static String keyOf(File source, int size) {
+        return source.getAbsolutePath() + '@' + size;
+    }
+
+    /**
+     * Return the name of the file of the given key. The name is a 64 bits FNV-1a hash of the key, the collisions are
+     * detected with the key stored in the file.
+     *
+     * @param key The key of the thumbnail.
+     *
+     * @return The name of the file.
+     */
+    private static String fileNameOf(String key) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return Long.toHexString(hash) + EXTENSION;
+    }
+}
@@ -0,0 +1,34 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A listener on the progress of a transfer. The listener can cancel the transfer.
+ *
+ * @author Baptiste Wicht
+ */
+public interface TransferListener {
+    /**
+     * Called after each chunk of the transfer.
+     *
+     * @param transferred The number of bytes transferred since the start of the transfer.
+     * @param total       The total number of bytes to transfer or -1 if the total is unknown.
+     *
+     * @return {@code true} to continue the transfer or {@code false} to cancel it.
+     */
+    boolean transferred(long transferred, long total);
+}
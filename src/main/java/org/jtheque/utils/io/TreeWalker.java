@@ -0,0 +1,547 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.ThreadUtils;
+import org.jtheque.utils.collections.CollectionUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A parallel walker of file trees. Each directory is listed by its own fork-join task with a directory stream and the
+ * attributes of each entry are read once, so the subdirectories are listed concurrently and the idle threads steal the
+ * pending directories. The filter is applied to the directories too, an excluded directory is never listed. The
+ * files are delivered to a visitor or through a stream. The order of the files is not defined. By default, the walks
+ * are made by a fork-join pool shared by all the walkers.
+ *
+ * @author Baptiste Wicht
+ */
+public final class TreeWalker {
+    private static final int STREAM_QUEUE_SIZE = 8192;
+    private static final Object END = new Object();
+
+    /**
+     * The pool of the walkers with the default parallelism. Its threads are daemon and are stopped when it's idle.
+     */
+    private static final ForkJoinPool SHARED_POOL = new ForkJoinPool(ThreadUtils.processors());
+
+    private int parallelism;
+    private ForkJoinPool pool;
+    private int maxDepth = Integer.MAX_VALUE;
+    private boolean followLinks;
+    private PathFilter filter;
+
+    /**
+     * A filter on the files and the directories of the tree.
+     *
+     * @author Baptiste Wicht
+     */
+    public interface PathFilter {
+        /**
+         * Indicate if the path must be visited. If the path is a directory, its content is not visited if the
+         * directory is not accepted. This method is called concurrently.
+         *
+         * @param path       The path.
+         * @param attributes The attributes of the path.
+         *
+         * @return {@code true} if the path is accepted otherwise {@code false}.
+         */
+        boolean accept(Path path, BasicFileAttributes attributes);
+    }
+
+    /**
+     * A visitor of the files of the tree.
+     *
+     * @author Baptiste Wicht
+     */
+    public interface Visitor {
+        /**
+         * Visit a file. This method is called concurrently from the threads of the walk.
+         *
+         * @param file       The file.
+         * @param attributes The attributes of the file.
+         */
+        void visitFile(Path file, BasicFileAttributes attributes);
+    }
+
+    /**
+     * Set the number of threads of the walk. By default, the shared pool is used, with one thread per processor.
+     * Otherwise, the walker has its own pool, reused by its next walks.
+     *
+     * @param parallelism The number of threads.
+     *
+     * @return The walker.
+     */
+    public TreeWalker parallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be greater than zero. ");
+        }
+
+        if (parallelism != this.parallelism) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+
+            this.parallelism = parallelism;
+
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        return this;
+    }
+
+    /**
+     * Set the maximum depth of the walk. The children of the root are at depth 1. By default, the depth is not
+     * limited.
+     *
+     * @param maxDepth The maximum depth.
+     *
+     * @return The walker.
+     */
+    public TreeWalker maxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("The maximum depth is less than zero. ");
+        }
+
+        this.maxDepth = maxDepth;
+
+        return this;
+    }
+
+    /**
+     * Indicate if the symbolic links must be followed. By default, the links are not followed and are visited as
+     * files. When the links are followed, the cycles are detected and each directory is visited only once. A broken
+     * link is always visited as a file.
+     *
+     * @param followLinks Indicate if the symbolic links must be followed.
+     *
+     * @return The walker.
+     */
+    public TreeWalker followLinks(boolean followLinks) {
+        this.followLinks = followLinks;
+
+        return this;
+    }
+
+    /**
+     * Set the filter of the walk.
+     *
+     * @param filter The filter or {@code null} to visit all the files.
+     *
+     * @return The walker.
+     */
+    public TreeWalker filter(PathFilter filter) {
+        this.filter = filter;
+
+        return this;
+    }
+
+    /**
+     * Walk the tree and pass each file to the visitor. The method returns when the whole tree has been visited. A
+     * directory that cannot be read doesn't stop the walk.
+     *
+     * @param root    The root directory.
+     * @param visitor The file visitor.
+     *
+     * @throws IOException If some directories cannot be read. The failures are the suppressed exceptions of the
+     *                     thrown exception.
+     */
+    public void walk(Path root, Visitor visitor) throws IOException {
+        Walk walk = new Walk(visitor);
+
+        getPool().invoke(walk.newTask(root, 0));
+
+        walk.throwFailures(root);
+    }
+
+    /**
+     * Walk the tree in background and return a stream of its files. The files are available as soon as they are found.
+     * Closing the stream stops the walk. If some directories cannot be read, an {@link UncheckedIOException} is thrown
+     * at the end of the stream.
+     *
+     * @param root The root directory.
+     *
+     * @return A stream of the files of the tree.
+     */
+    public Stream<Path> stream(final Path root) {
+        final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(STREAM_QUEUE_SIZE);
+
+        final Walk walk = new Walk(null);
+
+        walk.queue = queue;
+
+        getPool().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    walk.newTask(root, 0).invoke();
+                } finally {
+                    walk.offer(END);
+                }
+            }
+        });
+
+        Iterator<Path> iterator = new Iterator<Path>() {
+            private Object next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+
+                        throw new IllegalStateException("Interrupted during the walk", e);
+                    }
+                }
+
+                if (next == END) {
+                    try {
+                        walk.throwFailures(root);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+
+                    return false;
+                }
+
+                return true;
+            }
+
+            @Override
+            public Path next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                Path path = (Path) next;
+
+                next = null;
+
+                return path;
+            }
+        };
+
+        Spliterator<Path> spliterator = Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.DISTINCT | Spliterator.NONNULL);
+
+        return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+            @Override
+            public void run() {
+                walk.cancelled = true;
+
+                queue.clear();
+            }
+        });
+    }
+
+    /**
+     * Return the pool of the walks.
+     *
+     * @return The pool of the walker or the shared pool if the parallelism has not been set.
+     */
+    private ForkJoinPool getPool() {
+        return pool == null ? SHARED_POOL : pool;
+    }
+
+    /**
+     * The state of a walk.
+     *
+     * @author Baptiste Wicht
+     */
+    private final class Walk {
+        private final Visitor visitor;
+        private final PathFilter filter;
+        private final int maxDepth;
+        private final boolean followLinks;
+        private final LinkOption[] linkOptions;
+        private final Set<Object> visited = ConcurrentHashMap.newKeySet();
+        private final Queue<IOException> failures = new ConcurrentLinkedQueue<IOException>();
+
+        private BlockingQueue<Object> queue;
+        private volatile boolean cancelled;
+
+        /**
+         * Create a new Walk with the current configuration of the walker.
+         *
+         * @param visitor The visitor or {@code null} if the files are put in the queue.
+         */
+        private Walk(Visitor visitor) {
+            super();
+
+            this.visitor = visitor;
+
+            filter = TreeWalker.this.filter;
+            maxDepth = TreeWalker.this.maxDepth;
+            followLinks = TreeWalker.this.followLinks;
+
+            linkOptions = followLinks ? new LinkOption[0] : new LinkOption[]{LinkOption.NOFOLLOW_LINKS};
+        }
+
+        /**
+         * Create the task of a directory.
+         *
+         * @param directory The directory.
+         * @param depth     The depth of the directory.
+         *
+         * @return The task.
+         */
+        private DirectoryTask newTask(Path directory, int depth) {
+            return new DirectoryTask(this, directory, depth);
+        }
+
+        /**
+         * Deliver a file.
+         *
+         * @param file       The file.
+         * @param attributes The attributes of the file.
+         */
+        private void deliver(Path file, BasicFileAttributes attributes) {
+            if (visitor == null) {
+                offer(file);
+            } else {
+                visitor.visitFile(file, attributes);
+            }
+        }
+
+        /**
+         * Put an element in the queue of the stream, waiting while the queue is full and the walk is not cancelled.
+         * The wait is managed by the pool, which can start another thread meanwhile, so a stream that is not
+         * consumed doesn't block the other walks of the pool.
+         *
+         * @param element The element.
+         */
+        private void offer(final Object element) {
+            try {
+                ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                    private boolean done;
+
+                    @Override
+                    public boolean block() throws InterruptedException {
+                        done = cancelled || queue.offer(element, 100, TimeUnit.MILLISECONDS);
+
+                        return done;
+                    }
+
+                    @Override
+                    public boolean isReleasable() {
+                        if (!done) {
+                            done = cancelled || queue.offer(element);
+                        }
+
+                        return done;
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                cancelled = true;
+            }
+        }
+
+        /**
+         * Indicate if the directory must be visited. When the links are followed, a directory already visited through
+         * another path is not visited again.
+         *
+         * @param directory  The directory.
+         * @param attributes The attributes of the directory.
+         *
+         * @return {@code true} if the directory must be visited otherwise {@code false}.
+         *
+         * @throws IOException If the real path of the directory cannot be resolved.
+         */
+        private boolean firstVisit(Path directory, BasicFileAttributes attributes) throws IOException {
+            if (!followLinks) {
+                return true;
+            }
+
+            Object key = attributes.fileKey();
+
+            return visited.add(key == null ? directory.toRealPath() : key);
+        }
+
+        /**
+         * Throw the failures of the walk.
+         *
+         * @param root The root of the walk.
+         *
+         * @throws IOException If there was failures during the walk.
+         */
+        private void throwFailures(Path root) throws IOException {
+            if (failures.isEmpty()) {
+                return;
+            }
+
+            IOException exception = new IOException(failures.size() + " directories cannot be read in " + root);
+
+            for (IOException failure : failures) {
+                exception.addSuppressed(failure);
+            }
+
+            throw exception;
+        }
+    }
+
+    /**
+     * The task listing a directory. The files are delivered and a task is forked for each subdirectory.
+     *
+     * @author Baptiste Wicht
+     */
+    private final class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = -5185127343766394526L;
+
+        private final transient Walk walk;
+        private final transient Path directory;
+        private final int depth;
+
+        /**
+         * Create a new DirectoryTask.
+         *
+         * @param walk      The walk.
+         * @param directory The directory to list.
+         * @param depth     The depth of the directory.
+         */
+        private DirectoryTask(Walk walk, Path directory, int depth) {
+            super();
+
+            this.walk = walk;
+            this.directory = directory;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (depth >= walk.maxDepth) {
+                return;
+            }
+
+            if (depth == 0) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+
+                    walk.firstVisit(directory, attributes);
+                } catch (IOException e) {
+                    walk.failures.add(e);
+
+                    return;
+                }
+            }
+
+            Collection<DirectoryTask> subtasks = CollectionUtils.newList();
+
+            try {
+                DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+
+                try {
+                    for (Path child : stream) {
+                        if (walk.cancelled) {
+                            return;
+                        }
+
+                        try {
+                            visit(child, subtasks);
+                        } catch (IOException e) {
+                            walk.failures.add(e);
+                        }
+                    }
+                } finally {
+                    stream.close();
+                }
+            } catch (IOException e) {
+                walk.failures.add(e);
+            }
+
+            invokeAll(subtasks);
+        }
+
+        /**
+         * Visit a child of the directory.
+         *
+         * @param child    The child.
+         * @param subtasks The tasks of the subdirectories.
+         *
+         * @throws IOException If the child cannot be read.
+         */
+        private void visit(Path child, Collection<DirectoryTask> subtasks) throws IOException {
+            BasicFileAttributes attributes = readAttributes(child);
+
+            if (walk.filter != null && !walk.filter.accept(child, attributes)) {
+                return;
+            }
+
+            if (attributes.isDirectory()) {
+                if (depth + 1 < walk.maxDepth && walk.firstVisit(child, attributes)) {
+                    subtasks.add(walk.newTask(child, depth + 1));
+                }
+            } else {
+                walk.deliver(child, attributes);
+            }
+        }
+
+        /**
+         * Read the attributes of a child of the directory. When the links are followed, the attributes of a broken
+         * link are the ones of the link itself.
+         *
+         * @param child The child.
+         *
+         * @return The attributes of the child.
+         *
+         * @throws IOException If the attributes cannot be read.
+         */
+        private BasicFileAttributes readAttributes(Path child) throws IOException {
+            try {
+                return Files.readAttributes(child, BasicFileAttributes.class, walk.linkOptions);
+            } catch (IOException e) {
+                if (!walk.followLinks) {
+                    throw e;
+                }
+
+                BasicFileAttributes link = Files.readAttributes(child, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+
+                if (!link.isSymbolicLink()) {
+                    throw e;
+                }
+
+                return link;
+            }
+        }
+    }
+}
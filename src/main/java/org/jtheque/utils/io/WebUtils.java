@@ -1,16 +1,14 @@
 package org.jtheque.utils.io;
 
-import org.jtheque.utils.collections.SimpleTimedCache;
+import org.jtheque.utils.Hasher;
 
-import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
-import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
 
 /*
  * Copyright JTheque (Baptiste Wicht)
@@ -34,10 +32,15 @@ import java.net.UnknownHostException;
  * @author Baptiste Wicht
  */
 public final class WebUtils {
-    private static final SimpleTimedCache<URL> URLS = new SimpleTimedCache<URL>(60000);//60 Seconds of timeout
+    private static final ReachabilityProber PROBER = new ReachabilityProber(60000, 10000, 10000, 10000);
 
     private static final String INTERNET_URL = "http://www.google.com";
 
+    /**
+     * The number of times a download is resumed after a failure.
+     */
+    private static final int DEFAULT_RETRIES = 3;
+
     /**
      * Utility class, not instantiable.
      */
@@ -46,7 +49,7 @@ public final class WebUtils {
     }
 
     /**
-     * Download a file.
+     * Download a file. The file is streamed to the disk and the download is resumed if the connection fails.
      *
      * @param filePath    The path to the file to download.
      * @param destination The path to the destination's file.
@@ -54,82 +57,129 @@ public final class WebUtils {
      * @throws FileException If an error occurs during the downloading process
      */
     public static void downloadFile(String filePath, String destination) throws FileException {
-        InputStream is = null;
-
         try {
-            URL url = new URL(filePath);
-
-            URLConnection connection = url.openConnection();
-
-            int length = connection.getContentLength();
-
-            if (length == -1) {
-                throw new IOException("Empty file (" + filePath + ')');
-            }
-
-            is = new BufferedInputStream(connection.getInputStream());
-
-            byte[] data = downloadData(is, length);
-
-            writeData(destination, data);
+            downloadFile(new URL(filePath), new File(destination), DEFAULT_RETRIES);
         } catch (MalformedURLException e) {
             throw new FileException("Exception occurred during downloading", e);
-        } catch (IOException e) {
-            throw new FileException("Exception occurred during downloading", e);
-        } finally {
-            FileUtils.close(is);
         }
     }
 
     /**
-     * Download data from a stream and return the data as a byte array.
+     * Download a file. The body of the response is written directly in the file through a bounded buffer, so the
+     * length of the response doesn't need to be known. If the connection fails or the body is truncated, the download
+     * is resumed from the last written byte with an HTTP Range request. The file is downloaded in a temporary file
+     * renamed to the destination once complete, so if the download fails, an existing destination file is kept.
      *
-     * @param is     The input stream.
-     * @param length The length to read.
+     * @param url         The URL of the file to download.
+     * @param destination The destination file.
+     * @param retries     The number of times the download is resumed after a failure.
      *
-     * @return The data into a byte array.
+     * @return The number of bytes of the file.
      *
-     * @throws IOException If an IO problem occurs during the reading.
+     * @throws FileException If an error occurs during the downloading process
      */
-    private static byte[] downloadData(InputStream is, int length) throws IOException {
-        byte[] data = new byte[length];
-
-        int offset = 0;
-
-        while (offset < length) {
-            int currentBit = is.read(data, offset, data.length - offset);
-
-            if (currentBit == -1) {
-                break;
-            }
+    public static long downloadFile(URL url, File destination, int retries) throws FileException {
+        return download(url, destination, 1, retries, null, null);
+    }
 
-            offset += currentBit;
+    /**
+     * Download a file in several segments. If the server accepts the byte ranges, the file is split in ranges that are
+     * downloaded concurrently and written directly at their position in the file. Each segment is resumed separately
+     * after a failure. If the server doesn't accept the ranges or if the file is small, the file is downloaded with a
+     * single stream. If a checksum is given, the complete file is verified. The destination file is only replaced
+     * once the download is complete and verified.
+     *
+     * @param url         The URL of the file to download.
+     * @param destination The destination file.
+     * @param segments    The maximum number of segments downloaded concurrently.
+     * @param hasher      The algorithm of the checksum or {@code null}.
+     * @param checksum    The expected checksum of the file as an hexadecimal string or {@code null}.
+     *
+     * @return The number of bytes of the file.
+     *
+     * @throws FileException If an error occurs during the downloading process or if the checksum doesn't match.
+     * @throws IllegalArgumentException If the number of segments is less than or equals to zero or if a checksum is
+     *                                  given without its algorithm.
+     */
+    public static long downloadFile(URL url, File destination, int segments, Hasher hasher, String checksum)
+            throws FileException {
+        if (segments <= 0) {
+            throw new IllegalArgumentException("The number of segments must be greater than zero. ");
         }
 
-        if (offset != length) {
-            throw new IOException("The file has not been fully read (Only " + offset + " of " + length + ')');
+        if (checksum != null && hasher == null) {
+            throw new IllegalArgumentException("The algorithm of the checksum must be given. ");
         }
-        return data;
+
+        return download(url, destination, segments, DEFAULT_RETRIES, hasher, checksum);
+    }
+
+    /**
+     * Download a file through the given cache. If the file is in the cache, the request is conditional and the cached
+     * copy is used if the file has not been modified on the server.
+     *
+     * @param url         The URL of the file to download.
+     * @param destination The destination file.
+     * @param cache       The HTTP cache.
+     *
+     * @return {@code true} if the file has been served from the cache otherwise {@code false}.
+     *
+     * @throws FileException If an error occurs during the downloading process
+     */
+    public static boolean downloadFile(URL url, File destination, HttpCache cache) throws FileException {
+        return cache.download(url, destination);
     }
 
     /**
-     * Write data to a file.
+     * Download a file in a temporary file of the destination folder and rename it to the destination on success.
      *
-     * @param destination The destination file path.
-     * @param data        The data to write.
+     * @param url         The URL of the file to download.
+     * @param destination The destination file.
+     * @param segments    The maximum number of segments, 1 to download the file with a single stream.
+     * @param retries     The number of times a download is resumed after a failure.
+     * @param hasher      The algorithm of the checksum or {@code null}.
+     * @param checksum    The expected checksum of the file as an hexadecimal string or {@code null}.
      *
-     * @throws IOException If an IO problem occurs during the writing.
+     * @return The number of bytes of the file.
+     *
+     * @throws FileException If an error occurs during the downloading process.
      */
-    private static void writeData(String destination, byte[] data) throws IOException {
-        OutputStream destinationFile = null;
+    private static long download(URL url, File destination, int segments, int retries, Hasher hasher, String checksum)
+            throws FileException {
+        File temp = null;
+        FileChannel channel = null;
+        boolean success = false;
+
         try {
-            destinationFile = FileUtils.asOutputStream(destination);
+            temp = AtomicFileOutputStream.createTemp(destination);
+
+            channel = FileChannel.open(temp.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            long length = segments > 1 ?
+                    SegmentedDownload.download(url, channel, segments, retries) :
+                    HttpDownload.fetch(url, channel, 0, -1, retries);
+
+            channel.truncate(length);
+
+            if (hasher != null && checksum != null) {
+                SegmentedDownload.verify(channel, hasher, checksum);
+            }
+
+            channel.close();
+
+            AtomicFileOutputStream.rename(temp, destination);
 
-            destinationFile.write(data);
+            success = true;
 
-            destinationFile.flush();
+            return length;
+        } catch (IOException e) {
+            throw new FileException("Exception occurred during downloading", e);
         } finally {
-            FileUtils.close(destinationFile);
+            FileUtils.close(channel);
+
+            if (!success && temp != null) {
+                FileUtils.delete(temp);
+            }
         }
     }
 
@@ -189,35 +239,40 @@ public final class WebUtils {
     }
 
     /**
-     * Indicate if the URL is reachable or not.
+     * Indicate if the URL is reachable or not. This method blocks until the URL has been probed, if the result is not
+     * cached, use {@link #isURLReachableAsync(URL)} to not block the caller.
      *
      * @param url The URL to test.
      *
      * @return {@code true} if the URL is reachable otherwise {@code false}.
      */
     public static boolean isURLReachable(URL url) {
-        if (URLS.contains(url)) {
-            return true;
-        }
+        return isURLReachableAsync(url).join();
+    }
 
+    /**
+     * Indicate if the internet is reachable without blocking the caller.
+     *
+     * @return The future of the reachability of the internet.
+     */
+    public static CompletableFuture<Boolean> isInternetReachableAsync() {
         try {
-            HttpURLConnection urlConnect = (HttpURLConnection) url.openConnection();
-
-            urlConnect.getInputStream();
-
-            if (urlConnect.getResponseCode() >= 300) {
-                return false;
-            }
-
-            urlConnect.disconnect();
-        } catch (UnknownHostException e) {
-            return false;
-        } catch (IOException e) {
-            return false;
+            return isURLReachableAsync(new URL(INTERNET_URL));
+        } catch (MalformedURLException e) {
+            return CompletableFuture.completedFuture(false);
         }
+    }
 
-        URLS.add(url);
-
-        return true;
+    /**
+     * Indicate if the URL is reachable without blocking the caller. The reachable URLs are cached during 60 seconds
+     * and the unreachable ones during 10 seconds. The concurrent probes of the same URL are merged. To use other
+     * timeouts, use a {@link ReachabilityProber}.
+     *
+     * @param url The URL to test.
+     *
+     * @return The future of the reachability of the URL.
+     */
+    public static CompletableFuture<Boolean> isURLReachableAsync(URL url) {
+        return PROBER.isReachable(url);
     }
-}
\ No newline at end of file
+}
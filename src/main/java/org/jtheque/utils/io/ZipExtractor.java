@@ -0,0 +1,527 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.ThreadUtils;
+import org.jtheque.utils.collections.CollectionUtils;
+import org.jtheque.utils.collections.Filter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * A parallel extractor of ZIP archives. The entries are found in the central directory of the archive and extracted
+ * concurrently, each one being read with positional reads on the shared channel of the archive. The paths of all the
+ * selected entries are checked before the extraction, an entry that would be extracted outside of the destination
+ * folder rejects the whole archive. The archives using ZIP64 are not supported.
+ *
+ * @author Baptiste Wicht
+ */
+final class ZipExtractor {
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT = 0xFFFF;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File archive;
+
+    private final AtomicLong bytes = new AtomicLong(0);
+    private final AtomicLong files = new AtomicLong(0);
+
+    /**
+     * Create a new ZipExtractor.
+     *
+     * @param archive The archive to extract.
+     */
+    ZipExtractor(File archive) {
+        super();
+
+        this.archive = archive;
+    }
+
+    /**
+     * Extract the selected entries of the archive.
+     *
+     * @param destination The destination folder.
+     * @param parallelism The number of extraction threads.
+     * @param filter      The filter on the names of the entries, {@code null} to extract all the entries.
+     *
+     * @return The extracted files.
+     *
+     * @throws IOException If the archive cannot be read, if two entries have the same target or if some entries cannot
+     *                     be extracted. In the later case, the failures are the suppressed exceptions of the thrown
+     *                     exception.
+     */
+    Collection<File> extract(File destination, int parallelism, Filter<String> filter) throws IOException {
+        FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ);
+
+        try {
+            List<Entry> entries = readCentralDirectory(channel);
+
+            Collection<Entry> selected = CollectionUtils.newList(entries.size());
+            Set<String> targets = CollectionUtils.newSet(entries.size());
+
+            for (Entry entry : entries) {
+                if (filter == null || filter.accept(entry.name)) {
+                    entry.target = resolve(destination, entry.name);
+
+                    //Two entries of the same file would be extracted concurrently to the same target
+                    if (!entry.isDirectory() && !targets.add(entry.target.getCanonicalPath())) {
+                        throw new ZipException("Duplicate entry " + entry.name + " in " + archive.getAbsolutePath());
+                    }
+
+                    selected.add(entry);
+                }
+            }
+
+            createDirectories(destination, selected);
+
+            return extract(channel, selected, parallelism);
+        } finally {
+            FileUtils.close(channel);
+        }
+    }
+
+    /**
+     * Return the number of bytes extracted.
+     *
+     * @return The number of bytes extracted.
+     */
+    long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Return the number of files extracted.
+     *
+     * @return The number of files extracted.
+     */
+    int getFiles() {
+        return (int) files.get();
+    }
+
+    /**
+     * Return the file of an entry in the destination folder.
+     *
+     * @param destination The destination folder.
+     * @param name        The name of the entry.
+     *
+     * @return The file of the entry.
+     *
+     * @throws IOException If the entry is outside of the destination folder.
+     */
+    static File resolve(File destination, String name) throws IOException {
+        File file = new File(destination, name);
+
+        String root = destination.getCanonicalPath();
+        String path = file.getCanonicalPath();
+
+        //An entry like ./ is the destination folder itself
+        if (!path.equals(root) && !path.startsWith(root + File.separator)) {
+            throw new ZipException("The entry " + name + " is outside of the destination folder");
+        }
+
+        return file;
+    }
+
+    /**
+     * Create the directories of the entries. The directories are created before the extraction to avoid concurrent
+     * creations of the same directory.
+     *
+     * @param destination The destination folder.
+     * @param entries     The entries to extract.
+     *
+     * @throws IOException If a directory cannot be created.
+     */
+    private static void createDirectories(File destination, Collection<Entry> entries) throws IOException {
+        FileUtils.createIfNotExists(destination);
+
+        for (Entry entry : entries) {
+            File directory = entry.isDirectory() ? entry.target : entry.target.getParentFile();
+
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create the directory " + directory.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Extract the entries in parallel.
+     *
+     * @param channel     The channel of the archive.
+     * @param entries     The entries to extract.
+     * @param parallelism The number of threads.
+     *
+     * @return The extracted files.
+     *
+     * @throws IOException If some entries cannot be extracted.
+     */
+    private Collection<File> extract(final FileChannel channel, Collection<Entry> entries, int parallelism)
+            throws IOException {
+        final Queue<File> extracted = new ConcurrentLinkedQueue<File>();
+        final Queue<IOException> failures = new ConcurrentLinkedQueue<IOException>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, ThreadUtils.daemonThreadFactory());
+
+        try {
+            Collection<Future<?>> futures = CollectionUtils.newList(entries.size());
+
+            for (final Entry entry : entries) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+
+                futures.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            extractEntry(channel, entry);
+
+                            extracted.add(entry.target);
+                        } catch (IOException e) {
+                            failures.add(e);
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Interrupted during the extraction", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to extract an entry", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (!failures.isEmpty()) {
+            ZipException exception = new ZipException(failures.size() + " entries cannot be extracted from "
+                    + archive.getAbsolutePath());
+
+            for (IOException failure : failures) {
+                exception.addSuppressed(failure);
+            }
+
+            throw exception;
+        }
+
+        return CollectionUtils.copyOf(extracted);
+    }
+
+    /**
+     * Extract an entry.
+     *
+     * @param channel The channel of the archive.
+     * @param entry   The entry to extract.
+     *
+     * @throws IOException If the entry cannot be extracted.
+     */
+    private void extractEntry(FileChannel channel, Entry entry) throws IOException {
+        ByteBuffer header = read(channel, entry.offset, 30);
+
+        if (header.getInt(0) != LOCAL_HEADER) {
+            throw new ZipException("Invalid local header for the entry " + entry.name);
+        }
+
+        long start = entry.offset + 30 + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+
+        InputStream stream;
+        Inflater inflater = null;
+
+        if (entry.method == ZipEntry.STORED) {
+            stream = new ChannelInputStream(channel, start, entry.compressedSize, false);
+        } else if (entry.method == ZipEntry.DEFLATED) {
+            inflater = new Inflater(true);
+
+            stream = new InflaterInputStream(new ChannelInputStream(channel, start, entry.compressedSize, true),
+                    inflater, BUFFER_SIZE);
+        } else {
+            throw new ZipException("Unsupported compression method for the entry " + entry.name);
+        }
+
+        CRC32 crc = new CRC32();
+        long size = 0;
+
+        OutputStream out = FileUtils.asOutputStream(entry.target);
+
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            int read = stream.read(buffer);
+
+            while (read != -1) {
+                out.write(buffer, 0, read);
+                crc.update(buffer, 0, read);
+                size += read;
+
+                read = stream.read(buffer);
+            }
+        } finally {
+            FileUtils.close(out);
+            FileUtils.close(stream);
+
+            //The stream doesn't release the native memory of an inflater it has not created
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+
+        if (size != entry.size || crc.getValue() != entry.crc) {
+            throw new ZipException("Invalid size or checksum for the entry " + entry.name);
+        }
+
+        bytes.addAndGet(size);
+        files.incrementAndGet();
+    }
+
+    /**
+     * Read the entries of the central directory.
+     *
+     * @param channel The channel of the archive.
+     *
+     * @return The entries of the archive.
+     *
+     * @throws IOException If the central directory cannot be read.
+     */
+    private List<Entry> readCentralDirectory(FileChannel channel) throws IOException {
+        long size = channel.size();
+
+        int tailSize = (int) Math.min(size, END_SIZE + MAX_COMMENT);
+
+        ByteBuffer tail = read(channel, size - tailSize, tailSize);
+
+        int end = -1;
+
+        for (int i = tailSize - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+                end = i;
+
+                break;
+            }
+        }
+
+        if (end == -1) {
+            throw new ZipException("Not a ZIP archive: " + archive.getAbsolutePath());
+        }
+
+        int count = tail.getShort(end + 10) & 0xFFFF;
+        long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+
+        if (count == 0xFFFF || directoryOffset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archives are not supported: " + archive.getAbsolutePath());
+        }
+
+        //The central directory is just before the end record
+        if (directoryOffset + directorySize > size - tailSize + end) {
+            throw new ZipException("Invalid central directory in " + archive.getAbsolutePath());
+        }
+
+        ByteBuffer directory = read(channel, directoryOffset, (int) directorySize);
+
+        List<Entry> entries = CollectionUtils.newList(count);
+
+        int position = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (position + 46 > directory.limit() || directory.getInt(position) != CENTRAL_HEADER) {
+                throw new ZipException("Invalid central directory in " + archive.getAbsolutePath());
+            }
+
+            int nameLength = directory.getShort(position + 28) & 0xFFFF;
+            int extraLength = directory.getShort(position + 30) & 0xFFFF;
+            int commentLength = directory.getShort(position + 32) & 0xFFFF;
+
+            if (position + 46 + nameLength + extraLength + commentLength > directory.limit()) {
+                throw new ZipException("Invalid central directory in " + archive.getAbsolutePath());
+            }
+
+            byte[] name = new byte[nameLength];
+            directory.position(position + 46);
+            directory.get(name);
+
+            Entry entry = new Entry(new String(name, StandardCharsets.UTF_8));
+            entry.method = directory.getShort(position + 10) & 0xFFFF;
+            entry.crc = directory.getInt(position + 16) & 0xFFFFFFFFL;
+            entry.compressedSize = directory.getInt(position + 20) & 0xFFFFFFFFL;
+            entry.size = directory.getInt(position + 24) & 0xFFFFFFFFL;
+            entry.offset = directory.getInt(position + 42) & 0xFFFFFFFFL;
+
+            if (entry.offset + 30 + entry.compressedSize > directoryOffset) {
+                throw new ZipException("Invalid offset for the entry " + entry.name);
+            }
+
+            entries.add(entry);
+
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+
+        return entries;
+    }
+
+    /**
+     * Read bytes of the channel at the given position.
+     *
+     * @param channel  The channel to read from.
+     * @param position The position to read at.
+     * @param length   The number of bytes to read.
+     *
+     * @return A little-endian buffer of the read bytes.
+     *
+     * @throws IOException If the bytes cannot be read.
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new ZipException("Unexpected end of the archive");
+            }
+        }
+
+        buffer.flip();
+
+        return buffer;
+    }
+
+    /**
+     * An entry of the archive.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class Entry {
+        private final String name;
+
+        private int method;
+        private long crc;
+        private long compressedSize;
+        private long size;
+        private long offset;
+        private File target;
+
+        /**
+         * Create a new Entry.
+         *
+         * @param name The name of the entry.
+         */
+        private Entry(String name) {
+            super();
+
+            this.name = name;
+        }
+
+        /**
+         * Indicate if the entry is a directory.
+         *
+         * @return {@code true} if the entry is a directory otherwise {@code false}.
+         */
+        private boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    /**
+     * An input stream reading a part of a channel with positional reads, so several streams can read the same channel
+     * concurrently.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class ChannelInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+        private boolean padding;
+
+        /**
+         * Create a new ChannelInputStream.
+         *
+         * @param channel  The channel to read from.
+         * @param start    The position of the first byte.
+         * @param length   The number of bytes to read.
+         * @param padding  Indicate if a zero byte must be added at the end, the inflater can need it with raw deflate
+         *                 streams.
+         */
+        private ChannelInputStream(FileChannel channel, long start, long length, boolean padding) {
+            super();
+
+            this.channel = channel;
+            this.padding = padding;
+
+            position = start;
+            end = start + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                if (padding && len > 0) {
+                    padding = false;
+                    b[off] = 0;
+
+                    return 1;
+                }
+
+                return -1;
+            }
+
+            int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+
+            if (count == -1) {
+                throw new ZipException("Unexpected end of the archive");
+            }
+
+            position += count;
+
+            return count;
+        }
+    }
+}
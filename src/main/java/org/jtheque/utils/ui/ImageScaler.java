@@ -0,0 +1,483 @@
+package org.jtheque.utils.ui;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * A single pass image scaler working directly on the pixels of the images. The scaling is made with a separable
+ * filter, first on the rows and then on the columns, so only one intermediate buffer is needed. The destination is
+ * produced in horizontal strips, so the intermediate buffer only holds the source rows of one strip and its size is
+ * bounded whatever the size of the images. The buffers are kept per thread and reused between the scalings. The
+ * result is always an image of type INT_ARGB or INT_RGB.
+ *
+ * @author Baptiste Wicht
+ */
+public final class ImageScaler {
+    /**
+     * The maximum number of floats of the intermediate buffer of a strip, 4 MB.
+     */
+    private static final int MAX_INTERMEDIATE = 1 << 20;
+
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    /**
+     * The quality of the scaling.
+     *
+     * @author Baptiste Wicht
+     */
+    public enum Quality {
+        /**
+         * Bilinear interpolation in both directions. Fast, but the strong reductions are aliased.
+         */
+        SPEED,
+
+        /**
+         * Area averaging for the reductions and bicubic interpolation for the enlargements.
+         */
+        QUALITY
+    }
+
+    /**
+     * Construct a new ImageScaler. This constructor is private, all the methods are static.
+     */
+    private ImageScaler() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Scale the image to fit in the given box. The ratio of the image is kept.
+     *
+     * @param image     The image to scale.
+     * @param maxWidth  The maximum width of the result.
+     * @param maxHeight The maximum height of the result.
+     * @param quality   The quality of the scaling.
+     *
+     * @return The scaled image.
+     */
+    public static BufferedImage scaleToFit(BufferedImage image, int maxWidth, int maxHeight, Quality quality) {
+        if (image == null) {
+            return null;
+        }
+
+        double ratio = Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight());
+
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+
+        return scale(image, width, height, quality);
+    }
+
+    /**
+     * Scale the image to the given size.
+     *
+     * @param image   The image to scale.
+     * @param width   The width of the result.
+     * @param height  The height of the result.
+     * @param quality The quality of the scaling.
+     *
+     * @return The scaled image.
+     */
+    public static BufferedImage scale(BufferedImage image, int width, int height, Quality quality) {
+        if (image == null) {
+            return null;
+        }
+
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("The size of the scaled image must be greater than zero. ");
+        }
+
+        int srcWidth = image.getWidth();
+        int srcHeight = image.getHeight();
+
+        boolean alpha = image.getTransparency() != Transparency.OPAQUE;
+
+        Filter horizontal = new Filter(srcWidth, width, quality);
+        Filter vertical = new Filter(srcHeight, height, quality);
+
+        BufferedImage result = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+
+        int[] destination = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+
+        Scratch scratch = SCRATCH.get();
+
+        int[] row = scratch.row(srcWidth);
+        int[] source = directPixels(image);
+
+        long stride = width * 4L;
+
+        int y = 0;
+
+        while (y < height) {
+            int first = vertical.starts[y];
+            int end = y + 1;
+
+            //The strip is extended while the source rows it needs fit in the intermediate buffer
+            while (end < height && (vertical.end(end) - first) * stride <= MAX_INTERMEDIATE) {
+                end++;
+            }
+
+            int last = vertical.end(end - 1);
+
+            float[] intermediate = scratch.intermediate((int) ((last - first) * stride));
+
+            for (int sy = first; sy < last; sy++) {
+                int offset;
+
+                if (source == null) {
+                    image.getRGB(0, sy, srcWidth, 1, row, 0, srcWidth);
+                    offset = 0;
+                } else {
+                    offset = sy * srcWidth;
+                }
+
+                filterRow(source == null ? row : source, offset, alpha, horizontal, intermediate, (int) ((sy - first) * stride));
+            }
+
+            filterColumns(intermediate, first, width, alpha, vertical, y, end, destination);
+
+            y = end;
+        }
+
+        return result;
+    }
+
+    /**
+     * Return the pixels of the image if they can be read directly as non premultiplied ARGB values.
+     *
+     * @param image The image.
+     *
+     * @return The pixels of the image or {@code null} if they must be converted.
+     */
+    private static int[] directPixels(BufferedImage image) {
+        if ((image.getType() == BufferedImage.TYPE_INT_ARGB || image.getType() == BufferedImage.TYPE_INT_RGB)
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt
+                && image.getRaster().getDataBuffer().getNumBanks() == 1
+                && image.getRaster().getParent() == null) {
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+
+        return null;
+    }
+
+    /**
+     * Filter a row of pixels in the intermediate buffer. The channels are stored premultiplied by the alpha.
+     *
+     * @param pixels       The source pixels.
+     * @param offset       The offset of the row in the source pixels.
+     * @param alpha        Indicate if the alpha channel must be used.
+     * @param filter       The horizontal filter.
+     * @param intermediate The intermediate buffer.
+     * @param out          The offset of the row in the intermediate buffer.
+     */
+    private static void filterRow(int[] pixels, int offset, boolean alpha, Filter filter, float[] intermediate, int out) {
+        for (int x = 0; x < filter.size; x++) {
+            float a = 0;
+            float r = 0;
+            float g = 0;
+            float b = 0;
+
+            int start = filter.starts[x];
+            int base = x * filter.taps;
+
+            for (int i = 0; i < filter.counts[x]; i++) {
+                int pixel = pixels[offset + start + i];
+                float weight = filter.weights[base + i];
+
+                float pa = alpha ? (pixel >>> 24) * weight : 255 * weight;
+                float factor = alpha ? pa / 255 : weight;
+
+                a += pa;
+                r += ((pixel >> 16) & 0xFF) * factor;
+                g += ((pixel >> 8) & 0xFF) * factor;
+                b += (pixel & 0xFF) * factor;
+            }
+
+            int index = out + x * 4;
+
+            intermediate[index] = a;
+            intermediate[index + 1] = r;
+            intermediate[index + 2] = g;
+            intermediate[index + 3] = b;
+        }
+    }
+
+    /**
+     * Filter the columns of the intermediate buffer in the rows of a strip of the destination.
+     *
+     * @param intermediate The intermediate buffer.
+     * @param firstRow     The source row of the first row of the intermediate buffer.
+     * @param width        The width of the destination.
+     * @param alpha        Indicate if the alpha channel must be kept.
+     * @param filter       The vertical filter.
+     * @param from         The first row of the strip.
+     * @param to           The end of the strip, exclusive.
+     * @param destination  The destination pixels.
+     */
+    private static void filterColumns(float[] intermediate, int firstRow, int width, boolean alpha, Filter filter,
+                                      int from, int to, int[] destination) {
+        int stride = width * 4;
+
+        for (int y = from; y < to; y++) {
+            int start = filter.starts[y] - firstRow;
+            int count = filter.counts[y];
+            int base = y * filter.taps;
+
+            for (int x = 0; x < width; x++) {
+                float a = 0;
+                float r = 0;
+                float g = 0;
+                float b = 0;
+
+                int index = start * stride + x * 4;
+
+                for (int i = 0; i < count; i++) {
+                    float weight = filter.weights[base + i];
+
+                    a += intermediate[index] * weight;
+                    r += intermediate[index + 1] * weight;
+                    g += intermediate[index + 2] * weight;
+                    b += intermediate[index + 3] * weight;
+
+                    index += stride;
+                }
+
+                int ia = clamp(a);
+
+                if (alpha && ia > 0 && ia < 255) {
+                    float factor = 255f / a;
+
+                    r *= factor;
+                    g *= factor;
+                    b *= factor;
+                }
+
+                destination[y * width + x] = (alpha ? ia : 0xFF) << 24 | clamp(r) << 16 | clamp(g) << 8 | clamp(b);
+            }
+        }
+    }
+
+    /**
+     * Round and clamp the channel value.
+     *
+     * @param value The channel value.
+     *
+     * @return The channel value in [0, 255].
+     */
+    private static int clamp(float value) {
+        int rounded = (int) (value + 0.5f);
+
+        return rounded < 0 ? 0 : rounded > 255 ? 255 : rounded;
+    }
+
+    /**
+     * The contributions of the source pixels to the destination pixels along one axis.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class Filter {
+        private final int size;
+        private final int taps;
+        private final int[] starts;
+        private final int[] counts;
+        private final float[] weights;
+
+        /**
+         * Create the filter.
+         *
+         * @param sourceSize      The size of the source along the axis.
+         * @param destinationSize The size of the destination along the axis.
+         * @param quality         The quality of the scaling.
+         */
+        private Filter(int sourceSize, int destinationSize, Quality quality) {
+            super();
+
+            size = destinationSize;
+
+            double scale = (double) destinationSize / sourceSize;
+
+            boolean area = quality == Quality.QUALITY && scale < 1;
+            boolean bicubic = quality == Quality.QUALITY && scale > 1;
+
+            if (area) {
+                taps = (int) Math.ceil(1 / scale) + 1;
+            } else {
+                taps = bicubic ? 4 : 2;
+            }
+
+            starts = new int[destinationSize];
+            counts = new int[destinationSize];
+            weights = new float[destinationSize * taps];
+
+            for (int i = 0; i < destinationSize; i++) {
+                if (area) {
+                    computeArea(i, scale, sourceSize);
+                } else {
+                    computeInterpolation(i, scale, sourceSize, bicubic);
+                }
+            }
+        }
+
+        /**
+         * Return the end of the source pixels contributing to the destination pixel.
+         *
+         * @param i The destination index.
+         *
+         * @return The index following the last contributing source pixel.
+         */
+        private int end(int i) {
+            return starts[i] + counts[i];
+        }
+
+        /**
+         * Compute the contributions of an area average.
+         *
+         * @param i          The destination index.
+         * @param scale      The scale factor.
+         * @param sourceSize The size of the source.
+         */
+        private void computeArea(int i, double scale, int sourceSize) {
+            double from = i / scale;
+            double to = Math.min(sourceSize, (i + 1) / scale);
+
+            int start = (int) from;
+            int end = Math.min(sourceSize, (int) Math.ceil(to));
+
+            starts[i] = start;
+            counts[i] = end - start;
+
+            double total = to - from;
+
+            for (int s = start; s < end; s++) {
+                double overlap = Math.min(s + 1, to) - Math.max(s, from);
+
+                weights[i * taps + s - start] = (float) (overlap / total);
+            }
+        }
+
+        /**
+         * Compute the contributions of a bilinear or bicubic interpolation. The source pixels outside of the image are
+         * clamped to the border.
+         *
+         * @param i          The destination index.
+         * @param scale      The scale factor.
+         * @param sourceSize The size of the source.
+         * @param bicubic    Indicate if the interpolation is bicubic.
+         */
+        private void computeInterpolation(int i, double scale, int sourceSize, boolean bicubic) {
+            double center = (i + 0.5) / scale - 0.5;
+
+            int first = (int) Math.floor(center) - (bicubic ? 1 : 0);
+
+            double[] raw = new double[taps];
+            double total = 0;
+
+            for (int t = 0; t < taps; t++) {
+                double distance = Math.abs(center - (first + t));
+
+                raw[t] = bicubic ? cubic(distance) : Math.max(0, 1 - distance);
+                total += raw[t];
+            }
+
+            int start = Math.max(0, Math.min(first, sourceSize - taps));
+
+            if (sourceSize < taps) {
+                start = 0;
+            }
+
+            int count = Math.min(taps, sourceSize);
+
+            starts[i] = start;
+            counts[i] = count;
+
+            for (int t = 0; t < taps; t++) {
+                int s = Math.max(start, Math.min(start + count - 1, first + t));
+
+                weights[i * taps + s - start] += (float) (raw[t] / total);
+            }
+        }
+
+        /**
+         * The Catmull-Rom cubic kernel.
+         *
+         * @param x The distance to the center.
+         *
+         * @return The weight.
+         */
+        private static double cubic(double x) {
+            if (x < 1) {
+                return 1.5 * x * x * x - 2.5 * x * x + 1;
+            } else if (x < 2) {
+                return -0.5 * x * x * x + 2.5 * x * x - 4 * x + 2;
+            }
+
+            return 0;
+        }
+    }
+
+    /**
+     * The buffers of a thread.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class Scratch {
+        private float[] intermediate = new float[0];
+        private int[] row = new int[0];
+
+        /**
+         * Return the intermediate buffer with at least the given size. A buffer bigger than the maximum size of a strip,
+         * needed when a single row is that wide, is not kept.
+         *
+         * @param size The needed size.
+         *
+         * @return The intermediate buffer.
+         */
+        private float[] intermediate(int size) {
+            if (size > MAX_INTERMEDIATE) {
+                return new float[size];
+            }
+
+            if (intermediate.length < size) {
+                intermediate = new float[size];
+            }
+
+            return intermediate;
+        }
+
+        /**
+         * Return the row buffer with at least the given size.
+         *
+         * @param size The needed size.
+         *
+         * @return The row buffer.
+         */
+        private int[] row(int size) {
+            if (row.length < size) {
+                row = new int[size];
+            }
+
+            return row;
+        }
+    }
+}
@@ -21,6 +21,9 @@ import org.jtheque.utils.io.FileUtils;
 import org.slf4j.LoggerFactory;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 import java.awt.AlphaComposite;
 import java.awt.Color;
@@ -31,12 +34,14 @@ import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsEnvironment;
 import java.awt.Image;
 import java.awt.Paint;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
 
 /**
  * Utility class for image processing. This class support headless environment.
@@ -100,6 +105,26 @@ public final class ImageUtils {
         return thumb;
     }
 
+    /**
+     * Create a thumbnail of an image fitting in the given box. The ratio of the image is kept. The image is scaled in
+     * a single pass, with area averaging for the reductions and bicubic interpolation for the enlargements.
+     *
+     * @param image     The source image.
+     * @param maxWidth  The maximum width of the thumbnail.
+     * @param maxHeight The maximum height of the thumbnail.
+     *
+     * @return The thumbnail
+     *
+     * @see ImageScaler
+     */
+    public static BufferedImage createThumbnail(BufferedImage image, int maxWidth, int maxHeight) {
+        if (image == null) {
+            return null;
+        }
+
+        return createCompatibleImage(ImageScaler.scaleToFit(image, maxWidth, maxHeight, ImageScaler.Quality.QUALITY));
+    }
+
     /**
      * Read an image from a file.
      *
@@ -134,6 +159,138 @@ public final class ImageUtils {
         return null;
     }
 
+    /**
+     * Read an image from a file, scaled to fit in a square of the given dimension. Only the needed pixels are decoded.
+     *
+     * @param file   The file to read from.
+     * @param maxDim The maximum width and height of the image.
+     *
+     * @return The scaled image or null if the image cannot be read.
+     *
+     * @see #readScaled(InputStream, Rectangle, int, int)
+     */
+    public static BufferedImage readScaled(File file, int maxDim) {
+        return readScaled(file, maxDim, maxDim);
+    }
+
+    /**
+     * Read an image from a file, scaled to fit in the given box. Only the needed pixels are decoded.
+     *
+     * @param file      The file to read from.
+     * @param maxWidth  The maximum width of the image.
+     * @param maxHeight The maximum height of the image.
+     *
+     * @return The scaled image or null if the image cannot be read.
+     *
+     * @see #readScaled(InputStream, Rectangle, int, int)
+     */
+    public static BufferedImage readScaled(File file, int maxWidth, int maxHeight) {
+        try {
+            return readScaled(FileUtils.asInputStream(file), null, maxWidth, maxHeight);
+        } catch (FileNotFoundException e) {
+            LoggerFactory.getLogger(ImageUtils.class).error("The specified file doesn't exist", e);
+
+            return null;
+        }
+    }
+
+    /**
+     * Read an image from a stream, scaled to fit in a square of the given dimension. Only the needed pixels are
+     * decoded.
+     *
+     * @param stream The stream to read from.
+     * @param maxDim The maximum width and height of the image.
+     *
+     * @return The scaled image or null if the image cannot be read.
+     *
+     * @see #readScaled(InputStream, Rectangle, int, int)
+     */
+    public static BufferedImage readScaled(InputStream stream, int maxDim) {
+        return readScaled(stream, null, maxDim, maxDim);
+    }
+
+    /**
+     * Read a region of an image from a stream, scaled to fit in the given box. The decoder skips the rows and columns
+     * that are not needed : the image is subsampled to about twice the requested size, so the final area averaging
+     * still has enough pixels, and the pixels outside of the region are not decoded at all. The result is a compatible
+     * image. The stream is closed after the reading.
+     *
+     * @param stream    The stream to read from.
+     * @param region    The region of the image to read, null to read the whole image.
+     * @param maxWidth  The maximum width of the image.
+     * @param maxHeight The maximum height of the image.
+     *
+     * @return The scaled image or null if the image cannot be read.
+     */
+    public static BufferedImage readScaled(InputStream stream, Rectangle region, int maxWidth, int maxHeight) {
+        if (maxWidth <= 0 || maxHeight <= 0) {
+            throw new IllegalArgumentException("The maximum size must be greater than zero. ");
+        }
+
+        ImageInputStream input = null;
+        ImageReader reader = null;
+
+        try {
+            input = ImageIO.createImageInputStream(stream);
+
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+
+            reader = readers.next();
+            reader.setInput(input, true, true);
+
+            Rectangle source = new Rectangle(0, 0, reader.getWidth(0), reader.getHeight(0));
+
+            if (region != null) {
+                source = source.intersection(region);
+
+                if (source.isEmpty()) {
+                    return null;
+                }
+            }
+
+            double ratio = Math.min((double) maxWidth / source.width, (double) maxHeight / source.height);
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(source);
+
+            if (ratio < 0.5) {
+                int subsampling = (int) (1 / (ratio * 2));
+
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+
+            BufferedImage image = reader.read(0, param);
+
+            if (image.getWidth() > maxWidth || image.getHeight() > maxHeight) {
+                image = ImageScaler.scaleToFit(image, maxWidth, maxHeight, ImageScaler.Quality.QUALITY);
+            }
+
+            return createCompatibleImage(image);
+        } catch (IOException e) {
+            LoggerFactory.getLogger(ImageUtils.class).error("Unable to read image", e);
+
+            return null;
+        } finally {
+            if (reader != null) {
+                reader.dispose();
+            }
+
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    LoggerFactory.getLogger(ImageUtils.class).error("Unable to close stream", e);
+                }
+            }
+
+            FileUtils.close(stream);
+        }
+    }
+
     /**
      * Create a compatible image.In headless mode, this method will return a simple BufferedImage of type ARGB.
      *
@@ -194,9 +351,13 @@ public final class ImageUtils {
      * @return A compatible image filled with the base image.
      */
     public static BufferedImage createCompatibleImage(BufferedImage image) {
+        if (image == null || isHeadless()) {
+            return image;
+        }
+
         GraphicsConfiguration gc = getGraphicsConfiguration();
 
-        if (image.getColorModel().equals(gc.getColorModel()) || isHeadless()) {
+        if (image.getColorModel().equals(gc.getColorModel())) {
             return image;
         } else {
             BufferedImage compatibleImage = createCompatibleImage(image.getWidth(), image.getHeight(), image.getTransparency());
@@ -0,0 +1,154 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the AtomicFileOutputStream and AtomicWriteBatch classes.
+ *
+ * @author Baptiste Wicht
+ */
+public class AtomicWriteTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaceOnClose() throws IOException {
+        File file = write(folder.newFile("config.xml"), "old");
+
+        AtomicFileOutputStream stream = FileUtils.asAtomicOutputStream(file, true);
+        stream.write("new content".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("old", read(file));
+
+        stream.close();
+
+        assertEquals("new content", read(file));
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void abort() throws IOException {
+        File file = write(folder.newFile("config.xml"), "old");
+
+        AtomicFileOutputStream stream = FileUtils.asAtomicOutputStream(file, false);
+        stream.write("partial".getBytes(StandardCharsets.UTF_8));
+        stream.abort();
+        stream.close();
+
+        assertEquals("old", read(file));
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void newFile() throws IOException {
+        File file = new File(folder.getRoot(), "created.txt");
+
+        OutputStream stream = FileUtils.asAtomicOutputStream(file, false);
+        stream.write('a');
+        stream.close();
+
+        assertEquals("a", read(file));
+    }
+
+    @Test
+    public void keepPermissions() throws IOException {
+        File file = write(folder.newFile("config.xml"), "old");
+
+        if (Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class) == null) {
+            return;
+        }
+
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+
+        Files.setPosixFilePermissions(file.toPath(), permissions);
+
+        OutputStream stream = FileUtils.asAtomicOutputStream(file, false);
+        stream.write('a');
+        stream.close();
+
+        assertEquals("a", read(file));
+        assertEquals(permissions, Files.getPosixFilePermissions(file.toPath()));
+    }
+
+    @Test
+    public void batch() throws IOException {
+        File existing = write(folder.newFile("existing.txt"), "old");
+
+        AtomicWriteBatch batch = new AtomicWriteBatch();
+
+        try {
+            for (int i = 0; i < 20; i++) {
+                OutputStream stream = batch.newOutputStream(i == 0 ? existing : new File(folder.getRoot(), i + ".txt"));
+                stream.write(("content " + i).getBytes(StandardCharsets.UTF_8));
+                stream.close();
+            }
+
+            assertEquals(20, batch.getPendingCount());
+            assertEquals("old", read(existing));
+            assertFalse(new File(folder.getRoot(), "5.txt").exists());
+
+            assertEquals(20, batch.commit());
+            assertEquals(0, batch.getPendingCount());
+        } finally {
+            batch.close();
+        }
+
+        assertEquals("content 0", read(existing));
+        assertEquals("content 19", read(new File(folder.getRoot(), "19.txt")));
+        assertEquals(20, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void batchDiscardedOnClose() throws IOException {
+        AtomicWriteBatch batch = new AtomicWriteBatch();
+
+        OutputStream stream = batch.newOutputStream(new File(folder.getRoot(), "file.txt"));
+        stream.write('a');
+        stream.close();
+
+        batch.close();
+
+        assertEquals(0, folder.getRoot().list().length);
+        assertEquals(0, batch.commit());
+    }
+
+    private static File write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
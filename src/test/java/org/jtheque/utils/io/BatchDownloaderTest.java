@@ -0,0 +1,217 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.jtheque.utils.collections.CollectionUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the BatchDownloader class against a local HTTP server.
+ *
+ * @author Baptiste Wicht
+ */
+public class BatchDownloaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public TestHttpServer server = new TestHttpServer();
+
+    private final ConcurrentMap<String, AtomicInteger> active = CollectionUtils.newConcurrentMap(4);
+    private final ConcurrentMap<String, AtomicInteger> maximums = CollectionUtils.newConcurrentMap(4);
+    private final AtomicInteger flakyRequests = new AtomicInteger();
+    private final AtomicInteger missingRequests = new AtomicInteger();
+
+    private void createContexts() {
+        server.handle("/cover", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String host = exchange.getRequestHeaders().getFirst("Host");
+
+                active.putIfAbsent(host, new AtomicInteger());
+                maximums.putIfAbsent(host, new AtomicInteger());
+
+                int current = active.get(host).incrementAndGet();
+
+                AtomicInteger maximum = maximums.get(host);
+
+                while (maximum.get() < current) {
+                    maximum.compareAndSet(maximum.get(), current);
+                }
+
+                TestHttpServer.pause(50);
+
+                active.get(host).decrementAndGet();
+
+                TestHttpServer.send(exchange, 200, exchange.getRequestURI().toString());
+            }
+        });
+
+        server.handle("/flaky", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (flakyRequests.incrementAndGet() <= 2) {
+                    TestHttpServer.send(exchange, 503, "unavailable");
+                } else {
+                    TestHttpServer.send(exchange, 200, "finally");
+                }
+            }
+        });
+
+        server.handle("/missing", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                missingRequests.incrementAndGet();
+
+                TestHttpServer.send(exchange, 404, "missing");
+            }
+        });
+    }
+
+    @Test
+    public void perHostLimit() throws Exception {
+        createContexts();
+
+        Map<String, File> downloads = CollectionUtils.newHashMap();
+
+        for (int i = 0; i < 8; i++) {
+            downloads.put(server.url("/cover?" + i), new File(folder.getRoot(), "a" + i));
+            downloads.put("http://localhost:" + server.getPort() + "/cover?" + i, new File(folder.getRoot(), "b" + i));
+        }
+
+        BatchDownloader downloader = new BatchDownloader(8, 2, 0);
+
+        try {
+            BatchDownloader.Batch batch = downloader.downloadAll(downloads);
+
+            batch.getCompletion().get(30, TimeUnit.SECONDS);
+
+            assertEquals(16, batch.getFutures().size());
+
+            for (Map.Entry<String, File> download : downloads.entrySet()) {
+                assertTrue(batch.getFutures().get(download.getKey()).isDone());
+
+                String path = download.getKey().substring(download.getKey().indexOf("/cover"));
+
+                assertEquals(path, new String(Files.readAllBytes(download.getValue().toPath()), StandardCharsets.UTF_8));
+            }
+        } finally {
+            downloader.close();
+        }
+
+        assertEquals(2, maximums.size());
+
+        for (AtomicInteger maximum : maximums.values()) {
+            assertTrue(maximum.get() <= 2);
+        }
+    }
+
+    @Test
+    public void retries() throws Exception {
+        createContexts();
+
+        BatchDownloader downloader = new BatchDownloader(2, 2, 3);
+
+        try {
+            File destination = new File(folder.getRoot(), "flaky");
+
+            assertEquals(7L, (long) downloader.download(new URL(server.url("/flaky")), destination).get(30, TimeUnit.SECONDS));
+            assertEquals(3, flakyRequests.get());
+
+            try {
+                downloader.download(new URL(server.url("/missing")), new File(folder.getRoot(), "missing")).get(30, TimeUnit.SECONDS);
+
+                fail("The download must fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof FileException);
+            }
+
+            assertEquals(1, missingRequests.get());
+        } finally {
+            downloader.close();
+        }
+    }
+
+    @Test
+    public void invalidUrl() throws Exception {
+        createContexts();
+
+        BatchDownloader downloader = new BatchDownloader(2, 2, 0);
+
+        try {
+            Map<String, File> downloads = CollectionUtils.newHashMap();
+            downloads.put("not an url", new File(folder.getRoot(), "invalid"));
+
+            BatchDownloader.Batch batch = downloader.downloadAll(downloads);
+
+            assertTrue(batch.getCompletion().isCompletedExceptionally());
+        } finally {
+            downloader.close();
+        }
+    }
+
+    @Test
+    public void closeCompletesWaitingDownloads() throws Exception {
+        createContexts();
+
+        Map<String, File> downloads = CollectionUtils.newHashMap();
+
+        for (int i = 0; i < 4; i++) {
+            downloads.put(server.url("/cover?" + i), new File(folder.getRoot(), "c" + i));
+        }
+
+        BatchDownloader downloader = new BatchDownloader(2, 1, 0);
+
+        BatchDownloader.Batch batch = downloader.downloadAll(downloads);
+
+        downloader.close();
+
+        batch.getCompletion().get(30, TimeUnit.SECONDS);
+
+        for (File file : downloads.values()) {
+            assertTrue(file.exists());
+        }
+
+        try {
+            downloader.download(new URL(server.url("/cover")), new File(folder.getRoot(), "late")).get(30, TimeUnit.SECONDS);
+
+            fail("The download must be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+}
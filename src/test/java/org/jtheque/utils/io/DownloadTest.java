@@ -0,0 +1,180 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the downloads of WebUtils against a local HTTP server.
+ *
+ * @author Baptiste Wicht
+ */
+public class DownloadTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public TestHttpServer server = new TestHttpServer();
+
+    private final byte[] data = new byte[300 * 1024];
+    private final List<String> ranges = new CopyOnWriteArrayList<String>();
+
+    private void createContexts() {
+        new Random(42).nextBytes(data);
+
+        server.handle("/chunked", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, 0);
+
+                OutputStream body = exchange.getResponseBody();
+
+                for (int i = 0; i < data.length; i += 10000) {
+                    body.write(data, i, Math.min(10000, data.length - i));
+                }
+
+                exchange.close();
+            }
+        });
+
+        server.handle("/broken", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String range = exchange.getRequestHeaders().getFirst("Range");
+
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+
+                if (range == null) {
+                    exchange.sendResponseHeaders(200, data.length);
+
+                    try {
+                        exchange.getResponseBody().write(data, 0, data.length / 3);
+                        exchange.close();
+                    } catch (IOException e) {
+                        //The connection is closed before the end of the body
+                    }
+
+                    return;
+                }
+
+                ranges.add(range + ' ' + exchange.getRequestHeaders().getFirst("If-Range"));
+
+                int first = Integer.parseInt(range.substring(6, range.indexOf('-')));
+
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + first + '-' + (data.length - 1) + '/' + data.length);
+                exchange.sendResponseHeaders(206, data.length - first);
+                exchange.getResponseBody().write(data, first, data.length - first);
+                exchange.close();
+            }
+        });
+
+        server.handle("/missing", TestHttpServer.status(404));
+        server.handle("/error", TestHttpServer.status(500));
+    }
+
+    @Test
+    public void unknownLength() throws Exception {
+        createContexts();
+
+        File destination = new File(folder.getRoot(), "chunked.bin");
+
+        WebUtils.downloadFile(server.url("/chunked"), destination.getAbsolutePath());
+
+        assertArrayEquals(data, Files.readAllBytes(destination.toPath()));
+    }
+
+    @Test
+    public void resume() throws Exception {
+        createContexts();
+
+        File destination = new File(folder.getRoot(), "broken.bin");
+
+        assertEquals(data.length, WebUtils.downloadFile(new URL(server.url("/broken")), destination, 2));
+
+        assertArrayEquals(data, Files.readAllBytes(destination.toPath()));
+
+        assertEquals(1, ranges.size());
+        assertEquals("bytes=" + data.length / 3 + "- \"v1\"", ranges.get(0));
+    }
+
+    @Test
+    public void replaceExisting() throws Exception {
+        createContexts();
+
+        File destination = folder.newFile("chunked.bin");
+
+        Files.write(destination.toPath(), new byte[data.length * 2]);
+
+        WebUtils.downloadFile(new URL(server.url("/chunked")), destination, 0);
+
+        assertArrayEquals(data, Files.readAllBytes(destination.toPath()));
+    }
+
+    @Test
+    public void notFound() throws Exception {
+        createContexts();
+
+        File destination = new File(folder.getRoot(), "missing.bin");
+
+        try {
+            WebUtils.downloadFile(new URL(server.url("/missing")), destination, 3);
+
+            fail("The download must fail");
+        } catch (FileException e) {
+            assertFalse(destination.exists());
+        }
+    }
+
+    @Test
+    public void keepExistingOnFailure() throws Exception {
+        createContexts();
+
+        File destination = folder.newFile("existing.bin");
+
+        byte[] existing = {1, 2, 3};
+
+        Files.write(destination.toPath(), existing);
+
+        for (String path : new String[]{"/missing", "/error"}) {
+            try {
+                WebUtils.downloadFile(new URL(server.url(path)), destination, 0);
+
+                fail("The download must fail");
+            } catch (FileException e) {
+                assertArrayEquals(existing, Files.readAllBytes(destination.toPath()));
+            }
+        }
+
+        assertEquals(1, folder.getRoot().list().length);
+    }
+}
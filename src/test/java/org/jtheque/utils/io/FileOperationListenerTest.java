@@ -0,0 +1,153 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.count.Metrics;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the instrumentation of the FileUtils operations.
+ *
+ * @author Baptiste Wicht
+ */
+public class FileOperationListenerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Object[]> reports = new CopyOnWriteArrayList<Object[]>();
+
+    private final FileOperationListener listener = new FileOperationListener() {
+        @Override
+        public void operationCompleted(FileOperation operation, long bytes, int files, long nanos) {
+            reports.add(new Object[]{operation, bytes, files, nanos});
+        }
+    };
+
+    @After
+    public void removeListener() {
+        FileUtils.setOperationListener(null);
+    }
+
+    @Test
+    public void copyDirectory() throws IOException, CopyException {
+        File source = folder.newFolder("source");
+        File sub = new File(source, "sub");
+        assertTrue(sub.mkdir());
+
+        write(new File(source, "a.txt"), 100);
+        write(new File(sub, "b.txt"), 250);
+
+        FileUtils.setOperationListener(listener);
+
+        File target = new File(folder.getRoot(), "target");
+        FileUtils.copy(source, target);
+
+        assertEquals(250, new File(target, "sub/b.txt").length());
+        assertEquals(1, reports.size());
+        assertReport(reports.get(0), FileOperation.COPY_DIRECTORY, 350, 2);
+    }
+
+    @Test
+    public void zipAndUnzip() throws IOException {
+        File a = write(folder.newFile("a.txt"), 1000);
+        File b = write(folder.newFile("b.txt"), 24);
+
+        FileUtils.setOperationListener(listener);
+
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        FileUtils.zip(Arrays.asList(a, b), zip);
+
+        File destination = folder.newFolder("unzipped");
+        FileUtils.unzip(new ByteArrayInputStream(zip.toByteArray()), destination.getAbsolutePath());
+
+        assertEquals(2, reports.size());
+        assertReport(reports.get(0), FileOperation.ZIP, 1024, 2);
+        assertReport(reports.get(1), FileOperation.UNZIP, 1024, 2);
+    }
+
+    @Test
+    public void readLines() {
+        FileUtils.setOperationListener(listener);
+
+        FileUtils.getLinesOf(new ByteArrayInputStream("first\nsecond\n".getBytes()));
+
+        assertEquals(1, reports.size());
+        assertReport(reports.get(0), FileOperation.READ_LINES, 13, 1);
+    }
+
+    @Test
+    public void disabled() throws IOException, CopyException {
+        File source = write(folder.newFile("a.txt"), 10);
+
+        FileUtils.setOperationListener(listener);
+        FileUtils.setOperationListener(null);
+
+        FileUtils.copy(source, new File(folder.getRoot(), "b.txt"));
+
+        assertTrue(reports.isEmpty());
+    }
+
+    @Test
+    public void metrics() throws IOException, CopyException {
+        File source = write(folder.newFile("a.txt"), 10);
+
+        Metrics metrics = new Metrics();
+
+        FileUtils.setOperationListener(new MetricsFileOperationListener(metrics));
+
+        FileUtils.copy(source, new File(folder.getRoot(), "b.txt"));
+        FileUtils.copy(source, new File(folder.getRoot(), "c.txt"));
+
+        assertEquals(2, metrics.timer("io.copy").getCount());
+        assertEquals(20, metrics.meter("io.copy.bytes").getCount());
+        assertEquals(2, metrics.counter("io.copy.files").getValue());
+    }
+
+    private static void assertReport(Object[] report, FileOperation operation, long bytes, int files) {
+        assertEquals(operation, report[0]);
+        assertEquals(bytes, report[1]);
+        assertEquals(files, report[2]);
+        assertTrue((Long) report[3] > 0);
+    }
+
+    private static File write(File file, int length) throws IOException {
+        FileOutputStream stream = new FileOutputStream(file);
+
+        try {
+            stream.write(new byte[length]);
+        } finally {
+            stream.close();
+        }
+
+        return file;
+    }
+}
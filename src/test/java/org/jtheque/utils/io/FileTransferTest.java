@@ -0,0 +1,142 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the chunked file copies of FileUtils.
+ *
+ * @author Baptiste Wicht
+ */
+public class FileTransferTest {
+    private static final long SIZE = 40L * 1024 * 1024 + 123;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void fullCopyWithProgress() throws IOException, CopyException {
+        File source = createFile("source", SIZE);
+        File target = new File(folder.getRoot(), "target");
+
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong last = new AtomicLong();
+
+        long copied = FileUtils.copy(source, target, new TransferListener() {
+            @Override
+            public boolean transferred(long transferred, long total) {
+                assertEquals(SIZE, total);
+                assertTrue(transferred > last.get());
+
+                last.set(transferred);
+                calls.incrementAndGet();
+
+                return true;
+            }
+        }, true);
+
+        assertEquals(SIZE, copied);
+        assertEquals(SIZE, target.length());
+        assertEquals(SIZE, last.get());
+        assertTrue(calls.get() > 1);
+    }
+
+    @Test
+    public void cancel() throws IOException {
+        File source = createFile("source", SIZE);
+        File target = new File(folder.getRoot(), "target");
+
+        try {
+            FileUtils.copy(source, target, new TransferListener() {
+                @Override
+                public boolean transferred(long transferred, long total) {
+                    return false;
+                }
+            }, false);
+
+            fail("The copy must be cancelled");
+        } catch (CopyException e) {
+            assertFalse(target.exists());
+        }
+    }
+
+    @Test
+    public void truncatedSource() throws IOException {
+        final File source = createFile("source", SIZE);
+        File target = new File(folder.getRoot(), "target");
+
+        try {
+            FileUtils.copy(source, target, new TransferListener() {
+                @Override
+                public boolean transferred(long transferred, long total) {
+                    try {
+                        RandomAccessFile raf = new RandomAccessFile(source, "rw");
+
+                        try {
+                            raf.setLength(1024);
+                        } finally {
+                            raf.close();
+                        }
+                    } catch (IOException e) {
+                        fail(e.getMessage());
+                    }
+
+                    return true;
+                }
+            }, false);
+
+            fail("A short copy must fail");
+        } catch (CopyException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void emptyFile() throws IOException, CopyException {
+        File source = folder.newFile("empty");
+        File target = new File(folder.getRoot(), "target");
+
+        assertEquals(0, FileUtils.copy(source, target, null, false));
+        assertTrue(target.exists());
+    }
+
+    private File createFile(String name, long size) throws IOException {
+        File file = folder.newFile(name);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            raf.setLength(size);
+            raf.seek(size - 1);
+            raf.write(42);
+        } finally {
+            raf.close();
+        }
+
+        return file;
+    }
+}
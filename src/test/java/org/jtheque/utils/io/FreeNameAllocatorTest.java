@@ -0,0 +1,153 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.collections.CollectionUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the FreeNameAllocator class.
+ *
+ * @author Baptiste Wicht
+ */
+public class FreeNameAllocatorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void getFreeName() throws IOException {
+        FreeNameAllocator allocator = new FreeNameAllocator(folder.getRoot());
+
+        assertEquals("movie.avi", allocator.getFreeName("movie.avi"));
+
+        folder.newFile("movie.avi");
+        folder.newFile("movie[1].avi");
+        folder.newFile("movie[2].avi");
+        folder.newFile("movie[4].avi");
+        folder.newFile("movie[x].avi");
+
+        allocator = new FreeNameAllocator(folder.getRoot());
+
+        assertEquals("movie[3].avi", allocator.getFreeName("movie.avi"));
+        assertEquals("movie[1][1].avi", allocator.getFreeName("movie[1].avi"));
+        assertEquals("movie[3].avi", FileUtils.getFreeName(folder.getRoot().getAbsolutePath(), "movie.avi"));
+        assertEquals("other.avi", FileUtils.getFreeName(folder.getRoot().getAbsolutePath(), "other.avi"));
+    }
+
+    @Test
+    public void noExtension() throws IOException {
+        folder.newFile("README");
+
+        assertEquals("README[1]", new FreeNameAllocator(folder.getRoot()).getFreeName("README"));
+    }
+
+    @Test
+    public void caseInsensitive() throws IOException {
+        folder.newFile("photo.JPG");
+        folder.newFile("Photo[1].jpg");
+
+        FreeNameAllocator allocator = new FreeNameAllocator(folder.getRoot(), false);
+
+        assertEquals("photo[2].jpg", allocator.getFreeName("photo.jpg"));
+        assertEquals("PHOTO[2].JPG", allocator.getFreeName("PHOTO.JPG"));
+    }
+
+    @Test
+    public void caseSensitive() throws IOException {
+        folder.newFile("photo.JPG");
+
+        FreeNameAllocator allocator = new FreeNameAllocator(folder.getRoot(), true);
+
+        assertEquals("photo.jpg", allocator.getFreeName("photo.jpg"));
+        assertEquals("photo[1].JPG", allocator.getFreeName("photo.JPG"));
+    }
+
+    @Test
+    public void createdAfterListing() throws IOException {
+        FreeNameAllocator allocator = new FreeNameAllocator(folder.getRoot());
+
+        assertEquals("movie.avi", allocator.getFreeName("movie.avi"));
+
+        folder.newFile("movie.avi");
+
+        assertEquals("movie[1].avi", allocator.getFreeName("movie.avi"));
+    }
+
+    @Test
+    public void reserve() throws IOException {
+        folder.newFile("movie.avi");
+
+        FreeNameAllocator allocator = new FreeNameAllocator(folder.getRoot());
+
+        assertEquals("movie[1].avi", allocator.getFreeName("movie.avi"));
+
+        folder.newFile("movie[1].avi");
+
+        File reserved = allocator.reserve("movie.avi");
+
+        assertEquals("movie[2].avi", reserved.getName());
+        assertTrue(reserved.exists());
+        assertEquals("movie[3].avi", allocator.reserve("movie.avi").getName());
+    }
+
+    @Test
+    public void concurrentReservations() throws Exception {
+        final FreeNameAllocator allocator = new FreeNameAllocator(folder.getRoot());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            Collection<Future<File>> futures = CollectionUtils.newList();
+
+            for (int i = 0; i < 200; i++) {
+                futures.add(executor.submit(new Callable<File>() {
+                    @Override
+                    public File call() throws IOException {
+                        return allocator.reserve("file.txt");
+                    }
+                }));
+            }
+
+            Set<String> names = ConcurrentHashMap.newKeySet();
+
+            for (Future<File> future : futures) {
+                assertTrue(names.add(future.get().getName()));
+            }
+
+            assertEquals(200, names.size());
+            assertTrue(names.contains("file.txt"));
+            assertTrue(names.contains("file[199].txt"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
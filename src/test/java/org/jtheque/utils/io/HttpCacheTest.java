@@ -0,0 +1,182 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the HttpCache class against a local HTTP server.
+ *
+ * @author Baptiste Wicht
+ */
+public class HttpCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public TestHttpServer server = new TestHttpServer();
+
+    private final AtomicInteger fullResponses = new AtomicInteger();
+
+    private volatile String version = "v1";
+
+    private void createContexts() {
+        server.handle("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String etag = '"' + version + '"';
+
+                exchange.getResponseHeaders().add("ETag", etag);
+
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    fullResponses.incrementAndGet();
+
+                    byte[] body = (exchange.getRequestURI().getPath() + ' ' + version).getBytes(StandardCharsets.UTF_8);
+
+                    exchange.sendResponseHeaders(200, body.length);
+                    exchange.getResponseBody().write(body);
+                }
+
+                exchange.close();
+            }
+        });
+
+        server.handle("/truncated", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, 1000);
+
+                try {
+                    exchange.getResponseBody().write(new byte[100]);
+                    exchange.close();
+                } catch (IOException e) {
+                    //The connection is closed before the end of the body
+                }
+            }
+        });
+    }
+
+    @Test
+    public void conditionalRequests() throws Exception {
+        createContexts();
+
+        HttpCache cache = new HttpCache(folder.newFolder("cache"), 1024 * 1024);
+
+        File destination = new File(folder.getRoot(), "descriptor.xml");
+        URL url = new URL(server.url("/descriptor.xml"));
+
+        assertFalse(WebUtils.downloadFile(url, destination, cache));
+        assertTrue(WebUtils.downloadFile(url, destination, cache));
+
+        assertEquals("/descriptor.xml v1", read(destination));
+        assertEquals(1, fullResponses.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        version = "v2";
+
+        assertFalse(cache.download(url, destination));
+        assertEquals("/descriptor.xml v2", read(destination));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void persistent() throws Exception {
+        createContexts();
+
+        File cacheFolder = folder.newFolder("cache");
+
+        File destination = new File(folder.getRoot(), "descriptor.xml");
+        URL url = new URL(server.url("/descriptor.xml"));
+
+        assertFalse(new HttpCache(cacheFolder, 1024 * 1024).download(url, destination));
+
+        HttpCache cache = new HttpCache(cacheFolder, 1024 * 1024);
+
+        assertTrue(cache.getSize() > 0);
+        assertTrue(cache.download(url, destination));
+        assertEquals(1, fullResponses.get());
+    }
+
+    @Test
+    public void eviction() throws Exception {
+        createContexts();
+
+        File destination = new File(folder.getRoot(), "file");
+
+        HttpCache sizer = new HttpCache(folder.newFolder("sizer"), 1024 * 1024);
+        sizer.download(new URL(server.url("/x")), destination);
+
+        long maximumSize = sizer.getSize() * 5 / 2;
+
+        HttpCache cache = new HttpCache(folder.newFolder("cache"), maximumSize);
+
+        cache.download(new URL(server.url("/a")), destination);
+        cache.download(new URL(server.url("/b")), destination);
+        cache.download(new URL(server.url("/a")), destination);
+        cache.download(new URL(server.url("/c")), destination);
+
+        assertTrue(cache.getSize() <= maximumSize);
+
+        assertTrue(cache.download(new URL(server.url("/a")), destination));
+        assertFalse(cache.download(new URL(server.url("/b")), destination));
+
+        cache.clear();
+
+        assertEquals(0, cache.getSize());
+        assertFalse(cache.download(new URL(server.url("/a")), destination));
+    }
+
+    @Test
+    public void truncatedBody() throws Exception {
+        createContexts();
+
+        File cacheFolder = folder.newFolder("cache");
+
+        HttpCache cache = new HttpCache(cacheFolder, 1024 * 1024);
+
+        try {
+            cache.download(new URL(server.url("/truncated")), new File(folder.getRoot(), "truncated"));
+
+            fail("A truncated body must not be cached");
+        } catch (FileException e) {
+            assertEquals(0, cacheFolder.list().length);
+            assertEquals(0, cache.getSize());
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
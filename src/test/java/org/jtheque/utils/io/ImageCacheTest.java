@@ -0,0 +1,265 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the ImageCache class.
+ *
+ * @author Baptiste Wicht
+ */
+public class ImageCacheTest {
+    @Test
+    public void hitsAndMisses() throws IOException {
+        ImageCache cache = new ImageCache();
+
+        BufferedImage image = cache.get("image", imageStream(10, 10));
+
+        assertNotNull(image);
+        assertEquals(10, image.getWidth());
+
+        assertSame(image, cache.get("image", imageStream(10, 10)));
+
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertTrue(cache.getTotalLoadTime() > 0);
+        assertEquals(ImageCache.weightOf(image), cache.getWeight());
+    }
+
+    @Test
+    public void weightOfRaster() {
+        assertEquals(400, ImageCache.weightOf(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB)));
+        assertEquals(300, ImageCache.weightOf(new BufferedImage(10, 10, BufferedImage.TYPE_3BYTE_BGR)));
+        assertEquals(200, ImageCache.weightOf(new BufferedImage(10, 10, BufferedImage.TYPE_USHORT_GRAY)));
+    }
+
+    @Test
+    public void budget() throws IOException {
+        BufferedImage sample = ImageIO.read(imageStream(10, 10));
+
+        ImageCache cache = new ImageCache(25, ImageCache.weightOf(sample) * 3);
+
+        for (int i = 0; i < 10; i++) {
+            cache.get("image" + i, imageStream(10, 10));
+        }
+
+        assertTrue(cache.getWeight() <= cache.getMaximumWeight());
+        assertEquals(7, cache.getEvictionCount());
+    }
+
+    @Test
+    public void frequentImagesAreProtected() throws IOException {
+        BufferedImage sample = ImageIO.read(imageStream(10, 10));
+
+        ImageCache cache = new ImageCache(25, ImageCache.weightOf(sample) * 4);
+
+        BufferedImage frequent = cache.get("frequent", imageStream(10, 10));
+        cache.get("frequent", imageStream(10, 10));
+
+        for (int i = 0; i < 10; i++) {
+            cache.get("image" + i, imageStream(10, 10));
+        }
+
+        assertSame(frequent, cache.get("frequent", imageStream(10, 10)));
+    }
+
+    @Test
+    public void invalidate() throws IOException {
+        ImageCache cache = new ImageCache();
+
+        BufferedImage image = cache.get("image", imageStream(10, 10));
+
+        cache.invalidate("image");
+
+        assertEquals(0, cache.getWeight());
+        assertNotSame(image, cache.get("image", imageStream(10, 10)));
+    }
+
+    @Test
+    public void getAsync() throws Exception {
+        ImageCache cache = new ImageCache();
+
+        CompletableFuture<BufferedImage> first = cache.getAsync("image", new SimpleStream(imageStream(10, 10)));
+        CompletableFuture<BufferedImage> second = cache.getAsync("image", new SimpleStream(imageStream(10, 10)));
+
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, cache.getMissCount());
+        assertSame(first.get(), cache.get("image", imageStream(10, 10)));
+    }
+
+    @Test
+    public void cancelAsync() throws Exception {
+        ImageCache cache = new ImageCache();
+
+        final CountDownLatch opened = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<BufferedImage> request = cache.getAsync("image", new OnDemandStream() {
+            @Override
+            public InputStream get() {
+                opened.countDown();
+
+                try {
+                    release.await();
+
+                    return imageStream(10, 10);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        assertTrue(opened.await(5, TimeUnit.SECONDS));
+
+        request.cancel(true);
+
+        release.countDown();
+
+        assertTrue(request.isCancelled());
+        assertEquals(0, cache.getWeight());
+
+        BufferedImage image = cache.getAsync("image", new SimpleStream(imageStream(20, 20))).get(5, TimeUnit.SECONDS);
+
+        assertEquals(20, image.getWidth());
+    }
+
+    @Test
+    public void cancelWhileRequested() throws Exception {
+        final ImageCache cache = new ImageCache();
+
+        for (int i = 0; i < 2000; i++) {
+            final String path = "image" + i;
+
+            final CountDownLatch release = new CountDownLatch(1);
+
+            final CompletableFuture<BufferedImage> first = cache.getAsync(path, new ImageStream(10, 10, release));
+
+            final CyclicBarrier barrier = new CyclicBarrier(2);
+
+            Thread canceller = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        barrier.await();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+
+                    first.cancel(true);
+                }
+            });
+
+            canceller.start();
+
+            barrier.await();
+
+            CompletableFuture<BufferedImage> second = cache.getAsync(path, new ImageStream(10, 10, null));
+
+            canceller.join();
+            release.countDown();
+
+            assertEquals(10, second.get(5, TimeUnit.SECONDS).getWidth());
+        }
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void asyncFailure() throws Exception {
+        new ImageCache().getAsync("image", new OnDemandStream() {
+            @Override
+            public InputStream get() {
+                throw new IllegalStateException("Unable to open the stream");
+            }
+        }).get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * An on demand stream opening a new stream on a PNG image at each call, optionally once a latch is released.
+     *
+     * @author Baptiste Wicht
+     */
+    private static final class ImageStream implements OnDemandStream {
+        private final int width;
+        private final int height;
+        private final CountDownLatch release;
+
+        /**
+         * Create a new ImageStream.
+         *
+         * @param width   The width of the image.
+         * @param height  The height of the image.
+         * @param release The latch to wait for before opening the stream or {@code null}.
+         */
+        private ImageStream(int width, int height, CountDownLatch release) {
+            super();
+
+            this.width = width;
+            this.height = height;
+            this.release = release;
+        }
+
+        @Override
+        public InputStream get() {
+            try {
+                if (release != null) {
+                    release.await();
+                }
+
+                return imageStream(width, height);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Return a stream on a PNG image of the given size.
+     *
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     *
+     * @return A stream on the encoded image.
+     *
+     * @throws IOException If the image cannot be encoded.
+     */
+    static InputStream imageStream(int width, int height) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", output);
+
+        return new ByteArrayInputStream(output.toByteArray());
+    }
+}
@@ -0,0 +1,180 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Scanner;
+
+/**
+ * A simple benchmark comparing the LineReader to the Scanner previously used by FileUtils.getLinesOf. This is not a
+ * unit test, it must be launched manually.
+ *
+ * @author Baptiste Wicht
+ */
+public final class LineReaderBenchmark {
+    private static final int WARMUP = 3;
+    private static final int RUNS = 5;
+    private static final int LINES = 1000000;
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private LineReaderBenchmark() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Launch the benchmark.
+     *
+     * @param args The arguments, not used.
+     *
+     * @throws IOException If the test file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final File file = createFile();
+
+        System.out.println("File of " + LINES + " lines, " + file.length() / 1024 + " KB");
+
+        try {
+            benchmark("  Scanner               ", new Task() {
+                @Override
+                public long run() throws IOException {
+                    long count = 0;
+
+                    Scanner scanner = new Scanner(new BufferedInputStream(new FileInputStream(file)));
+
+                    try {
+                        while (scanner.hasNextLine()) {
+                            count += scanner.nextLine().length();
+                        }
+                    } finally {
+                        scanner.close();
+                    }
+
+                    return count;
+                }
+            });
+
+            benchmark("  LineReader.readLine   ", new Task() {
+                @Override
+                public long run() throws IOException {
+                    long count = 0;
+
+                    LineReader reader = new LineReader(file);
+
+                    try {
+                        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                            count += line.length();
+                        }
+                    } finally {
+                        reader.close();
+                    }
+
+                    return count;
+                }
+            });
+
+            benchmark("  FileUtils.forEachLine ", new Task() {
+                @Override
+                public long run() throws IOException {
+                    final long[] count = new long[1];
+
+                    FileUtils.forEachLine(file, new LineHandler() {
+                        @Override
+                        public void handle(CharSequence line) {
+                            count[0] += line.length();
+                        }
+                    });
+
+                    return count[0];
+                }
+            });
+        } finally {
+            FileUtils.delete(file);
+        }
+    }
+
+    /**
+     * Run the task and print the mean time of a run.
+     *
+     * @param name The name of the task.
+     * @param task The task to benchmark.
+     *
+     * @throws IOException If the task fails.
+     */
+    private static void benchmark(String name, Task task) throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+
+        long start = System.nanoTime();
+        long result = 0;
+
+        for (int i = 0; i < RUNS; i++) {
+            result += task.run();
+        }
+
+        long mean = (System.nanoTime() - start) / RUNS;
+
+        System.out.println(name + mean / 1000000 + " ms (" + result / RUNS + " chars)");
+    }
+
+    /**
+     * Create the test file.
+     *
+     * @return The test file.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    private static File createFile() throws IOException {
+        File file = File.createTempFile("lines", ".txt");
+
+        OutputStream out = FileUtils.asOutputStream(file);
+
+        try {
+            for (int i = 0; i < LINES; i++) {
+                out.write(("2010-05-12 12:00:00 INFO Line number " + i + " of the benchmark file\n")
+                        .getBytes(Charset.defaultCharset()));
+            }
+        } finally {
+            out.close();
+        }
+
+        return file;
+    }
+
+    /**
+     * A task of the benchmark.
+     *
+     * @author Baptiste Wicht
+     */
+    private interface Task {
+        /**
+         * Run the task.
+         *
+         * @return The number of chars read.
+         *
+         * @throws IOException If an error occurs.
+         */
+        long run() throws IOException;
+    }
+}
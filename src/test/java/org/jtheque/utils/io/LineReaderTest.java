@@ -0,0 +1,143 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the LineReader class.
+ *
+ * @author Baptiste Wicht
+ */
+public class LineReaderTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void terminators() throws IOException {
+        assertEquals(Arrays.asList("a", "b", "c", "", "d"), readAll("a\nb\r\nc\r\rd"));
+        assertEquals(Arrays.asList("a", ""), readAll("a\n\n"));
+        assertEquals(Arrays.asList("a"), readAll("a\n"));
+        assertEquals(Arrays.<String>asList(), readAll(""));
+    }
+
+    @Test
+    public void longLinesAcrossBuffers() throws IOException {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 200000; i++) {
+            builder.append('\u00e9');
+        }
+
+        String longLine = builder.toString();
+
+        List<String> lines = readAll("first\r" + longLine + "\r\nlast");
+
+        assertEquals(Arrays.asList("first", longLine, "last"), lines);
+    }
+
+    @Test(timeout = 10000)
+    public void surrogatePairAcrossBuffers() throws IOException {
+        for (int length : new int[]{8191, 64 * 1024 - 2, 64 * 1024 - 1, 64 * 1024}) {
+            StringBuilder builder = new StringBuilder(length + 8);
+
+            for (int i = 0; i < length; i++) {
+                builder.append('a');
+            }
+
+            String line = builder.append("\ud83d\ude00").toString();
+
+            assertEquals(Arrays.asList(line, "b"), readAll(line + "\nb"));
+            assertEquals(Arrays.asList(line), readAll(line));
+        }
+    }
+
+    @Test
+    public void callback() throws IOException {
+        LineReader reader = new LineReader(new ByteArrayInputStream("abc\nde\nf".getBytes(UTF8)), UTF8);
+
+        final AtomicLong chars = new AtomicLong();
+
+        long count = reader.forEachLine(new LineHandler() {
+            @Override
+            public void handle(CharSequence line) {
+                chars.addAndGet(line.length());
+            }
+        });
+
+        assertEquals(3, count);
+        assertEquals(6, chars.get());
+    }
+
+    @Test
+    public void streamOfFile() throws IOException {
+        File file = folder.newFile("lines.txt");
+
+        FileOutputStream out = new FileOutputStream(file);
+
+        try {
+            for (int i = 0; i < 10000; i++) {
+                out.write(("line " + i + '\n').getBytes(UTF8));
+            }
+        } finally {
+            out.close();
+        }
+
+        Stream<String> lines = FileUtils.lines(file);
+
+        try {
+            assertEquals(10, lines.filter(l -> l.endsWith("999")).count());
+        } finally {
+            lines.close();
+        }
+
+        assertEquals(10000, FileUtils.getLinesOf(file).size());
+    }
+
+    @Test
+    public void missingResource() {
+        assertEquals("", FileUtils.getTextOfSystemResource("missing"));
+        assertTrue(FileUtils.getLinesOf(ClassLoader.getSystemResourceAsStream("missing")).isEmpty());
+    }
+
+    private static List<String> readAll(String content) throws IOException {
+        Stream<String> lines = FileUtils.lines(new ByteArrayInputStream(content.getBytes(UTF8)), UTF8);
+
+        try {
+            return lines.collect(Collectors.toList());
+        } finally {
+            lines.close();
+        }
+    }
+}
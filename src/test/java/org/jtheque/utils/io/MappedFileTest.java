@@ -0,0 +1,121 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the mapped read paths of FileUtils.
+ *
+ * @author Baptiste Wicht
+ */
+public class MappedFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void windows() throws IOException {
+        byte[] content = new byte[10000];
+
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+
+        File file = write("data", content);
+
+        MappedFile mapped = new MappedFile(file, 4096);
+
+        try {
+            assertEquals(10000, mapped.size());
+            assertEquals(3, mapped.getWindowCount());
+            assertEquals(4096, mapped.getWindow(0).remaining());
+            assertEquals(10000 - 8192, mapped.getWindow(2).remaining());
+
+            for (int i = 0; i < content.length; i += 7) {
+                assertEquals(content[i], mapped.get(i));
+            }
+        } finally {
+            mapped.close();
+        }
+    }
+
+    @Test
+    public void map() throws IOException {
+        File file = write("data", new byte[]{1, 2, 3});
+
+        ByteBuffer buffer = FileUtils.map(file);
+
+        assertEquals(3, buffer.remaining());
+        assertEquals(3, buffer.get(2));
+
+        assertEquals(0, FileUtils.map(folder.newFile("empty")).remaining());
+    }
+
+    @Test
+    public void mapText() throws IOException {
+        File latin = write("latin", "caf\u00e9 au lait".getBytes(StandardCharsets.ISO_8859_1));
+
+        CharSequence text = FileUtils.mapText(latin, StandardCharsets.ISO_8859_1);
+
+        assertEquals("caf\u00e9 au lait", text.toString());
+        assertEquals("au", text.subSequence(5, 7).toString());
+        assertEquals('\u00e9', text.charAt(3));
+
+        File utf8 = write("utf8", "caf\u00e9 au lait".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("caf\u00e9 au lait", FileUtils.mapText(utf8, StandardCharsets.UTF_8).toString());
+
+        CharSequence ascii = FileUtils.mapText(latin, StandardCharsets.US_ASCII);
+
+        assertEquals(new String("caf\u00e9 au lait".getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.US_ASCII),
+                ascii.toString());
+        assertEquals('\uFFFD', ascii.charAt(3));
+        assertEquals("\uFFFD ", ascii.subSequence(3, 5).toString());
+    }
+
+    @Test
+    public void getTextOf() throws IOException {
+        File file = write("text", "\nfirst\r\nsecond\n\nthird\n".getBytes(Charset.defaultCharset()));
+
+        assertEquals("\nfirst\nsecond\n\nthird", FileUtils.getTextOf(file.getAbsolutePath()));
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        File file = folder.newFile(name);
+
+        FileOutputStream stream = new FileOutputStream(file);
+
+        try {
+            stream.write(content);
+        } finally {
+            stream.close();
+        }
+
+        return file;
+    }
+}
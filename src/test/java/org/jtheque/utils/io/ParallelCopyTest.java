@@ -0,0 +1,119 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the parallel directory copy of FileUtils.
+ *
+ * @author Baptiste Wicht
+ */
+public class ParallelCopyTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void copyTree() throws IOException, CopyException {
+        File source = folder.newFolder("source");
+
+        int expectedFiles = 0;
+
+        for (int d = 0; d < 5; d++) {
+            File directory = new File(source, "dir" + d + "/sub");
+            assertTrue(directory.mkdirs());
+
+            for (int f = 0; f < 20; f++) {
+                write(new File(directory, "file" + f), d * 100 + f);
+                expectedFiles++;
+            }
+        }
+
+        final Set<File> copied = ConcurrentHashMap.newKeySet();
+        final AtomicLong lastFiles = new AtomicLong();
+
+        File target = new File(folder.getRoot(), "target");
+
+        FileUtils.copyDirectory(source, target, 4, new CopyProgressListener() {
+            @Override
+            public void fileCopied(File file, long files, long bytes) {
+                copied.add(file);
+                lastFiles.accumulateAndGet(files, Math::max);
+            }
+        });
+
+        assertEquals(expectedFiles, copied.size());
+        assertEquals(expectedFiles, lastFiles.get());
+
+        for (int d = 0; d < 5; d++) {
+            for (int f = 0; f < 20; f++) {
+                assertEquals(d * 100 + f, new File(target, "dir" + d + "/sub/file" + f).length());
+            }
+        }
+    }
+
+    @Test
+    public void failuresAreAggregated() throws IOException {
+        File source = folder.newFolder("source");
+
+        write(new File(source, "ok.txt"), 10);
+        write(new File(source, "blocked"), 10);
+        write(new File(source, "other"), 10);
+
+        File target = folder.newFolder("target");
+
+        //Directories in place of the target files make the copy of these files fail
+        assertTrue(new File(target, "blocked").mkdir());
+        assertTrue(new File(target, "other").mkdir());
+
+        try {
+            FileUtils.copyDirectory(source, target, 2, null);
+
+            fail("The copy must fail");
+        } catch (CopyException e) {
+            assertEquals(2, e.getSuppressed().length);
+        }
+
+        assertEquals(10, new File(target, "ok.txt").length());
+    }
+
+    @Test(expected = CopyException.class)
+    public void sourceNotDirectory() throws IOException, CopyException {
+        FileUtils.copyDirectory(folder.newFile("file"), new File(folder.getRoot(), "target"), 2, null);
+    }
+
+    private static void write(File file, int length) throws IOException {
+        FileOutputStream stream = new FileOutputStream(file);
+
+        try {
+            stream.write(new byte[length]);
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the ParallelZipWriter class.
+ *
+ * @author Baptiste Wicht
+ */
+public class ParallelZipWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readableByZipFileAndZipInputStream() throws IOException {
+        byte[] big = content(1000 * 1000 + 17);
+        byte[] small = content(100);
+
+        File bigFile = write("big.txt", big);
+        File smallFile = write("small.bin", small);
+        File emptyFile = write("empty", new byte[0]);
+
+        File archive = new File(folder.getRoot(), "archive.zip");
+
+        ParallelZipWriter writer = new ParallelZipWriter(new FileOutputStream(archive), 4);
+        writer.putFile("big.txt", bigFile);
+        writer.putFile("dir/small.bin", smallFile, ZipEntry.STORED, 0);
+        writer.putFile("empty", emptyFile, ZipEntry.DEFLATED, 1);
+        writer.putFile("caf\u00e9.txt", smallFile, ZipEntry.DEFLATED, 0);
+        writer.close();
+
+        assertTrue(archive.length() < big.length);
+
+        ZipFile zipFile = new ZipFile(archive);
+
+        try {
+            assertEquals(4, zipFile.size());
+            assertArrayEquals(big, read(zipFile.getInputStream(zipFile.getEntry("big.txt"))));
+            assertArrayEquals(small, read(zipFile.getInputStream(zipFile.getEntry("dir/small.bin"))));
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("dir/small.bin").getMethod());
+            assertEquals(0, read(zipFile.getInputStream(zipFile.getEntry("empty"))).length);
+            assertArrayEquals(small, read(zipFile.getInputStream(zipFile.getEntry("caf\u00e9.txt"))));
+        } finally {
+            zipFile.close();
+        }
+
+        ZipInputStream stream = new ZipInputStream(new FileInputStream(archive));
+
+        try {
+            assertEquals("big.txt", stream.getNextEntry().getName());
+            assertArrayEquals(big, read(stream));
+            assertEquals("dir/small.bin", stream.getNextEntry().getName());
+            assertArrayEquals(small, read(stream));
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void fileUtilsZip() throws IOException {
+        byte[] data = content(300 * 1000);
+
+        File file = write("a.txt", data);
+        File archive = new File(folder.getRoot(), "archive.zip");
+
+        FileUtils.zip(Arrays.asList(file), archive, 2);
+
+        File destination = folder.newFolder("unzipped");
+
+        InputStream stream = new FileInputStream(archive);
+        FileUtils.unzip(stream, destination.getAbsolutePath());
+
+        assertArrayEquals(data, read(new FileInputStream(new File(destination, "a.txt"))));
+    }
+
+    @Test
+    public void failedEntryNotInCentralDirectory() throws IOException {
+        byte[] data = content(1000);
+
+        File file = write("a.txt", data);
+        File archive = new File(folder.getRoot(), "archive.zip");
+
+        ParallelZipWriter writer = new ParallelZipWriter(new FileOutputStream(archive), 2);
+        writer.putFile("a.txt", file);
+
+        try {
+            writer.putFile("missing.txt", new File(folder.getRoot(), "missing.txt"));
+            fail();
+        } catch (IOException e) {
+            //Expected
+        }
+
+        writer.close();
+
+        assertEquals(1, writer.getEntries());
+
+        ZipFile zipFile = new ZipFile(archive);
+
+        try {
+            assertEquals(1, zipFile.size());
+            assertArrayEquals(data, read(zipFile.getInputStream(zipFile.getEntry("a.txt"))));
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    @Test
+    public void fileUtilsZipDeletesDestinationOnFailure() throws IOException {
+        File file = write("a.txt", content(1000));
+        File archive = new File(folder.getRoot(), "archive.zip");
+
+        try {
+            FileUtils.zip(Arrays.asList(file, new File(folder.getRoot(), "missing.txt")), archive, 2);
+            fail();
+        } catch (IOException e) {
+            assertFalse(archive.exists());
+        }
+    }
+
+    @Test
+    public void fileUtilsZipInvalidParallelism() throws IOException {
+        File file = write("a.txt", content(1000));
+        File archive = new File(folder.getRoot(), "archive.zip");
+
+        try {
+            FileUtils.zip(Arrays.asList(file), archive, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertFalse(archive.exists());
+        }
+    }
+
+    private static byte[] content(int length) {
+        byte[] data = new byte[length];
+
+        Random random = new Random(42);
+
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(4));
+        }
+
+        return data;
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        File file = folder.newFile(name);
+
+        FileOutputStream stream = new FileOutputStream(file);
+
+        try {
+            stream.write(content);
+        } finally {
+            stream.close();
+        }
+
+        return file;
+    }
+
+    private static byte[] read(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        byte[] buffer = new byte[4096];
+
+        int read = stream.read(buffer);
+
+        while (read != -1) {
+            out.write(buffer, 0, read);
+
+            read = stream.read(buffer);
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,167 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.jtheque.utils.collections.CollectionUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the ReachabilityProber class against a local HTTP server.
+ *
+ * @author Baptiste Wicht
+ */
+public class ReachabilityProberTest {
+    @Rule
+    public TestHttpServer server = new TestHttpServer();
+
+    private final AtomicInteger upRequests = new AtomicInteger();
+    private final AtomicInteger downRequests = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private void createContexts() {
+        server.handle("/up", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                upRequests.incrementAndGet();
+
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            }
+        });
+
+        server.handle("/down", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                downRequests.incrementAndGet();
+
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+            }
+        });
+
+        server.handle("/slow", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                TestHttpServer.pause(2000);
+
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            }
+        });
+    }
+
+    @Test
+    public void singleFlight() throws Exception {
+        createContexts();
+
+        ReachabilityProber prober = new ReachabilityProber(60000, 60000, 5000, 5000);
+
+        try {
+            Collection<CompletableFuture<Boolean>> futures = CollectionUtils.newList();
+
+            for (int i = 0; i < 10; i++) {
+                futures.add(prober.isReachable(new URL(server.url("/up"))));
+            }
+
+            release.countDown();
+
+            for (CompletableFuture<Boolean> future : futures) {
+                assertTrue(future.get(10, TimeUnit.SECONDS));
+            }
+
+            assertTrue(prober.isReachable(new URL(server.url("/up"))).isDone());
+            assertEquals(1, upRequests.get());
+        } finally {
+            prober.close();
+        }
+    }
+
+    @Test
+    public void negativeCache() throws Exception {
+        createContexts();
+
+        ReachabilityProber prober = new ReachabilityProber(60000, 300, 5000, 5000);
+
+        try {
+            URL url = new URL(server.url("/down"));
+
+            assertFalse(prober.isReachable(url).get(10, TimeUnit.SECONDS));
+
+            CompletableFuture<Boolean> cached = prober.isReachable(url);
+
+            assertTrue(cached.isDone());
+            assertFalse(cached.get());
+            assertEquals(1, downRequests.get());
+
+            Thread.sleep(400);
+
+            assertFalse(prober.isReachable(url).get(10, TimeUnit.SECONDS));
+            assertEquals(2, downRequests.get());
+        } finally {
+            prober.close();
+        }
+    }
+
+    @Test
+    public void readTimeout() throws Exception {
+        createContexts();
+
+        ReachabilityProber prober = new ReachabilityProber(60000, 60000, 5000, 200);
+
+        try {
+            long start = System.nanoTime();
+
+            assertFalse(prober.isReachable(new URL(server.url("/slow"))).get(10, TimeUnit.SECONDS));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+        } finally {
+            prober.close();
+        }
+    }
+
+    @Test
+    public void webUtils() throws Exception {
+        createContexts();
+
+        release.countDown();
+
+        assertTrue(WebUtils.isURLReachableAsync(new URL(server.url("/up"))).get(10, TimeUnit.SECONDS));
+        assertTrue(WebUtils.isURLReachable(server.url("/up")));
+        assertFalse(WebUtils.isURLReachable(server.url("/down")));
+        assertTrue(WebUtils.isURLNotReachable("not an url"));
+    }
+}
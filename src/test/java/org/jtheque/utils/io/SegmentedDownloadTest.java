@@ -0,0 +1,284 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.jtheque.utils.Hasher;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URL;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the segmented downloads of WebUtils against a local HTTP server.
+ *
+ * @author Baptiste Wicht
+ */
+public class SegmentedDownloadTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public TestHttpServer server = new TestHttpServer();
+
+    private final byte[] data = new byte[1024 * 1024 + 13];
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+    private final AtomicInteger fullRequests = new AtomicInteger();
+    private final AtomicBoolean broken = new AtomicBoolean(true);
+
+    private void createContexts() {
+        new Random(7).nextBytes(data);
+
+        server.handle("/ranges", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+
+                String range = exchange.getRequestHeaders().getFirst("Range");
+
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().add("Content-Length", Integer.toString(data.length));
+                    exchange.sendResponseHeaders(200, -1);
+                    exchange.close();
+                } else if (range == null) {
+                    fullRequests.incrementAndGet();
+
+                    exchange.sendResponseHeaders(200, data.length);
+                    exchange.getResponseBody().write(data);
+                    exchange.close();
+                } else {
+                    rangeRequests.incrementAndGet();
+
+                    assertEquals("\"v1\"", exchange.getRequestHeaders().getFirst("If-Range"));
+
+                    String[] bounds = range.substring(6).split("-");
+
+                    int first = Integer.parseInt(bounds[0]);
+                    int last = Integer.parseInt(bounds[1]);
+                    int length = last - first + 1;
+
+                    exchange.getResponseHeaders().add("Content-Range", "bytes " + first + '-' + last + '/' + data.length);
+                    exchange.sendResponseHeaders(206, length);
+
+                    try {
+                        if (first > 0 && broken.compareAndSet(true, false)) {
+                            exchange.getResponseBody().write(data, first, length / 2);
+                        } else {
+                            exchange.getResponseBody().write(data, first, length);
+                        }
+
+                        exchange.close();
+                    } catch (IOException e) {
+                        //The connection is closed before the end of the body
+                    }
+                }
+            }
+        });
+
+        server.handle("/plain", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(200, -1);
+                } else {
+                    fullRequests.incrementAndGet();
+
+                    exchange.sendResponseHeaders(200, data.length);
+                    exchange.getResponseBody().write(data);
+                }
+
+                exchange.close();
+            }
+        });
+
+        server.handle("/noHead", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                } else {
+                    fullRequests.incrementAndGet();
+
+                    exchange.sendResponseHeaders(200, data.length);
+                    exchange.getResponseBody().write(data);
+                }
+
+                exchange.close();
+            }
+        });
+
+        server.handle("/noValidator", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().add("Content-Length", Integer.toString(data.length));
+                    exchange.sendResponseHeaders(200, -1);
+                } else {
+                    if (exchange.getRequestHeaders().getFirst("Range") == null) {
+                        fullRequests.incrementAndGet();
+                    } else {
+                        rangeRequests.incrementAndGet();
+                    }
+
+                    exchange.sendResponseHeaders(200, data.length);
+                    exchange.getResponseBody().write(data);
+                }
+
+                exchange.close();
+            }
+        });
+
+        server.handle("/stalled", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+
+                String range = exchange.getRequestHeaders().getFirst("Range");
+
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().add("Content-Length", Integer.toString(data.length));
+                    exchange.sendResponseHeaders(200, -1);
+                } else if (range != null && range.startsWith("bytes=0-")) {
+                    TestHttpServer.pause(10000);
+
+                    exchange.sendResponseHeaders(503, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, data.length);
+                    exchange.getResponseBody().write(data);
+                }
+
+                exchange.close();
+            }
+        });
+    }
+
+    @Test
+    public void segments() throws Exception {
+        createContexts();
+
+        File destination = new File(folder.getRoot(), "archive.zip");
+
+        assertEquals(data.length, WebUtils.downloadFile(new URL(server.url("/ranges")), destination, 4, Hasher.SHA256, sha256()));
+
+        assertArrayEquals(data, Files.readAllBytes(destination.toPath()));
+        assertEquals(5, rangeRequests.get());
+        assertEquals(0, fullRequests.get());
+    }
+
+    @Test
+    public void fallback() throws Exception {
+        createContexts();
+
+        File destination = new File(folder.getRoot(), "archive.zip");
+
+        WebUtils.downloadFile(new URL(server.url("/plain")), destination, 4, null, null);
+
+        assertArrayEquals(data, Files.readAllBytes(destination.toPath()));
+        assertEquals(1, fullRequests.get());
+    }
+
+    @Test
+    public void headRejected() throws Exception {
+        createContexts();
+
+        File destination = new File(folder.getRoot(), "archive.zip");
+
+        assertEquals(data.length, WebUtils.downloadFile(new URL(server.url("/noHead")), destination, 4, Hasher.SHA256, sha256()));
+
+        assertArrayEquals(data, Files.readAllBytes(destination.toPath()));
+        assertEquals(1, fullRequests.get());
+    }
+
+    @Test
+    public void noValidator() throws Exception {
+        createContexts();
+
+        File destination = new File(folder.getRoot(), "archive.zip");
+
+        WebUtils.downloadFile(new URL(server.url("/noValidator")), destination, 4, null, null);
+
+        assertArrayEquals(data, Files.readAllBytes(destination.toPath()));
+        assertEquals(1, fullRequests.get());
+        assertEquals(0, rangeRequests.get());
+    }
+
+    @Test
+    public void checksumMismatch() throws Exception {
+        createContexts();
+
+        File destination = new File(folder.getRoot(), "archive.zip");
+
+        try {
+            WebUtils.downloadFile(new URL(server.url("/plain")), destination, 4, Hasher.SHA256, "00");
+
+            fail("The checksum must not match");
+        } catch (FileException e) {
+            assertFalse(destination.exists());
+        }
+    }
+
+    @Test
+    public void failedSegmentCancelsTheOthers() throws Exception {
+        createContexts();
+
+        File destination = new File(folder.getRoot(), "archive.zip");
+
+        long start = System.nanoTime();
+
+        try {
+            WebUtils.downloadFile(new URL(server.url("/stalled")), destination, 4, null, null);
+
+            fail("The segments must be rejected");
+        } catch (FileException e) {
+            assertFalse(destination.exists());
+        }
+
+        //The first segment is stalled for ten seconds
+        assertTrue(System.nanoTime() - start < 5000000000L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checksumWithoutHasher() throws Exception {
+        createContexts();
+
+        WebUtils.downloadFile(new URL(server.url("/plain")), new File(folder.getRoot(), "archive.zip"), 4, null, "00");
+    }
+
+    private String sha256() throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+
+        return String.format("%064x", new BigInteger(1, hash));
+    }
+}
@@ -0,0 +1,120 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.Hasher;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the directory synchronization of FileUtils.
+ *
+ * @author Baptiste Wicht
+ */
+public class SynchronizeTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void onlyChangesAreCopied() throws IOException, CopyException {
+        File source = folder.newFolder("source");
+        File target = new File(folder.getRoot(), "target");
+
+        write(new File(source, "a.txt"), "a");
+        assertTrue(new File(source, "sub").mkdir());
+        write(new File(source, "sub/b.txt"), "bb");
+
+        SyncReport first = FileUtils.synchronize(source, target, false, null);
+
+        assertEquals(2, first.getAdded().size());
+        assertEquals(3, first.getBytes());
+
+        SyncReport second = FileUtils.synchronize(source, target, false, null);
+
+        assertFalse(second.hasChanges());
+        assertEquals(2, second.getUnchanged());
+
+        write(new File(source, "sub/b.txt"), "ccc");
+
+        SyncReport third = FileUtils.synchronize(source, target, false, null);
+
+        assertEquals(1, third.getUpdated().size());
+        assertTrue(third.getUpdated().contains("sub/b.txt"));
+        assertEquals(3, new File(target, "sub/b.txt").length());
+    }
+
+    @Test
+    public void deleteExtra() throws IOException, CopyException {
+        File source = folder.newFolder("source");
+        File target = folder.newFolder("target");
+
+        write(new File(source, "a.txt"), "a");
+        write(new File(target, "extra.txt"), "extra");
+        assertTrue(new File(target, "extraDir").mkdir());
+
+        SyncReport kept = FileUtils.synchronize(source, target, false, null);
+
+        assertTrue(kept.getDeleted().isEmpty());
+        assertTrue(new File(target, "extra.txt").exists());
+
+        SyncReport report = FileUtils.synchronize(source, target, true, null);
+
+        assertEquals(2, report.getDeleted().size());
+        assertFalse(new File(target, "extra.txt").exists());
+        assertFalse(new File(target, "extraDir").exists());
+        assertTrue(new File(target, "a.txt").exists());
+    }
+
+    @Test
+    public void contentHash() throws IOException, CopyException {
+        File source = folder.newFolder("source");
+        File target = folder.newFolder("target");
+
+        File sourceFile = write(new File(source, "a.txt"), "abc");
+        File targetFile = write(new File(target, "a.txt"), "abd");
+
+        assertTrue(targetFile.setLastModified(sourceFile.lastModified()));
+
+        assertFalse(FileUtils.synchronize(source, target, false, null).hasChanges());
+
+        SyncReport report = FileUtils.synchronize(source, target, false, Hasher.SHA256);
+
+        assertEquals(1, report.getUpdated().size());
+
+        assertFalse(FileUtils.synchronize(source, target, false, Hasher.SHA256).hasChanges());
+    }
+
+    private static File write(File file, String content) throws IOException {
+        FileOutputStream stream = new FileOutputStream(file);
+
+        try {
+            stream.write(content.getBytes("UTF-8"));
+        } finally {
+            stream.close();
+        }
+
+        return file;
+    }
+}
@@ -0,0 +1,144 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.rules.ExternalResource;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local HTTP server for the tests, used as a JUnit rule. The server is started on a free port of the loopback
+ * interface before each test and stopped after it. The requests are handled concurrently.
+ *
+ * @author Baptiste Wicht
+ */
+final class TestHttpServer extends ExternalResource {
+    private ExecutorService executor;
+    private HttpServer server;
+
+    @Override
+    protected void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+        executor = Executors.newCachedThreadPool();
+
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @Override
+    protected void after() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Handle the requests of the given path.
+     *
+     * @param path    The path.
+     * @param handler The handler of the requests.
+     */
+    void handle(String path, HttpHandler handler) {
+        server.createContext(path, handler);
+    }
+
+    /**
+     * Return the port of the server.
+     *
+     * @return The port.
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Return the URL of the given path on the server.
+     *
+     * @param path The path.
+     *
+     * @return The URL.
+     */
+    String url(String path) {
+        return "http://127.0.0.1:" + getPort() + path;
+    }
+
+    /**
+     * Return a handler answering all the requests with the given status and no body.
+     *
+     * @param code The status code.
+     *
+     * @return The handler.
+     */
+    static HttpHandler status(final int code) {
+        return new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(code, -1);
+                exchange.close();
+            }
+        };
+    }
+
+    /**
+     * Send a complete response.
+     *
+     * @param exchange The exchange.
+     * @param code     The status code.
+     * @param body     The body of the response.
+     *
+     * @throws IOException If the response cannot be sent.
+     */
+    static void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(code, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    /**
+     * Send a complete text response.
+     *
+     * @param exchange The exchange.
+     * @param code     The status code.
+     * @param content  The content of the response.
+     *
+     * @throws IOException If the response cannot be sent.
+     */
+    static void send(HttpExchange exchange, int code, String content) throws IOException {
+        send(exchange, code, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Pause the handler of a request.
+     *
+     * @param millis The duration of the pause in milliseconds.
+     */
+    static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
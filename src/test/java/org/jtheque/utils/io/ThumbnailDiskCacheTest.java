@@ -0,0 +1,221 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the ThumbnailDiskCache class.
+ *
+ * @author Baptiste Wicht
+ */
+public class ThumbnailDiskCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void putAndGet() throws IOException {
+        File source = createImage("image.png", 40, 20);
+        File cacheFolder = folder.newFolder("cache");
+
+        BufferedImage thumbnail = new BufferedImage(10, 5, BufferedImage.TYPE_INT_RGB);
+        thumbnail.setRGB(3, 2, 0x123456);
+
+        new ThumbnailDiskCache(cacheFolder, 1024 * 1024).put(source, 10, thumbnail);
+
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(cacheFolder, 1024 * 1024);
+
+        assertTrue(cache.getSize() > 0);
+        assertNull(cache.get(source, 20));
+
+        BufferedImage read = cache.get(source, 10);
+
+        assertNotNull(read);
+        assertEquals(10, read.getWidth());
+        assertEquals(5, read.getHeight());
+        assertEquals(thumbnail.getRGB(3, 2), read.getRGB(3, 2));
+    }
+
+    @Test
+    public void subImage() throws IOException {
+        File source = createImage("image.png", 40, 20);
+        File cacheFolder = folder.newFolder("cache");
+
+        BufferedImage parent = new BufferedImage(30, 20, BufferedImage.TYPE_INT_RGB);
+        parent.setRGB(13, 7, 0x123456);
+
+        BufferedImage thumbnail = parent.getSubimage(10, 5, 10, 5);
+
+        new ThumbnailDiskCache(cacheFolder, 1024 * 1024).put(source, 10, thumbnail);
+
+        BufferedImage read = new ThumbnailDiskCache(cacheFolder, 1024 * 1024).get(source, 10);
+
+        assertNotNull(read);
+        assertEquals(10, read.getWidth());
+        assertEquals(0x123456, read.getRGB(3, 2) & 0xFFFFFF);
+    }
+
+    @Test
+    public void modifiedSource() throws IOException {
+        File source = createImage("image.png", 40, 20);
+
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(folder.newFolder("cache"), 1024 * 1024);
+
+        cache.put(source, 10, new BufferedImage(10, 5, BufferedImage.TYPE_INT_ARGB));
+
+        assertTrue(source.setLastModified(source.lastModified() - 10000));
+
+        assertNull(cache.get(source, 10));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void corruptedEntries() throws IOException {
+        File source = createImage("image.png", 40, 20);
+        File cacheFolder = folder.newFolder("cache");
+
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(cacheFolder, 1024 * 1024);
+
+        for (int corruption = 0; corruption < 4; corruption++) {
+            cache.put(source, 10, new BufferedImage(10, 5, BufferedImage.TYPE_INT_RGB));
+
+            File[] files = cacheFolder.listFiles();
+
+            assertEquals(1, files.length);
+
+            RandomAccessFile raf = new RandomAccessFile(files[0], "rw");
+
+            try {
+                switch (corruption) {
+                    case 0:
+                        raf.seek(16);
+                        raf.writeInt(Integer.MAX_VALUE);
+                        break;
+                    case 1:
+                        raf.seek(16);
+                        raf.writeInt(-1);
+                        break;
+                    case 2:
+                        raf.seek(raf.length() - 204);
+                        raf.writeInt(12345);
+                        break;
+                    default:
+                        raf.setLength(18);
+                        break;
+                }
+            } finally {
+                raf.close();
+            }
+
+            assertNull(cache.get(source, 10));
+            assertEquals(0, cache.getSize());
+            assertEquals(0, cacheFolder.list().length);
+        }
+    }
+
+    @Test
+    public void eviction() throws IOException {
+        File source = createImage("image.png", 40, 20);
+
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(folder.newFolder("cache"), 1000);
+
+        for (int size = 1; size <= 10; size++) {
+            cache.put(source, size, new BufferedImage(10, 5, BufferedImage.TYPE_INT_RGB));
+        }
+
+        assertTrue(cache.getSize() <= 1000);
+        assertNull(cache.get(source, 1));
+        assertNotNull(cache.get(source, 10));
+    }
+
+    @Test
+    public void imageCacheThumbnails() throws IOException {
+        File source = createImage("image.png", 40, 20);
+        File cacheFolder = folder.newFolder("cache");
+
+        ImageCache cache = new ImageCache();
+        cache.setDiskCache(new ThumbnailDiskCache(cacheFolder, 1024 * 1024));
+
+        BufferedImage thumbnail = cache.getThumbnail(source.getAbsolutePath(), 10);
+
+        assertEquals(10, thumbnail.getWidth());
+        assertSame(thumbnail, cache.getThumbnail(source.getAbsolutePath(), 10));
+
+        cache.invalidate(source.getAbsolutePath());
+
+        assertEquals(0, cache.getWeight());
+        assertNotSame(thumbnail, cache.getThumbnail(source.getAbsolutePath(), 10));
+
+        ImageCache warmCache = new ImageCache();
+        warmCache.setDiskCache(new ThumbnailDiskCache(cacheFolder, 1024 * 1024));
+
+        BufferedImage warm = warmCache.getThumbnail(source.getAbsolutePath(), 10);
+
+        assertEquals(thumbnail.getWidth(), warm.getWidth());
+        assertEquals(thumbnail.getHeight(), warm.getHeight());
+        assertEquals(thumbnail.getRGB(5, 2), warm.getRGB(5, 2));
+    }
+
+    @Test
+    public void scaledImages() throws IOException {
+        File source = createImage("image.png", 400, 200);
+
+        ImageCache cache = new ImageCache();
+
+        BufferedImage small = cache.getScaled(source.getAbsolutePath(), 50);
+        BufferedImage big = cache.getScaled(source.getAbsolutePath(), 100);
+
+        assertEquals(50, small.getWidth());
+        assertEquals(100, big.getWidth());
+        assertSame(small, cache.getScaled(source.getAbsolutePath(), 50));
+
+        cache.invalidate(source.getAbsolutePath());
+
+        assertEquals(0, cache.getWeight());
+        assertNotSame(small, cache.getScaled(source.getAbsolutePath(), 50));
+    }
+
+    /**
+     * Create an image file.
+     *
+     * @param name   The name of the file.
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     *
+     * @return The created file.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    private File createImage(String name, int width, int height) throws IOException {
+        File file = folder.newFile(name);
+
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", file);
+
+        return file;
+    }
+}
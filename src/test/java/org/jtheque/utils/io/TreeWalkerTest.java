@@ -0,0 +1,162 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the TreeWalker class.
+ *
+ * @author Baptiste Wicht
+ */
+public class TreeWalkerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+
+    @Test
+    public void visitAll() throws IOException {
+        createTree();
+
+        final Set<Path> files = ConcurrentHashMap.newKeySet();
+
+        new TreeWalker().parallelism(3).walk(root, new TreeWalker.Visitor() {
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attributes) {
+                assertTrue(attributes.isRegularFile());
+
+                files.add(file);
+            }
+        });
+
+        assertEquals(14, files.size());
+        assertTrue(files.contains(root.resolve("dir2").resolve("sub").resolve("deep.bin")));
+    }
+
+    @Test
+    public void maxDepth() throws IOException {
+        createTree();
+
+        assertEquals(1, count(new TreeWalker().maxDepth(1)));
+        assertEquals(6, count(new TreeWalker().maxDepth(2)));
+        assertEquals(0, count(new TreeWalker().maxDepth(0)));
+    }
+
+    @Test
+    public void filterPushDown() throws IOException {
+        createTree();
+
+        TreeWalker walker = new TreeWalker().filter(new TreeWalker.PathFilter() {
+            @Override
+            public boolean accept(Path path, BasicFileAttributes attributes) {
+                assertFalse(path.startsWith(root.resolve("excluded")) && !path.equals(root.resolve("excluded")));
+
+                return attributes.isDirectory() ? !path.endsWith("excluded") : path.toString().endsWith(".txt");
+            }
+        });
+
+        assertEquals(9, count(walker));
+    }
+
+    @Test
+    public void stream() throws IOException {
+        createTree();
+
+        Stream<Path> stream = new TreeWalker().stream(root);
+
+        try {
+            Set<String> names = stream.map(p -> p.getFileName().toString()).collect(Collectors.toSet());
+
+            assertEquals(4, names.size());
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void getFilesOfFolder() throws IOException {
+        createTree();
+
+        assertEquals(14, FileUtils.getFilesOfFolder(folder.getRoot(), new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return true;
+            }
+        }).size());
+    }
+
+    @Test
+    public void brokenLink() throws IOException {
+        createTree();
+
+        Path link = root.resolve("broken");
+
+        try {
+            Files.createSymbolicLink(link, root.resolve("missing"));
+        } catch (UnsupportedOperationException e) {
+            return;
+        }
+
+        Collection<File> files = FileUtils.getFilesOfFolder(folder.getRoot(), null);
+
+        assertEquals(15, files.size());
+        assertTrue(files.contains(link.toFile()));
+    }
+
+    private void createTree() throws IOException {
+        root = folder.getRoot().toPath();
+
+        for (int d = 0; d < 4; d++) {
+            Path directory = Files.createDirectories(root.resolve("dir" + d).resolve("sub"));
+
+            Files.createFile(root.resolve("dir" + d).resolve("file.txt"));
+            Files.createFile(directory.resolve("deep.txt"));
+            Files.createFile(directory.resolve("deep.bin"));
+        }
+
+        Files.createDirectories(root.resolve("excluded"));
+        Files.createFile(root.resolve("excluded").resolve("file.txt"));
+        Files.createFile(root.resolve("top.txt"));
+    }
+
+    private long count(TreeWalker walker) {
+        Stream<Path> stream = walker.stream(root);
+
+        try {
+            return stream.count();
+        } finally {
+            stream.close();
+        }
+    }
+}
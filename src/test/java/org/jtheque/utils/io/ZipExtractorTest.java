@@ -0,0 +1,210 @@
+package org.jtheque.utils.io;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.collections.Filter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the parallel unzip of FileUtils.
+ *
+ * @author Baptiste Wicht
+ */
+public class ZipExtractorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void extractAll() throws IOException {
+        File archive = createArchive("a.txt", "dir/", "dir/b.txt", "dir/sub/c.txt");
+
+        File destination = new File(folder.getRoot(), "out");
+
+        Collection<File> files = FileUtils.unzip(archive, destination, 3);
+
+        assertEquals(3, files.size());
+        assertEquals("a.txt".length(), new File(destination, "a.txt").length());
+        assertEquals("dir/sub/c.txt".length(), new File(destination, "dir/sub/c.txt").length());
+        assertTrue(new File(destination, "dir").isDirectory());
+    }
+
+    @Test
+    public void currentDirectoryEntry() throws IOException {
+        File archive = createArchive("./", "./a.txt");
+
+        File destination = new File(folder.getRoot(), "out");
+
+        Collection<File> files = FileUtils.unzip(archive, destination, 2);
+
+        assertEquals(1, files.size());
+        assertEquals("./a.txt".length(), new File(destination, "a.txt").length());
+    }
+
+    @Test
+    public void filter() throws IOException {
+        File archive = createArchive("a.txt", "b.bin", "c.txt");
+
+        File destination = new File(folder.getRoot(), "out");
+
+        Collection<File> files = FileUtils.unzip(archive, destination, 2, new Filter<String>() {
+            @Override
+            public boolean accept(String name) {
+                return name.endsWith(".txt");
+            }
+        });
+
+        assertEquals(2, files.size());
+        assertFalse(new File(destination, "b.bin").exists());
+    }
+
+    @Test
+    public void zipSlip() throws IOException {
+        File archive = createArchive("a.txt", "../evil.txt");
+
+        File destination = new File(folder.getRoot(), "out");
+
+        try {
+            FileUtils.unzip(archive, destination, 2);
+
+            fail("The archive must be rejected");
+        } catch (ZipException e) {
+            assertFalse(new File(folder.getRoot(), "evil.txt").exists());
+            assertFalse(new File(destination, "a.txt").exists());
+        }
+    }
+
+    @Test
+    public void duplicateEntries() throws IOException {
+        File archive = createArchive("a.txt", "./a.txt");
+
+        File destination = new File(folder.getRoot(), "out");
+
+        try {
+            FileUtils.unzip(archive, destination, 2);
+
+            fail("The archive must be rejected");
+        } catch (ZipException e) {
+            assertFalse(new File(destination, "a.txt").exists());
+        }
+    }
+
+    @Test
+    public void corruptedCentralDirectory() throws IOException {
+        for (int corruption = 0; corruption < 3; corruption++) {
+            File archive = createArchive("a.txt", "b.txt");
+
+            byte[] content = Files.readAllBytes(archive.toPath());
+
+            ByteBuffer buffer = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+
+            int central = 0;
+
+            while (buffer.getInt(central) != 0x02014b50) {
+                central++;
+            }
+
+            switch (corruption) {
+                case 0:
+                    buffer.putShort(central + 28, (short) 0xFFFF);
+                    break;
+                case 1:
+                    buffer.putInt(central + 42, Integer.MAX_VALUE);
+                    break;
+                default:
+                    buffer.putInt(content.length - 22 + 16, Integer.MAX_VALUE);
+                    break;
+            }
+
+            Files.write(archive.toPath(), content);
+
+            try {
+                FileUtils.unzip(archive, new File(folder.getRoot(), "out" + corruption), 2);
+
+                fail("The archive must be rejected");
+            } catch (ZipException e) {
+                //Expected
+            }
+        }
+    }
+
+    @Test
+    public void parallelZipWriterArchive() throws IOException {
+        File file = folder.newFile("data");
+
+        FileOutputStream out = new FileOutputStream(file);
+
+        try {
+            for (int i = 0; i < 50000; i++) {
+                out.write(("line " + i + '\n').getBytes("UTF-8"));
+            }
+        } finally {
+            out.close();
+        }
+
+        File archive = new File(folder.getRoot(), "archive.zip");
+
+        ParallelZipWriter writer = new ParallelZipWriter(new FileOutputStream(archive), 2);
+        writer.putFile("data", file);
+        writer.putFile("stored", file, ZipEntry.STORED, 0);
+        writer.close();
+
+        File destination = new File(folder.getRoot(), "out");
+
+        FileUtils.unzip(archive, destination, 2);
+
+        assertEquals(file.length(), new File(destination, "data").length());
+        assertEquals(file.length(), new File(destination, "stored").length());
+    }
+
+    private File createArchive(String... names) throws IOException {
+        File archive = new File(folder.getRoot(), "archive.zip");
+
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(archive));
+
+        try {
+            for (String name : names) {
+                zos.putNextEntry(new ZipEntry(name));
+
+                if (!name.endsWith("/")) {
+                    zos.write(name.getBytes("UTF-8"));
+                }
+
+                zos.closeEntry();
+            }
+        } finally {
+            zos.close();
+        }
+
+        return archive;
+    }
+}
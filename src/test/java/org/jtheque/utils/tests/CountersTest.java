@@ -1,10 +1,17 @@
 package org.jtheque.utils.tests;
 
+import org.jtheque.utils.count.ConcurrentCounter;
+import org.jtheque.utils.count.ConcurrentCounters;
 import org.jtheque.utils.count.Counter;
 import org.jtheque.utils.count.Counters;
 
 import org.junit.Test;
 
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.*;
 
 /*
@@ -97,4 +104,88 @@ public class CountersTest {
 
         assertEquals(c.getValue(), testCounter.getValue());
     }
+
+    /**
+     * Test the concurrent counters from several threads.
+     */
+    @Test
+    public void testConcurrentCounters() throws InterruptedException {
+        final ConcurrentCounters counters = new ConcurrentCounters();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        for (int i = 0; i < 4; i++) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        counters.getCounterOrAdd("test").increment();
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(40000, counters.getCounter("test").getValue());
+        assertEquals(Long.valueOf(40000), counters.snapshot().get("test"));
+    }
+
+    /**
+     * Test the reset on read mode.
+     */
+    @Test
+    public void testResetOnRead() {
+        ConcurrentCounters counters = new ConcurrentCounters(true);
+
+        ConcurrentCounter counter = counters.getCounterOrAdd("test");
+
+        counter.add(150);
+
+        Map<String, Long> snapshot = counters.snapshot();
+
+        assertEquals(Long.valueOf(150), snapshot.get("test"));
+        assertEquals(0, counter.getValue());
+
+        counter.decrement();
+
+        assertEquals(Long.valueOf(-1), counters.snapshot().get("test"));
+        assertSame(counter, counters.getCounterOrAdd("test"));
+    }
+
+    /**
+     * Test that no update is lost when the counter is read and cleared concurrently.
+     */
+    @Test
+    public void testGetValueAndClearConcurrently() throws InterruptedException {
+        final ConcurrentCounter counter = new ConcurrentCounter();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        for (int i = 0; i < 4; i++) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100000; j++) {
+                        counter.increment();
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+
+        long total = 0;
+
+        while (!executor.isTerminated()) {
+            total += counter.getValueAndClear();
+        }
+
+        total += counter.getValueAndClear();
+
+        assertEquals(400000, total);
+        assertEquals(0, counter.getValue());
+    }
 }
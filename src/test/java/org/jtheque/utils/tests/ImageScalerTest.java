@@ -0,0 +1,149 @@
+package org.jtheque.utils.tests;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.ui.ImageScaler;
+import org.jtheque.utils.ui.ImageScaler.Quality;
+
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the ImageScaler class.
+ *
+ * @author Baptiste Wicht
+ */
+public class ImageScalerTest {
+    @Test
+    public void scaleToFit() {
+        BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage scaled = ImageScaler.scaleToFit(image, 100, 100, Quality.QUALITY);
+
+        assertEquals(100, scaled.getWidth());
+        assertEquals(50, scaled.getHeight());
+
+        scaled = ImageScaler.scaleToFit(image, 1000, 100, Quality.SPEED);
+
+        assertEquals(200, scaled.getWidth());
+        assertEquals(100, scaled.getHeight());
+    }
+
+    @Test
+    public void solidColorIsKept() {
+        for (Quality quality : Quality.values()) {
+            for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_ARGB}) {
+                BufferedImage image = filledImage(type, 97, 61, new Color(10, 120, 230));
+
+                assertColor(0xFF0A78E6, ImageScaler.scale(image, 13, 7, quality));
+                assertColor(0xFF0A78E6, ImageScaler.scale(image, 301, 150, quality));
+            }
+        }
+    }
+
+    @Test
+    public void transparency() {
+        BufferedImage image = filledImage(BufferedImage.TYPE_INT_ARGB, 50, 50, new Color(255, 0, 0, 128));
+
+        BufferedImage scaled = ImageScaler.scale(image, 20, 20, Quality.QUALITY);
+
+        assertEquals(BufferedImage.TYPE_INT_ARGB, scaled.getType());
+        assertColor(0x80FF0000, scaled);
+    }
+
+    @Test
+    public void averageOfReduction() {
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0x000000);
+        image.setRGB(1, 0, 0xFEFEFE);
+
+        BufferedImage scaled = ImageScaler.scale(image, 1, 1, Quality.QUALITY);
+
+        assertEquals(0xFF7F7F7F, scaled.getRGB(0, 0));
+    }
+
+    @Test
+    public void severalStrips() {
+        //The intermediate buffer of a single strip would need 1500 * 1200 * 4 floats
+        BufferedImage image = new BufferedImage(2000, 1200, BufferedImage.TYPE_INT_RGB);
+
+        for (int y = 0; y < image.getHeight(); y++) {
+            int gray = y * 255 / (image.getHeight() - 1);
+
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, gray << 16 | gray << 8 | gray);
+            }
+        }
+
+        for (Quality quality : Quality.values()) {
+            BufferedImage scaled = ImageScaler.scale(image, 1500, 900, quality);
+
+            int previous = 0;
+
+            for (int y = 0; y < scaled.getHeight(); y++) {
+                int gray = scaled.getRGB(0, y) & 0xFF;
+
+                assertTrue(gray >= previous && gray - previous <= 2);
+                assertEquals(scaled.getRGB(0, y), scaled.getRGB(scaled.getWidth() - 1, y));
+
+                previous = gray;
+            }
+
+            assertEquals(255, previous);
+        }
+    }
+
+    /**
+     * Create an image filled with the given color.
+     *
+     * @param type   The type of the image.
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @param color  The color.
+     *
+     * @return The image.
+     */
+    private static BufferedImage filledImage(int type, int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, type);
+
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(color);
+        g2.fillRect(0, 0, width, height);
+        g2.dispose();
+
+        return image;
+    }
+
+    /**
+     * Assert that all the pixels of the image have the given color.
+     *
+     * @param expected The expected ARGB color.
+     * @param image    The image.
+     */
+    private static void assertColor(int expected, BufferedImage image) {
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                assertEquals(Integer.toHexString(expected), Integer.toHexString(image.getRGB(x, y)));
+            }
+        }
+    }
+}
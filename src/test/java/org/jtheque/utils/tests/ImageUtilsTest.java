@@ -0,0 +1,96 @@
+package org.jtheque.utils.tests;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.ui.ImageUtils;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the ImageUtils class.
+ *
+ * @author Baptiste Wicht
+ */
+public class ImageUtilsTest {
+    @Test
+    public void readScaled() throws IOException {
+        BufferedImage image = ImageUtils.readScaled(imageStream(1000, 500), 150);
+
+        assertEquals(150, image.getWidth());
+        assertEquals(75, image.getHeight());
+        assertEquals(0xFF3366CC, image.getRGB(75, 30));
+    }
+
+    @Test
+    public void readScaledSmallImage() throws IOException {
+        BufferedImage image = ImageUtils.readScaled(imageStream(100, 50), 150);
+
+        assertEquals(100, image.getWidth());
+        assertEquals(50, image.getHeight());
+    }
+
+    @Test
+    public void readScaledRegion() throws IOException {
+        BufferedImage image = ImageUtils.readScaled(imageStream(1000, 500), new Rectangle(0, 0, 400, 400), 100, 100);
+
+        assertEquals(100, image.getWidth());
+        assertEquals(100, image.getHeight());
+    }
+
+    @Test
+    public void readScaledInvalidStream() {
+        assertNull(ImageUtils.readScaled(new ByteArrayInputStream(new byte[]{1, 2, 3}), 150));
+    }
+
+    /**
+     * Return a stream on a PNG image of the given size.
+     *
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     *
+     * @return A stream on the encoded image.
+     *
+     * @throws IOException If the image cannot be encoded.
+     */
+    private static InputStream imageStream(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(new Color(0x33, 0x66, 0xCC));
+        g2.fillRect(0, 0, width, height);
+        g2.dispose();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        ImageIO.write(image, "png", output);
+
+        return new ByteArrayInputStream(output.toByteArray());
+    }
+}
@@ -0,0 +1,141 @@
+package org.jtheque.utils.tests;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.count.ConcurrentCounter;
+import org.jtheque.utils.count.Gauge;
+import org.jtheque.utils.count.Histogram;
+import org.jtheque.utils.count.Metrics;
+import org.jtheque.utils.count.Timer;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the Metrics class.
+ *
+ * @author Baptiste Wicht
+ */
+public class MetricsTest {
+    @Test
+    public void percentiles() {
+        Histogram histogram = new Histogram();
+
+        for (int i = 1; i <= 100000; i++) {
+            histogram.update(i);
+        }
+
+        Histogram.Snapshot snapshot = histogram.getSnapshot();
+
+        assertEquals(100000, snapshot.getCount());
+        assertEquals(1, snapshot.getMin());
+        assertEquals(100000, snapshot.getMax());
+        assertEquals(50000.5, snapshot.getMean(), 0.001);
+
+        assertEquals(50000, snapshot.getMedian(), 50000 * 0.04);
+        assertEquals(99000, snapshot.get99thPercentile(), 99000 * 0.04);
+        assertEquals(99900, snapshot.get999thPercentile(), 99900 * 0.04);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        Histogram histogram = new Histogram();
+
+        for (int i = 0; i < 10; i++) {
+            histogram.update(7);
+        }
+
+        assertEquals(7, histogram.getSnapshot().getMedian());
+        assertEquals(7, histogram.getSnapshot().get999thPercentile());
+    }
+
+    @Test
+    public void registry() {
+        Metrics metrics = new Metrics();
+
+        metrics.counter("files").add(3);
+        metrics.meter("requests").mark(5);
+        metrics.timer("copy").update(2, TimeUnit.MILLISECONDS);
+        metrics.register("size", new Gauge() {
+            @Override
+            public double getValue() {
+                return 42;
+            }
+        });
+
+        assertSame(metrics.counter("files"), metrics.counter("files"));
+
+        Map<String, Map<String, Number>> snapshot = metrics.snapshot();
+
+        assertEquals(3L, snapshot.get("files").get("count"));
+        assertEquals(5L, snapshot.get("requests").get("count"));
+        assertEquals(42.0, snapshot.get("size").get("value"));
+        assertEquals(1L, snapshot.get("copy").get("count"));
+
+        long p50 = snapshot.get("copy").get("p50").longValue();
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(2), p50, TimeUnit.MILLISECONDS.toNanos(2) * 0.04);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void typeConflict() {
+        Metrics metrics = new Metrics();
+
+        metrics.counter("test");
+        metrics.timer("test");
+    }
+
+    @Test
+    public void gaugeTypeConflict() {
+        Metrics metrics = new Metrics();
+
+        ConcurrentCounter counter = metrics.counter("test");
+
+        try {
+            metrics.register("test", new Gauge() {
+                @Override
+                public double getValue() {
+                    return 1;
+                }
+            });
+
+            fail("The name is used by a counter");
+        } catch (IllegalArgumentException e) {
+            assertSame(counter, metrics.counter("test"));
+        }
+    }
+
+    @Test
+    public void dumps() throws Exception {
+        Metrics metrics = new Metrics();
+
+        metrics.counter("a\"b").increment();
+
+        Timer timer = metrics.timer("timer");
+
+        try (Timer.Context context = timer.start()) {
+            assertNotNull(context);
+        }
+
+        assertTrue(metrics.toText().startsWith("a\"b: count=1\n"));
+        assertTrue(metrics.toJson().startsWith("{\"a\\\"b\":{\"count\":1},\"timer\":{\"count\":1,"));
+    }
+}
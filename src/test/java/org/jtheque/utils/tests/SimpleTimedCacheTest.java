@@ -0,0 +1,98 @@
+package org.jtheque.utils.tests;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.collections.SimpleTimedCache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the SimpleTimedCache class.
+ *
+ * @author Baptiste Wicht
+ */
+public class SimpleTimedCacheTest {
+    @Test
+    public void addAndContains() {
+        SimpleTimedCache<String> cache = new SimpleTimedCache<String>(60000);
+
+        cache.add("test1");
+        cache.add("test2");
+
+        assertTrue(cache.contains("test1"));
+        assertTrue(cache.contains("test2"));
+        assertFalse(cache.contains("test3"));
+        assertFalse(cache.contains(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullElement() {
+        new SimpleTimedCache<String>(60000).add(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTimeout() {
+        new SimpleTimedCache<String>(0);
+    }
+
+    @Test
+    public void expiration() throws InterruptedException {
+        SimpleTimedCache<String> cache = new SimpleTimedCache<String>(50);
+
+        cache.add("test");
+
+        assertTrue(cache.contains("test"));
+
+        Thread.sleep(100);
+
+        assertFalse(cache.contains("test"));
+
+        cache.evictExpired();
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void maximumSize() {
+        SimpleTimedCache<Integer> cache = new SimpleTimedCache<Integer>(60000, 100);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.add(i);
+        }
+
+        assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    public void close() {
+        SimpleTimedCache<String> cache = new SimpleTimedCache<String>(60000);
+
+        cache.add("test1");
+        cache.add("test2");
+
+        cache.close();
+
+        assertEquals(0, cache.size());
+        assertFalse(cache.contains("test1"));
+
+        cache.evictExpired();
+
+        assertEquals(0, cache.size());
+    }
+}
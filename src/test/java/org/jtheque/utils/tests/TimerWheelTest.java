@@ -0,0 +1,168 @@
+package org.jtheque.utils.tests;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jtheque.utils.collections.TimerWheel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit test class to test the TimerWheel class.
+ *
+ * @author Baptiste Wicht
+ */
+public class TimerWheelTest {
+    private TimerWheel wheel;
+
+    @Before
+    public void createWheel() {
+        wheel = new TimerWheel(10, 8);
+    }
+
+    @After
+    public void stopWheel() {
+        wheel.stop();
+    }
+
+    @Test
+    public void neverBeforeDeadline() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(20);
+        final AtomicInteger early = new AtomicInteger();
+
+        for (int i = 0; i < 20; i++) {
+            final long delay = i * 7;
+            final long scheduled = System.nanoTime();
+
+            wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (System.nanoTime() - scheduled < TimeUnit.MILLISECONDS.toNanos(delay)) {
+                        early.incrementAndGet();
+                    }
+
+                    latch.countDown();
+                }
+            }, delay);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+    }
+
+    @Test
+    public void severalRounds() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long scheduled = System.nanoTime();
+        final AtomicLong elapsed = new AtomicLong();
+
+        //8 slots of 10 ms, so the task must wait for the third round
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                elapsed.set(System.nanoTime() - scheduled);
+
+                latch.countDown();
+            }
+        }, 200);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(elapsed.get() >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void cancel() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+
+        TimerWheel.Timeout timeout = wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        }, 30);
+
+        timeout.cancel();
+
+        assertTrue(timeout.isCancelled());
+
+        Thread.sleep(100);
+
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void fixedRate() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(3);
+
+        TimerWheel.Timeout timeout = wheel.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 10);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        timeout.cancel();
+    }
+
+    @Test
+    public void stop() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        }, 50);
+
+        wheel.stop();
+
+        assertTrue(wheel.isStopped());
+
+        Thread.sleep(100);
+
+        assertEquals(0, runs.get());
+
+        try {
+            wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    runs.incrementAndGet();
+                }
+            }, 10);
+
+            fail("A stopped wheel must reject the tasks");
+        } catch (IllegalStateException e) {
+            //Expected
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void sharedCannotBeStopped() {
+        TimerWheel.shared().stop();
+    }
+}
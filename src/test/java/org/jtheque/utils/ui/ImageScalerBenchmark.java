@@ -0,0 +1,116 @@
+package org.jtheque.utils.ui;
+
+/*
+ * Copyright JTheque (Baptiste Wicht)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.awt.GradientPaint;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * A simple benchmark comparing ImageScaler to the progressive ImageUtils.createThumbnail. This is not a unit test, it
+ * must be launched manually.
+ *
+ * @author Baptiste Wicht
+ */
+public final class ImageScalerBenchmark {
+    private static final int WARMUP = 10;
+    private static final int RUNS = 20;
+    private static final int THUMB_SIZE = 150;
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private ImageScalerBenchmark() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Launch the benchmark.
+     *
+     * @param args The arguments, not used.
+     */
+    public static void main(String[] args) {
+        for (int size : new int[]{800, 2000, 4000}) {
+            BufferedImage image = createImage(size, size * 3 / 4);
+
+            System.out.println("Source " + image.getWidth() + 'x' + image.getHeight());
+
+            benchmark("  createThumbnail      ", new Runnable() {
+                @Override
+                public void run() {
+                    ImageUtils.createThumbnail(image, THUMB_SIZE);
+                }
+            });
+
+            benchmark("  ImageScaler QUALITY  ", new Runnable() {
+                @Override
+                public void run() {
+                    ImageScaler.scaleToFit(image, THUMB_SIZE, Integer.MAX_VALUE, ImageScaler.Quality.QUALITY);
+                }
+            });
+
+            benchmark("  ImageScaler SPEED    ", new Runnable() {
+                @Override
+                public void run() {
+                    ImageScaler.scaleToFit(image, THUMB_SIZE, Integer.MAX_VALUE, ImageScaler.Quality.SPEED);
+                }
+            });
+        }
+    }
+
+    /**
+     * Run the task and print the mean time of a run.
+     *
+     * @param name The name of the task.
+     * @param task The task to benchmark.
+     */
+    private static void benchmark(String name, Runnable task) {
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < RUNS; i++) {
+            task.run();
+        }
+
+        long mean = (System.nanoTime() - start) / RUNS;
+
+        System.out.println(name + mean / 1000 + " us");
+    }
+
+    /**
+     * Create a source image.
+     *
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     *
+     * @return The image.
+     */
+    private static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D g2 = image.createGraphics();
+        g2.setPaint(new GradientPaint(0, 0, Color.BLUE, width, height, Color.ORANGE));
+        g2.fillRect(0, 0, width, height);
+        g2.dispose();
+
+        return image;
+    }
+}